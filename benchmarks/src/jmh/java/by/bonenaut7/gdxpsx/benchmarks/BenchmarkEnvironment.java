@@ -0,0 +1,34 @@
+package by.bonenaut7.gdxpsx.benchmarks;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/** Headless libGDX environment for benchmarks: {@link HeadlessApplication} (natives, files, managed resources)
+ *    with {@link MockGL20} instead of the real GL.
+ *
+ * @author bonenaut7 **/
+public final class BenchmarkEnvironment {
+	private BenchmarkEnvironment() {
+	}
+
+	/** Creates application and installs mock GL, should be called in the trial setup **/
+	public static void setUp() {
+		if (Gdx.app != null) return;
+
+		final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+		config.updatesPerSecond = 1; // Main loop isn't used
+		new HeadlessApplication(new ApplicationAdapter() {}, config);
+		Gdx.gl = Gdx.gl20 = MockGL20.create();
+		Gdx.gl30 = null;
+	}
+
+	/** Stops the main loop of the application, should be called in the trial teardown, otherwise forked JVM won't exit **/
+	public static void tearDown() {
+		if (Gdx.app == null) return;
+
+		Gdx.app.exit();
+		Gdx.app = null;
+	}
+}
@@ -0,0 +1,113 @@
+package by.bonenaut7.gdxpsx.benchmarks;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
+import com.badlogic.gdx.math.RandomXS128;
+
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+
+/** Deterministic content for benchmarks, so results are comparable between runs
+ *
+ * @author bonenaut7 **/
+public final class BenchmarkScene {
+	public static final long SEED = 0x5053584CL;
+
+	private BenchmarkScene() {
+	}
+
+	/** @return mesh with position, normal and texture coordinates, same as most of the models have **/
+	public static Mesh createMesh() {
+		final Mesh mesh = new Mesh(true, 4, 6, VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0));
+		mesh.setVertices(new float[] {
+			-1f, -1f, 0f, 0f, 0f, 1f, 0f, 0f,
+			1f, -1f, 0f, 0f, 0f, 1f, 1f, 0f,
+			1f, 1f, 0f, 0f, 0f, 1f, 1f, 1f,
+			-1f, 1f, 0f, 0f, 0f, 1f, 0f, 1f
+		});
+		mesh.setIndices(new short[] { 0, 1, 2, 2, 3, 0 });
+		return mesh;
+	}
+
+	/** @return environment with ambient and directional light, and with PSX effects **/
+	public static Environment createEnvironment() {
+		final Environment environment = new Environment();
+		environment.set(ColorAttribute.createAmbientLight(0.4f, 0.4f, 0.4f, 1f));
+		environment.set(AttributePSXEffect.createVertexSnapping(4f));
+		environment.set(AttributePSXEffect.createTextureAffineMapping(0.5f));
+		environment.add(new DirectionalLight().set(Color.WHITE, -1f, -1f, -1f));
+		return environment;
+	}
+
+	/** Materials are varied by index: every material has diffuse color, every 2nd one has a texture,
+	 *    every 3rd one overrides PSX effects and every 4th one is blended.
+	 * @param index Index of the material
+	 * @param texture Diffuse texture
+	 * @return new material **/
+	public static Material createMaterial(int index, Texture texture) {
+		final Material material = new Material(ColorAttribute.createDiffuse(index / 64f, 0.5f, 1f - index / 64f, 1f));
+		if (index % 2 == 0) material.set(TextureAttribute.createDiffuse(texture));
+		if (index % 3 == 0) material.set(AttributePSXEffect.createVertexSnapping(2f + index % 5));
+		if (index % 4 == 0) material.set(new BlendingAttribute(0.5f));
+		return material;
+	}
+
+	/** @param amount Amount of renderables
+	 * @param materials Amount of different materials, from 1 to 64
+	 * @param mesh Mesh of renderables
+	 * @param environment Environment of renderables, or null
+	 * @param texture Diffuse texture
+	 * @return new renderables, without shaders **/
+	public static Renderable[] createRenderables(int amount, int materials, Mesh mesh, Environment environment, Texture texture) {
+		final Material[] materialsArray = new Material[materials];
+		for (int idx = 0; idx != materials; idx++) {
+			materialsArray[idx] = createMaterial(idx, texture);
+		}
+
+		final RandomXS128 random = new RandomXS128(SEED);
+		final Renderable[] renderables = new Renderable[amount];
+		for (int idx = 0; idx != amount; idx++) {
+			final Renderable renderable = new Renderable();
+			renderable.meshPart.set("part", mesh, 0, 6, GL20.GL_TRIANGLES);
+			renderable.material = materialsArray[idx % materials];
+			renderable.environment = environment;
+			renderable.worldTransform.setToTranslation(random.nextFloat() * 100f - 50f, random.nextFloat() * 10f, random.nextFloat() * 100f - 50f);
+			renderables[idx] = renderable;
+		}
+
+		return renderables;
+	}
+
+	/** @param width Width
+	 * @param height Height
+	 * @return new {@link Format#RGBA8888 RGBA8888} pixmap filled with noise and gradients, should be disposed **/
+	public static Pixmap createPixmap(int width, int height) {
+		final Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
+		final ByteBuffer pixels = pixmap.getPixels();
+		final RandomXS128 random = new RandomXS128(SEED);
+		for (int y = 0; y != height; y++) {
+			for (int x = 0; x != width; x++) {
+				final int offset = (y * width + x) * 4;
+				pixels.put(offset, (byte)(x * 255 / width));
+				pixels.put(offset + 1, (byte)(y * 255 / height));
+				pixels.put(offset + 2, (byte)random.nextInt(256));
+				pixels.put(offset + 3, (byte)255);
+			}
+		}
+
+		return pixmap;
+	}
+}
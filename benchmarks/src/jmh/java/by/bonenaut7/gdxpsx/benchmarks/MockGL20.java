@@ -0,0 +1,616 @@
+package by.bonenaut7.gdxpsx.benchmarks;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.graphics.GL20;
+
+/** No-op {@link GL20} for headless benchmarks: every object is created successfully, every shader is compiled and linked,
+ *    every uniform is present (so shader setters aren't skipped) and every framebuffer is complete. <br>
+ * Calls are plain virtual calls that only increment the counters, they don't allocate, so allocation profiling reports
+ *    only allocations of the library.
+ *
+ * @author bonenaut7 **/
+public final class MockGL20 implements GL20 {
+	private long calls, scalarUniformCalls;
+
+	private MockGL20() {
+	}
+
+	/** @return new mock GL instance **/
+	public static GL20 create() {
+		return new MockGL20();
+	}
+
+	/** @param gl GL instance created with {@link #create()}
+	 *  @return amount of GL calls made since creation **/
+	public static long getCalls(GL20 gl) {
+		return ((MockGL20)gl).calls;
+	}
+
+	/** @param gl GL instance created with {@link #create()}
+	 *  @return amount of scalar uniform (<code>glUniform1*</code>) calls made since creation, such as PSX effect strengths and texture units **/
+	public static long getScalarUniformCalls(GL20 gl) {
+		return ((MockGL20)gl).scalarUniformCalls;
+	}
+
+	@Override
+	public void glActiveTexture(int texture) { this.calls++; }
+
+	@Override
+	public void glBindTexture(int target, int texture) { this.calls++; }
+
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) { this.calls++; }
+
+	@Override
+	public void glClear(int mask) { this.calls++; }
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) { this.calls++; }
+
+	@Override
+	public void glClearDepthf(float depth) { this.calls++; }
+
+	@Override
+	public void glClearStencil(int s) { this.calls++; }
+
+	@Override
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) { this.calls++; }
+
+	@Override
+	public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) { this.calls++; }
+
+	@Override
+	public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) { this.calls++; }
+
+	@Override
+	public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) { this.calls++; }
+
+	@Override
+	public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) { this.calls++; }
+
+	@Override
+	public void glCullFace(int mode) { this.calls++; }
+
+	@Override
+	public void glDeleteTextures(int n, IntBuffer textures) { this.calls++; }
+
+	@Override
+	public void glDeleteTexture(int texture) { this.calls++; }
+
+	@Override
+	public void glDepthFunc(int func) { this.calls++; }
+
+	@Override
+	public void glDepthMask(boolean flag) { this.calls++; }
+
+	@Override
+	public void glDepthRangef(float zNear, float zFar) { this.calls++; }
+
+	@Override
+	public void glDisable(int cap) { this.calls++; }
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count) { this.calls++; }
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, Buffer indices) { this.calls++; }
+
+	@Override
+	public void glEnable(int cap) { this.calls++; }
+
+	@Override
+	public void glFinish() { this.calls++; }
+
+	@Override
+	public void glFlush() { this.calls++; }
+
+	@Override
+	public void glFrontFace(int mode) { this.calls++; }
+
+	@Override
+	public void glGenTextures(int n, IntBuffer textures) { this.calls++; }
+
+	@Override
+	public int glGenTexture() {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public int glGetError() {
+		this.calls++;
+		return 0;
+	}
+
+	@Override
+	public void glGetIntegerv(int pname, IntBuffer params) {
+		this.calls++;
+		params.put(0, 16); // Amount of texture units and other limits
+	}
+
+	@Override
+	public String glGetString(int name) {
+		this.calls++;
+		return "";
+	}
+
+	@Override
+	public void glHint(int target, int mode) { this.calls++; }
+
+	@Override
+	public void glLineWidth(float width) { this.calls++; }
+
+	@Override
+	public void glPixelStorei(int pname, int param) { this.calls++; }
+
+	@Override
+	public void glPolygonOffset(float factor, float units) { this.calls++; }
+
+	@Override
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) { this.calls++; }
+
+	@Override
+	public void glScissor(int x, int y, int width, int height) { this.calls++; }
+
+	@Override
+	public void glStencilFunc(int func, int ref, int mask) { this.calls++; }
+
+	@Override
+	public void glStencilMask(int mask) { this.calls++; }
+
+	@Override
+	public void glStencilOp(int fail, int zfail, int zpass) { this.calls++; }
+
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) { this.calls++; }
+
+	@Override
+	public void glTexParameterf(int target, int pname, float param) { this.calls++; }
+
+	@Override
+	public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) { this.calls++; }
+
+	@Override
+	public void glViewport(int x, int y, int width, int height) { this.calls++; }
+
+	@Override
+	public void glAttachShader(int program, int shader) { this.calls++; }
+
+	@Override
+	public void glBindAttribLocation(int program, int index, String name) { this.calls++; }
+
+	@Override
+	public void glBindBuffer(int target, int buffer) { this.calls++; }
+
+	@Override
+	public void glBindFramebuffer(int target, int framebuffer) { this.calls++; }
+
+	@Override
+	public void glBindRenderbuffer(int target, int renderbuffer) { this.calls++; }
+
+	@Override
+	public void glBlendColor(float red, float green, float blue, float alpha) { this.calls++; }
+
+	@Override
+	public void glBlendEquation(int mode) { this.calls++; }
+
+	@Override
+	public void glBlendEquationSeparate(int modeRGB, int modeAlpha) { this.calls++; }
+
+	@Override
+	public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) { this.calls++; }
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) { this.calls++; }
+
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) { this.calls++; }
+
+	@Override
+	public int glCheckFramebufferStatus(int target) {
+		this.calls++;
+		return GL20.GL_FRAMEBUFFER_COMPLETE;
+	}
+
+	@Override
+	public void glCompileShader(int shader) { this.calls++; }
+
+	@Override
+	public int glCreateProgram() {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public int glCreateShader(int type) {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glDeleteBuffer(int buffer) { this.calls++; }
+
+	@Override
+	public void glDeleteBuffers(int n, IntBuffer buffers) { this.calls++; }
+
+	@Override
+	public void glDeleteFramebuffer(int framebuffer) { this.calls++; }
+
+	@Override
+	public void glDeleteFramebuffers(int n, IntBuffer framebuffers) { this.calls++; }
+
+	@Override
+	public void glDeleteProgram(int program) { this.calls++; }
+
+	@Override
+	public void glDeleteRenderbuffer(int renderbuffer) { this.calls++; }
+
+	@Override
+	public void glDeleteRenderbuffers(int n, IntBuffer renderbuffers) { this.calls++; }
+
+	@Override
+	public void glDeleteShader(int shader) { this.calls++; }
+
+	@Override
+	public void glDetachShader(int program, int shader) { this.calls++; }
+
+	@Override
+	public void glDisableVertexAttribArray(int index) { this.calls++; }
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int indices) { this.calls++; }
+
+	@Override
+	public void glEnableVertexAttribArray(int index) { this.calls++; }
+
+	@Override
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) { this.calls++; }
+
+	@Override
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) { this.calls++; }
+
+	@Override
+	public int glGenBuffer() {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glGenBuffers(int n, IntBuffer buffers) { this.calls++; }
+
+	@Override
+	public void glGenerateMipmap(int target) { this.calls++; }
+
+	@Override
+	public int glGenFramebuffer() {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glGenFramebuffers(int n, IntBuffer framebuffers) { this.calls++; }
+
+	@Override
+	public int glGenRenderbuffer() {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glGenRenderbuffers(int n, IntBuffer renderbuffers) { this.calls++; }
+
+	@Override
+	public String glGetActiveAttrib(int program, int index, IntBuffer size, IntBuffer type) {
+		this.calls++;
+		return "";
+	}
+
+	@Override
+	public String glGetActiveUniform(int program, int index, IntBuffer size, IntBuffer type) {
+		this.calls++;
+		return "";
+	}
+
+	@Override
+	public void glGetAttachedShaders(int program, int maxcount, Buffer count, IntBuffer shaders) { this.calls++; }
+
+	@Override
+	public int glGetAttribLocation(int program, String name) {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glGetBooleanv(int pname, Buffer params) { this.calls++; }
+
+	@Override
+	public void glGetBufferParameteriv(int target, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetFloatv(int pname, FloatBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetFramebufferAttachmentParameteriv(int target, int attachment, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetProgramiv(int program, int pname, IntBuffer params) {
+		this.calls++;
+		params.put(0, 1); // Compile and link status, amount of active attributes and uniforms
+	}
+
+	@Override
+	public String glGetProgramInfoLog(int program) {
+		this.calls++;
+		return "";
+	}
+
+	@Override
+	public void glGetRenderbufferParameteriv(int target, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetShaderiv(int shader, int pname, IntBuffer params) {
+		this.calls++;
+		params.put(0, 1); // Compile and link status, amount of active attributes and uniforms
+	}
+
+	@Override
+	public String glGetShaderInfoLog(int shader) {
+		this.calls++;
+		return "";
+	}
+
+	@Override
+	public void glGetShaderPrecisionFormat(int shadertype, int precisiontype, IntBuffer range, IntBuffer precision) { this.calls++; }
+
+	@Override
+	public void glGetTexParameterfv(int target, int pname, FloatBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetTexParameteriv(int target, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetUniformfv(int program, int location, FloatBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetUniformiv(int program, int location, IntBuffer params) { this.calls++; }
+
+	@Override
+	public int glGetUniformLocation(int program, String name) {
+		this.calls++;
+		return 1;
+	}
+
+	@Override
+	public void glGetVertexAttribfv(int index, int pname, FloatBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetVertexAttribiv(int index, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glGetVertexAttribPointerv(int index, int pname, Buffer pointer) { this.calls++; }
+
+	@Override
+	public boolean glIsBuffer(int buffer) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsEnabled(int cap) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsFramebuffer(int framebuffer) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsProgram(int program) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsRenderbuffer(int renderbuffer) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsShader(int shader) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public boolean glIsTexture(int texture) {
+		this.calls++;
+		return false;
+	}
+
+	@Override
+	public void glLinkProgram(int program) { this.calls++; }
+
+	@Override
+	public void glReleaseShaderCompiler() { this.calls++; }
+
+	@Override
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) { this.calls++; }
+
+	@Override
+	public void glSampleCoverage(float value, boolean invert) { this.calls++; }
+
+	@Override
+	public void glShaderBinary(int n, IntBuffer shaders, int binaryformat, Buffer binary, int length) { this.calls++; }
+
+	@Override
+	public void glShaderSource(int shader, String string) { this.calls++; }
+
+	@Override
+	public void glStencilFuncSeparate(int face, int func, int ref, int mask) { this.calls++; }
+
+	@Override
+	public void glStencilMaskSeparate(int face, int mask) { this.calls++; }
+
+	@Override
+	public void glStencilOpSeparate(int face, int fail, int zfail, int zpass) { this.calls++; }
+
+	@Override
+	public void glTexParameterfv(int target, int pname, FloatBuffer params) { this.calls++; }
+
+	@Override
+	public void glTexParameteri(int target, int pname, int param) { this.calls++; }
+
+	@Override
+	public void glTexParameteriv(int target, int pname, IntBuffer params) { this.calls++; }
+
+	@Override
+	public void glUniform1f(int location, float x) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform1fv(int location, int count, FloatBuffer v) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform1fv(int location, int count, float v[], int offset) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform1i(int location, int x) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform1iv(int location, int count, IntBuffer v) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform1iv(int location, int count, int v[], int offset) {
+		this.calls++;
+		this.scalarUniformCalls++;
+	}
+
+	@Override
+	public void glUniform2f(int location, float x, float y) { this.calls++; }
+
+	@Override
+	public void glUniform2fv(int location, int count, FloatBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform2fv(int location, int count, float v[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniform2i(int location, int x, int y) { this.calls++; }
+
+	@Override
+	public void glUniform2iv(int location, int count, IntBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform2iv(int location, int count, int[] v, int offset) { this.calls++; }
+
+	@Override
+	public void glUniform3f(int location, float x, float y, float z) { this.calls++; }
+
+	@Override
+	public void glUniform3fv(int location, int count, FloatBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform3fv(int location, int count, float[] v, int offset) { this.calls++; }
+
+	@Override
+	public void glUniform3i(int location, int x, int y, int z) { this.calls++; }
+
+	@Override
+	public void glUniform3iv(int location, int count, IntBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform3iv(int location, int count, int v[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniform4f(int location, float x, float y, float z, float w) { this.calls++; }
+
+	@Override
+	public void glUniform4fv(int location, int count, FloatBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform4fv(int location, int count, float v[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniform4i(int location, int x, int y, int z, int w) { this.calls++; }
+
+	@Override
+	public void glUniform4iv(int location, int count, IntBuffer v) { this.calls++; }
+
+	@Override
+	public void glUniform4iv(int location, int count, int v[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer value) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix2fv(int location, int count, boolean transpose, float value[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer value) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix3fv(int location, int count, boolean transpose, float value[], int offset) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer value) { this.calls++; }
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float value[], int offset) { this.calls++; }
+
+	@Override
+	public void glUseProgram(int program) { this.calls++; }
+
+	@Override
+	public void glValidateProgram(int program) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib1f(int indx, float x) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib1fv(int indx, FloatBuffer values) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib2f(int indx, float x, float y) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib2fv(int indx, FloatBuffer values) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib3f(int indx, float x, float y, float z) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib3fv(int indx, FloatBuffer values) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib4f(int indx, float x, float y, float z, float w) { this.calls++; }
+
+	@Override
+	public void glVertexAttrib4fv(int indx, FloatBuffer values) { this.calls++; }
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) { this.calls++; }
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int ptr) { this.calls++; }
+}
@@ -0,0 +1,77 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+import by.bonenaut7.gdxpsx.postprocessing.PaletteLUT;
+
+/** CPU post-processing of the 320x240 frame by {@link PSXPostProcessor}, with dithering and color reduction or palette
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PSXPostProcessorBenchmark {
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	@Param({ "false", "true" })
+	public boolean palette;
+
+	private ForkJoinPool pool;
+	private PSXPostProcessor processor;
+	private Pixmap input, output;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.pool = new ForkJoinPool(this.parallelism);
+		this.input = BenchmarkScene.createPixmap(320, 240);
+		this.output = new Pixmap(320, 240, Format.RGBA8888);
+		this.processor = new PSXPostProcessor(this.pool)
+			.setDownscalingEnabled(true)
+			.setDownscalingFromScale(2f)
+			.setDitheringEnabled(true)
+			.setColorReductionEnabled(true)
+			.setColorReduction(32f);
+
+		if (this.palette) {
+			final int[] colors = new int[16];
+			for (int idx = 0; idx != colors.length; idx++) {
+				colors[idx] = (idx * 16) << 24 | (255 - idx * 16) << 16 | (idx * 8) << 8 | 0xFF;
+			}
+
+			this.processor.setPalette(new PaletteLUT(colors, PaletteLUT.DEFAULT_SIZE).build()).setPaletteEnabled(true);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.input.dispose();
+		this.output.dispose();
+		this.pool.shutdown();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public Pixmap process() {
+		this.processor.process(this.input, this.output);
+		return this.output;
+	}
+}
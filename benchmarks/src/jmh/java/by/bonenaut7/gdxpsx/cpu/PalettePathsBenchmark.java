@@ -0,0 +1,99 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+import by.bonenaut7.gdxpsx.postprocessing.PaletteLUT;
+
+/** Remaining CPU pixel paths: palette generation ({@link PaletteGenerator}), palette table building
+ *    ({@link PaletteLUT}, {@link PaletteLUTBuilder}) and LUT baking ({@link LUTBaker}) of the 256x256 texture
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PalettePathsBenchmark {
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	private ForkJoinPool pool;
+	private Pixmap source, lut;
+	private PaletteGenerator generator;
+	private PaletteLUTBuilder lutBuilder;
+	private LUTBaker baker;
+	private int[] colors;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.pool = new ForkJoinPool(this.parallelism);
+		this.source = BenchmarkScene.createPixmap(256, 256);
+		this.generator = new PaletteGenerator(this.pool).add(this.source);
+		this.colors = this.generator.generate(16);
+		this.lutBuilder = new PaletteLUTBuilder(this.pool);
+		this.baker = new LUTBaker(this.pool);
+
+		// Identity LUT, 8x8 blue slices of 64x64
+		this.lut = new Pixmap(512, 512, Format.RGBA8888);
+		for (int y = 0; y != 512; y++) {
+			for (int x = 0; x != 512; x++) {
+				final int blue = (y / 64) * 8 + x / 64;
+				this.lut.drawPixel(x, y, (x % 64) * 4 << 24 | (y % 64) * 4 << 16 | blue * 4 << 8 | 0xFF);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.source.dispose();
+		this.lut.dispose();
+		this.baker.dispose();
+		this.pool.shutdown();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public PaletteGenerator histogram() {
+		this.generator.reset();
+		return this.generator.add(this.source);
+	}
+
+	@Benchmark
+	public int[] generatePalette() {
+		return this.generator.generate(16);
+	}
+
+	@Benchmark
+	public PaletteLUT buildPaletteLUT() {
+		return new PaletteLUT(this.colors, PaletteLUT.DEFAULT_SIZE).build();
+	}
+
+	@Benchmark
+	public PaletteLUT buildPaletteLUTParallel() {
+		return this.lutBuilder.build(new PaletteLUT(this.colors, PaletteLUT.DEFAULT_SIZE));
+	}
+
+	@Benchmark
+	public int bakeLUT() {
+		final Pixmap baked = this.baker.bake(this.source, this.lut, false);
+		final int pixel = baked.getPixel(0, 0);
+		baked.dispose();
+		return pixel;
+	}
+}
@@ -0,0 +1,95 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.utils.DefaultRenderableSorter;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.utils.Array;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+
+/** Sorting of the renderables by {@link PSXRenderableSorter} and by libGDX {@link DefaultRenderableSorter}.
+ *    Renderables are restored to the same unsorted order before every sort, so sorters don't get already sorted input.
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PSXRenderableSorterBenchmark {
+	@Param({ "20000" })
+	public int renderables;
+
+	@Param({ "16" })
+	public int materials;
+
+	private Mesh mesh;
+	private Texture texture;
+	private Renderable[] unsorted;
+	private Array<Renderable> array;
+	private PSXShaderProvider provider;
+	private Camera camera;
+	private RenderableSorter psxSorter, defaultSorter;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.mesh = BenchmarkScene.createMesh();
+		this.texture = new Texture(BenchmarkScene.createPixmap(4, 4));
+		this.unsorted = BenchmarkScene.createRenderables(this.renderables, this.materials, this.mesh, BenchmarkScene.createEnvironment(), this.texture);
+		this.array = new Array<>(true, this.renderables, Renderable.class);
+		this.provider = new PSXShaderProvider();
+		for (final Renderable renderable : this.unsorted) {
+			renderable.shader = this.provider.getShader(renderable); // Sorters group by shader
+		}
+
+		this.camera = new PerspectiveCamera(67f, 320f, 240f);
+		this.camera.position.set(0f, 10f, 60f);
+		this.camera.lookAt(0f, 0f, 0f);
+		this.camera.far = 200f;
+		this.camera.update();
+		this.psxSorter = new PSXRenderableSorter();
+		this.defaultSorter = new DefaultRenderableSorter();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.provider.dispose();
+		this.mesh.dispose();
+		this.texture.dispose();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public Array<Renderable> psxSorter() {
+		return this.sort(this.psxSorter);
+	}
+
+	@Benchmark
+	public Array<Renderable> defaultSorter() {
+		return this.sort(this.defaultSorter);
+	}
+
+	private Array<Renderable> sort(RenderableSorter sorter) {
+		this.array.clear();
+		this.array.addAll(this.unsorted);
+		sorter.sort(this.camera, this.array);
+		return this.array;
+	}
+}
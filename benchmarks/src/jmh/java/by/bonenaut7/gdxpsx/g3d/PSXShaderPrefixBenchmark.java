@@ -0,0 +1,77 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+
+/** Shader prefix generation: allocating {@link PSXShader#createPSXPrefix(Renderable, DefaultShader.Config)},
+ *    reused {@link PSXShaderPrefixBuilder}, interned {@link PSXShaderPrefixCache} lookup and {@link PSXShaderKey} creation.
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PSXShaderPrefixBenchmark {
+	private Mesh mesh;
+	private Texture texture;
+	private Renderable renderable;
+	private DefaultShader.Config config;
+	private PSXShaderPrefixBuilder builder;
+	private PSXShaderPrefixCache cache;
+	private PSXShaderKey key;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.mesh = BenchmarkScene.createMesh();
+		this.texture = new Texture(BenchmarkScene.createPixmap(4, 4));
+		this.renderable = BenchmarkScene.createRenderables(1, 1, this.mesh, BenchmarkScene.createEnvironment(), this.texture)[0];
+		this.config = new DefaultShader.Config();
+		this.builder = new PSXShaderPrefixBuilder();
+		this.cache = new PSXShaderPrefixCache(this.config);
+		this.key = new PSXShaderKey();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.mesh.dispose();
+		this.texture.dispose();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public String createPSXPrefix() {
+		return PSXShader.createPSXPrefix(this.renderable, this.config);
+	}
+
+	@Benchmark
+	public StringBuilder prefixBuilder() {
+		return this.builder.set(this.renderable).build(this.config);
+	}
+
+	@Benchmark
+	public String prefixCache() {
+		return this.cache.get(this.builder, this.renderable);
+	}
+
+	@Benchmark
+	public PSXShaderKey shaderKey() {
+		return this.key.set(this.renderable);
+	}
+}
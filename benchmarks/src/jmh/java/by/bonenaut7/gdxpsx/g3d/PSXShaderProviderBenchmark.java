@@ -0,0 +1,129 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.DefaultTextureBinder;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.utils.Array;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+
+/** Per-frame CPU work of the {@link PSXShaderProvider} and {@link PSXShader}: shader lookup by {@link PSXShaderKey},
+ *    lookup with suggested shader, attributes combining, and rendering with attribute lookups and uniform setters.
+ *    Results are per renderable.
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(PSXShaderProviderBenchmark.RENDERABLES)
+public class PSXShaderProviderBenchmark {
+	static final int RENDERABLES = 256;
+
+	@Param({ "16" })
+	public int materials;
+
+	@Param({ "false", "true" })
+	public boolean environmentGlobals;
+
+	private Mesh mesh;
+	private Texture texture;
+	private Renderable[] renderables;
+	private PSXShaderProvider provider;
+	private Camera camera;
+	private RenderContext context;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.mesh = BenchmarkScene.createMesh();
+		this.texture = new Texture(BenchmarkScene.createPixmap(4, 4));
+		this.renderables = BenchmarkScene.createRenderables(RENDERABLES, this.materials, this.mesh, BenchmarkScene.createEnvironment(), this.texture);
+		this.provider = new PSXShaderProvider();
+		this.provider.setEnvironmentGlobals(this.environmentGlobals);
+		this.camera = new PerspectiveCamera(67f, 320f, 240f);
+		this.camera.position.set(0f, 10f, 60f);
+		this.camera.lookAt(0f, 0f, 0f);
+		this.camera.update();
+		this.context = new RenderContext(new DefaultTextureBinder(DefaultTextureBinder.LRU, 1));
+
+		for (int idx = 0; idx != RENDERABLES; idx++) {
+			this.renderables[idx].shader = this.provider.getShader(this.renderables[idx]); // Compiles (mocked) shaders
+		}
+
+		// Grouped by shader, as ModelBatch sorter does
+		final Array<Renderable> sorted = new Array<>(this.renderables);
+		new PSXRenderableSorter().sort(this.camera, sorted);
+		this.renderables = sorted.toArray(Renderable.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.provider.dispose();
+		this.mesh.dispose();
+		this.texture.dispose();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public void getShaderByKey(Blackhole blackhole) {
+		for (int idx = 0; idx != RENDERABLES; idx++) {
+			final Renderable renderable = this.renderables[idx];
+			renderable.shader = null;
+			blackhole.consume(renderable.shader = this.provider.getShader(renderable));
+		}
+	}
+
+	@Benchmark
+	public void getShaderSuggested(Blackhole blackhole) {
+		for (int idx = 0; idx != RENDERABLES; idx++) {
+			blackhole.consume(this.provider.getShader(this.renderables[idx]));
+		}
+	}
+
+	@Benchmark
+	public void combineAttributes(Blackhole blackhole) {
+		for (int idx = 0; idx != RENDERABLES; idx++) {
+			blackhole.consume(PSXShader.combineAttributes(this.renderables[idx]).getMask());
+		}
+	}
+
+	@Benchmark
+	public void render() {
+		this.context.begin();
+		Shader currentShader = null;
+		for (int idx = 0; idx != RENDERABLES; idx++) {
+			final Renderable renderable = this.renderables[idx];
+			if (renderable.shader != currentShader) {
+				if (currentShader != null) currentShader.end();
+				currentShader = renderable.shader;
+				currentShader.begin(this.camera, this.context);
+			}
+
+			currentShader.render(renderable);
+		}
+
+		if (currentShader != null) currentShader.end();
+		this.context.end();
+	}
+}
@@ -0,0 +1,104 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.DefaultTextureBinder;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkScene;
+import by.bonenaut7.gdxpsx.benchmarks.MockGL20;
+
+/** Uniform uploads of the {@link PSXShader} for a frame of renderables sharing one environment and one material
+ *    without PSX effect overrides, with and without {@link PSXShaderProvider#setEnvironmentGlobals(boolean) environment globals}.
+ *    Besides the frame time, scalar uniform (<code>glUniform1*</code>) calls of the last frame are reported as <code>scalarUniformCalls</code>.
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PSXShaderUniformsBenchmark {
+	@Param({ "300" })
+	public int renderables;
+
+	@Param({ "false", "true" })
+	public boolean environmentGlobals;
+
+	private Mesh mesh;
+	private Texture texture;
+	private Renderable[] renderablesArray;
+	private PSXShaderProvider provider;
+	private Shader shader;
+	private Camera camera;
+	private RenderContext context;
+
+	/** Counters of the last frame, values are overwritten (not accumulated) every frame **/
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class FrameCounters {
+		public long scalarUniformCalls;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.mesh = BenchmarkScene.createMesh();
+		this.texture = new Texture(BenchmarkScene.createPixmap(4, 4));
+		this.renderablesArray = BenchmarkScene.createRenderables(this.renderables, 1, this.mesh, BenchmarkScene.createEnvironment(), this.texture);
+		final Material material = BenchmarkScene.createMaterial(1, this.texture); // Diffuse color only
+		for (final Renderable renderable : this.renderablesArray) {
+			renderable.material = material;
+		}
+
+		this.provider = new PSXShaderProvider();
+		this.provider.setEnvironmentGlobals(this.environmentGlobals);
+		this.shader = this.provider.getShader(this.renderablesArray[0]);
+		this.camera = new PerspectiveCamera(67f, 320f, 240f);
+		this.camera.position.set(0f, 10f, 60f);
+		this.camera.lookAt(0f, 0f, 0f);
+		this.camera.update();
+		this.context = new RenderContext(new DefaultTextureBinder(DefaultTextureBinder.LRU, 1));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.provider.dispose();
+		this.mesh.dispose();
+		this.texture.dispose();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public void renderFrame(FrameCounters counters) {
+		final long scalarUniformCalls = MockGL20.getScalarUniformCalls(Gdx.gl);
+		this.context.begin();
+		this.shader.begin(this.camera, this.context);
+		for (final Renderable renderable : this.renderablesArray) {
+			this.shader.render(renderable);
+		}
+
+		this.shader.end();
+		this.context.end();
+		counters.scalarUniformCalls = MockGL20.getScalarUniformCalls(Gdx.gl) - scalarUniformCalls;
+	}
+}
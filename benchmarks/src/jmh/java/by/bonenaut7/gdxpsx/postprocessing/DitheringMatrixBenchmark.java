@@ -0,0 +1,27 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** {@link DitheringMatrix#generateBayerMatrix(int)} at all levels of in-built matrices, from 2x2 to 16x16
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DitheringMatrixBenchmark {
+	@Param({ "1", "2", "3", "4" })
+	public int bayerLevel;
+
+	@Benchmark
+	public float[] generateBayerMatrix() {
+		return DitheringMatrix.generateBayerMatrix(this.bayerLevel);
+	}
+}
@@ -0,0 +1,69 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import by.bonenaut7.gdxpsx.benchmarks.BenchmarkEnvironment;
+
+/** Definitions generation of the {@link PSXPostProcessingShaderStatic}, that happens on every configuration change,
+ *    and {@link PSXPostProcessingShaderStatic#update() update()} with already cached program.
+ *
+ * @author bonenaut7 **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PSXPostProcessingShaderStaticBenchmark {
+	@Param({ "false", "true" })
+	public boolean ditheringTexture;
+
+	private PSXShaderProgramCache cache;
+	private PSXPostProcessingShaderStatic shader;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkEnvironment.setUp();
+		this.cache = new PSXShaderProgramCache();
+		this.shader = new PSXPostProcessingShaderStatic(this.cache);
+		this.shader.setInputResolution(1280, 720);
+		this.shader.setDownscalingEnabled(true);
+		this.shader.setDownscalingFromScale(4f);
+		this.shader.setDitheringEnabled(true);
+		this.shader.setDitheringMatrix(DitheringMatrix.BAYER_8x8);
+		this.shader.setDitheringTextureEnabled(this.ditheringTexture);
+		this.shader.setColorReductionEnabled(true);
+		this.shader.setColorReduction(32f);
+		this.shader.update();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.shader.dispose();
+		this.cache.dispose();
+		BenchmarkEnvironment.tearDown();
+	}
+
+	@Benchmark
+	public String createDefinitions() {
+		return this.shader.createDefinitions();
+	}
+
+	@Benchmark
+	public String createDitheringTableDefinition() {
+		return this.shader.createDitheringTableDefinition();
+	}
+
+	@Benchmark
+	public boolean update() {
+		return this.shader.update();
+	}
+}
@@ -0,0 +1,228 @@
+package by.bonenaut7.gdxpsx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/** Runtime statistics of the PSX rendering: created shader permutations and compile times, shader and program cache hits,
+ *    PSX uniform uploads, LUT texture binds per slot, and post-processing passes with their fill area. <br>
+ * Statistics are disabled by default, and every hook is a single static flag check while they're disabled. Counters are
+ *    {@link AtomicLong}s, so they could be updated and read from any thread without locks, and nothing is allocated
+ *    while counting or exporting. <br>
+ * Usage for per-frame telemetry: <pre>
+ * PSXRenderStats.setEnabled(true);
+ * PSXRenderStats.Snapshot frameStats = new PSXRenderStats.Snapshot(); // Reused every frame
+ * // At the end of every frame:
+ * PSXRenderStats.snapshotAndReset(frameStats);
+ * long uploads = frameStats.get(PSXRenderStats.Counter.UNIFORM_UPLOADS);
+ * </pre>
+ *
+ * @author bonenaut7 **/
+public final class PSXRenderStats {
+	/** Upper bounds (exclusive, in milliseconds) of the compile time histogram buckets, last bucket has no upper bound **/
+	public static final int[] COMPILE_TIME_BUCKETS_MS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512 };
+	public static final int COMPILE_TIME_BUCKETS = COMPILE_TIME_BUCKETS_MS.length + 1;
+
+	public enum Counter {
+		/** Shader permutations created by {@link by.bonenaut7.gdxpsx.g3d.PSXShaderProvider PSXShaderProvider} **/
+		SHADERS_CREATED,
+		/** Shader lookups of the provider that were resolved by suggested shader or by shader key **/
+		SHADER_LOOKUP_HITS,
+		/** Shader lookups of the provider that required prefix generation (and possibly compilation) **/
+		SHADER_LOOKUP_MISSES,
+		/** Programs compiled by {@link by.bonenaut7.gdxpsx.postprocessing.PSXShaderProgramCache PSXShaderProgramCache} **/
+		PROGRAMS_COMPILED,
+		/** Program cache obtains that returned cached program **/
+		PROGRAM_CACHE_HITS,
+		/** Program cache obtains that compiled new program **/
+		PROGRAM_CACHE_MISSES,
+		/** Total compile time of shaders and programs in nanoseconds, see {@link PSXRenderStats#COMPILE_TIME_BUCKETS_MS histogram} **/
+		COMPILE_TIME_NANOS,
+		/** PSX uniforms uploaded by {@link by.bonenaut7.gdxpsx.g3d.PSXShader PSXShader} **/
+		UNIFORM_UPLOADS,
+		/** PSX uniform uploads skipped because value hasn't changed **/
+		UNIFORM_UPLOADS_SKIPPED,
+		/** Uniform re-uploads of the post-processing and sprite batch shaders **/
+		POST_PROCESS_UNIFORM_UPDATES,
+		/** Binds of the diffuse LUT texture **/
+		TEXTURE_BINDS_DIFFUSE_LUT,
+		/** Binds of the specular LUT texture **/
+		TEXTURE_BINDS_SPECULAR_LUT,
+		/** Binds of the emissive LUT texture **/
+		TEXTURE_BINDS_EMISSIVE_LUT,
+		/** Binds of the palette (CLUT) texture of the indexed textures **/
+		TEXTURE_BINDS_INDEXED_PALETTE,
+		/** Binds of the dithering texture by the post-processing shaders **/
+		TEXTURE_BINDS_DITHERING,
+		/** Binds of the palette lookup table texture by the post-processing shaders **/
+		TEXTURE_BINDS_PALETTE_LUT,
+		/** Full-screen passes drawn by the library (post-processing, low-resolution upscaling) **/
+		POST_PROCESS_PASSES,
+		/** Pixels covered by the post-processing passes **/
+		POST_PROCESS_FILL;
+
+		static final Counter[] values = values();
+	}
+
+	private static final AtomicLong[] counters = createCounters(Counter.values.length);
+	private static final AtomicLong[] compileTimeHistogram = createCounters(COMPILE_TIME_BUCKETS);
+	private static volatile boolean enabled; // Statistics could be collected on other threads (e.g. asset loaders), counters are atomic for the same reason
+
+	private PSXRenderStats() {
+	}
+
+	/** @param enabled true to enable statistics, counters aren't reset **/
+	public static void setEnabled(boolean enabled) {
+		PSXRenderStats.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/** @param counter Counter
+	 *  @return current value of the counter **/
+	public static long get(Counter counter) {
+		return counters[counter.ordinal()].get();
+	}
+
+	/** @param bucket Bucket index, see {@link #COMPILE_TIME_BUCKETS_MS}
+	 *  @return amount of compiles in the bucket **/
+	public static long getCompileTimeBucket(int bucket) {
+		return compileTimeHistogram[bucket].get();
+	}
+
+	/** Copies current values into the snapshot
+	 *  @param output Snapshot where values will be stored
+	 *  @return output **/
+	public static Snapshot snapshot(Snapshot output) {
+		for (int idx = 0; idx != counters.length; idx++) {
+			output.counters[idx] = counters[idx].get();
+		}
+
+		for (int idx = 0; idx != COMPILE_TIME_BUCKETS; idx++) {
+			output.compileTimeHistogram[idx] = compileTimeHistogram[idx].get();
+		}
+
+		return output;
+	}
+
+	/** Moves current values into the snapshot and resets counters, values counted in between aren't lost.
+	 *    Should be called once per frame for per-frame statistics.
+	 *  @param output Snapshot where values will be stored
+	 *  @return output **/
+	public static Snapshot snapshotAndReset(Snapshot output) {
+		for (int idx = 0; idx != counters.length; idx++) {
+			output.counters[idx] = counters[idx].getAndSet(0);
+		}
+
+		for (int idx = 0; idx != COMPILE_TIME_BUCKETS; idx++) {
+			output.compileTimeHistogram[idx] = compileTimeHistogram[idx].getAndSet(0);
+		}
+
+		return output;
+	}
+
+	/** Resets all counters and compile time histogram **/
+	public static void reset() {
+		for (int idx = 0; idx != counters.length; idx++) {
+			counters[idx].set(0);
+		}
+
+		for (int idx = 0; idx != COMPILE_TIME_BUCKETS; idx++) {
+			compileTimeHistogram[idx].set(0);
+		}
+	}
+
+	// Instrumentation hooks, used by the library
+
+	/** @param counter Counter to increment, if statistics are enabled **/
+	public static void increment(Counter counter) {
+		if (enabled) counters[counter.ordinal()].incrementAndGet();
+	}
+
+	/** @param counter Counter to increase, if statistics are enabled
+	 *  @param amount Amount **/
+	public static void add(Counter counter, long amount) {
+		if (enabled) counters[counter.ordinal()].addAndGet(amount);
+	}
+
+	/** @return start time for {@link #compiled(Counter, long)}, or 0 if statistics are disabled **/
+	public static long compileStarted() {
+		return enabled ? TimeUtils.nanoTime() : 0L;
+	}
+
+	/** Records compilation into the counter and compile time histogram, if statistics are enabled
+	 *  @param counter Counter of created shaders or programs
+	 *  @param startTime Time returned by {@link #compileStarted()} **/
+	public static void compiled(Counter counter, long startTime) {
+		if (!enabled) return;
+
+		final long nanos = startTime == 0L ? 0L : TimeUtils.nanoTime() - startTime;
+		final long millis = nanos / 1000000L;
+		int bucket = 0;
+		while (bucket != COMPILE_TIME_BUCKETS_MS.length && millis >= COMPILE_TIME_BUCKETS_MS[bucket]) bucket++;
+
+		counters[counter.ordinal()].incrementAndGet();
+		counters[Counter.COMPILE_TIME_NANOS.ordinal()].addAndGet(nanos);
+		compileTimeHistogram[bucket].incrementAndGet();
+	}
+
+	private static AtomicLong[] createCounters(int amount) {
+		final AtomicLong[] counters = new AtomicLong[amount];
+		for (int idx = 0; idx != amount; idx++) {
+			counters[idx] = new AtomicLong();
+		}
+
+		return counters;
+	}
+
+	/** Exported values of the statistics, could be reused to avoid allocations **/
+	public static final class Snapshot {
+		private final long[] counters = new long[Counter.values.length];
+		private final long[] compileTimeHistogram = new long[COMPILE_TIME_BUCKETS];
+
+		/** @param counter Counter
+		 *  @return value of the counter **/
+		public long get(Counter counter) {
+			return this.counters[counter.ordinal()];
+		}
+
+		/** @param bucket Bucket index, see {@link PSXRenderStats#COMPILE_TIME_BUCKETS_MS}
+		 *  @return amount of compiles in the bucket **/
+		public long getCompileTimeBucket(int bucket) {
+			return this.compileTimeHistogram[bucket];
+		}
+
+		/** @return average compile time in milliseconds, or 0 if nothing has been compiled **/
+		public float getAverageCompileTime() {
+			final long compiles = this.counters[Counter.SHADERS_CREATED.ordinal()] + this.counters[Counter.PROGRAMS_COMPILED.ordinal()];
+			return compiles == 0 ? 0f : this.counters[Counter.COMPILE_TIME_NANOS.ordinal()] / (compiles * 1000000f);
+		}
+
+		/** @param snapshot Snapshot to copy
+		 *  @return self **/
+		public Snapshot set(Snapshot snapshot) {
+			System.arraycopy(snapshot.counters, 0, this.counters, 0, this.counters.length);
+			System.arraycopy(snapshot.compileTimeHistogram, 0, this.compileTimeHistogram, 0, this.compileTimeHistogram.length);
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder builder = new StringBuilder();
+			for (int idx = 0; idx != this.counters.length; idx++) {
+				builder.append(Counter.values[idx].name()).append('=').append(this.counters[idx]).append('\n');
+			}
+
+			builder.append("COMPILE_TIME_HISTOGRAM=");
+			for (int idx = 0; idx != this.compileTimeHistogram.length; idx++) {
+				if (idx != 0) builder.append(',');
+				builder.append(idx == COMPILE_TIME_BUCKETS_MS.length ? ">=" + COMPILE_TIME_BUCKETS_MS[idx - 1] : "<" + COMPILE_TIME_BUCKETS_MS[idx]);
+				builder.append("ms:").append(this.compileTimeHistogram[idx]);
+			}
+
+			return builder.toString();
+		}
+	}
+}
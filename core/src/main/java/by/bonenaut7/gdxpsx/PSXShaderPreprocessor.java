@@ -0,0 +1,696 @@
+package by.bonenaut7.gdxpsx;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/** GLSL preprocessor that resolves the definitions prefix of the shader permutation (like
+ *    {@link by.bonenaut7.gdxpsx.g3d.PSXShader#createPSXPrefix(com.badlogic.gdx.graphics.g3d.Renderable, com.badlogic.gdx.graphics.g3d.shaders.DefaultShader.Config) PSXShader.createPSXPrefix(...)}
+ *    or definitions of the post-processing shaders) before the source is handed to the {@link ShaderProgram}. <br>
+ * Inactive branches of the <code>#if/#ifdef/#ifndef/#elif/#else/#endif</code> blocks are stripped, together with
+ *    comments, redundant whitespace, empty lines and flag definitions that aren't referenced anymore, so the
+ *    driver receives only the code of the permutation. Conditions that can't be resolved in advance (driver
+ *    macros like <code>GL_ES</code>, <code>GL_*</code> and <code>__*</code>, identifiers without definition, definitions made inside
+ *    such blocks, function-like macros) are kept as is and resolved by the driver. Macros aren't expanded in the code. <br>
+ * Preprocessing is enabled by default and is applied by {@link by.bonenaut7.gdxpsx.g3d.PSXShader PSXShader} and
+ *    {@link by.bonenaut7.gdxpsx.postprocessing.PSXShaderProgramCache PSXShaderProgramCache}, source that fails to
+ *    preprocess (unbalanced blocks) is passed to the driver unchanged.
+ *
+ * @author bonenaut7 **/
+public final class PSXShaderPreprocessor {
+	private static final int MAX_EXPANSION_DEPTH = 16;
+	// Marker values of the definitions, compared by identity
+	private static final String UNKNOWN = new String("<unknown>");
+	private static final String FUNCTION = new String("<function>");
+
+	private static boolean enabled = true;
+
+	private PSXShaderPreprocessor() {
+	}
+
+	/** @param enabled false to pass shader sources to the driver as is **/
+	public static void setEnabled(boolean enabled) {
+		PSXShaderPreprocessor.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Preprocesses vertex shader source if preprocessing is enabled, definitions of
+	 *    {@link ShaderProgram#prependVertexCode} are taken into account.
+	 * @param source Vertex shader source with definitions prepended
+	 * @return preprocessed source, or source itself if preprocessing is disabled or failed **/
+	public static String processVertexShader(String source) {
+		return processSafe(source, ShaderProgram.prependVertexCode);
+	}
+
+	/** Preprocesses fragment shader source if preprocessing is enabled, definitions of
+	 *    {@link ShaderProgram#prependFragmentCode} are taken into account.
+	 * @param source Fragment shader source with definitions prepended
+	 * @return preprocessed source, or source itself if preprocessing is disabled or failed **/
+	public static String processFragmentShader(String source) {
+		return processSafe(source, ShaderProgram.prependFragmentCode);
+	}
+
+	/** @param source Shader source with definitions prepended
+	 * @return preprocessed source
+	 * @throws GdxPsxRuntimeException if conditional blocks are unbalanced **/
+	public static String process(String source) {
+		return process(source, null);
+	}
+
+	/** @param source Shader source with definitions prepended
+	 * @param externalDefinitions Source that will be prepended to the result by someone else (like {@link ShaderProgram#prependVertexCode}),
+	 *    only it's definitions are used, can be null
+	 * @return preprocessed source
+	 * @throws GdxPsxRuntimeException if conditional blocks are unbalanced **/
+	public static String process(String source, String externalDefinitions) {
+		final ObjectMap<String, String> macros = new ObjectMap<>();
+		if (externalDefinitions != null && !externalDefinitions.isEmpty()) {
+			new Pass(macros).run(externalDefinitions);
+		}
+
+		final Pass pass = new Pass(macros);
+		pass.run(source);
+		return pass.finish();
+	}
+
+	private static String processSafe(String source, String externalDefinitions) {
+		if (!enabled) {
+			return source;
+		}
+
+		try {
+			return process(source, externalDefinitions);
+		} catch (GdxPsxRuntimeException exception) {
+			return source;
+		}
+	}
+
+	// Source passes
+
+	private static final class Pass {
+		final ObjectMap<String, String> macros;
+		final Array<String> lines = new Array<>();
+		final Array<Block> blocks = new Array<>();
+		final StringBuilder builder = new StringBuilder();
+		int uncertainBlocks; // Amount of blocks that are kept for the driver
+
+		Pass(ObjectMap<String, String> macros) {
+			this.macros = macros;
+		}
+
+		boolean isActive() {
+			return this.blocks.size == 0 || this.blocks.peek().active;
+		}
+
+		void run(String source) {
+			final String code = stripComments(source);
+			int start = 0;
+			while (start < code.length()) {
+				int end = code.indexOf('\n', start);
+				if (end == -1) end = code.length();
+				this.line(code.substring(start, end));
+				start = end + 1;
+			}
+
+			if (this.blocks.size != 0) {
+				throw new GdxPsxRuntimeException("#endif is missing");
+			}
+		}
+
+		void line(String line) {
+			final int length = line.length();
+			int idx = skipWhitespace(line, 0);
+			if (idx == length) {
+				return;
+			}
+
+			if (line.charAt(idx) != '#') {
+				if (this.isActive()) {
+					this.lines.add(minify(line, idx, length));
+				}
+
+				return;
+			}
+
+			idx = skipWhitespace(line, idx + 1);
+			final int nameEnd = skipIdentifier(line, idx);
+			final String directive = line.substring(idx, nameEnd);
+			final int argumentsStart = skipWhitespace(line, nameEnd);
+			final String arguments = line.substring(argumentsStart).trim();
+
+			if (directive.equals("if")) {
+				this.openBlock(directive, arguments, this.isActive() ? this.evaluate(arguments) : null);
+			} else if (directive.equals("ifdef") || directive.equals("ifndef")) {
+				Boolean result = null;
+				if (this.isActive()) {
+					result = this.isDefined(arguments);
+					if (result != null && directive.equals("ifndef")) result = !result;
+				}
+
+				this.openBlock(directive, arguments, result);
+			} else if (directive.equals("elif")) {
+				final Block block = this.peekBlock(directive);
+				if (!block.parentActive || block.taken) {
+					block.active = false;
+					return;
+				}
+
+				final Boolean result = this.evaluate(arguments);
+				if (!block.kept) {
+					block.enter(this, directive, arguments, result);
+				} else if (result == null) {
+					this.lines.add("#elif " + minify(arguments, 0, arguments.length()));
+					block.active = true;
+				} else if (result) {
+					this.lines.add("#else");
+					block.active = block.taken = true;
+				} else {
+					block.active = false;
+				}
+			} else if (directive.equals("else")) {
+				final Block block = this.peekBlock(directive);
+				if (!block.parentActive || block.taken) {
+					block.active = false;
+					return;
+				}
+
+				if (block.kept) this.lines.add("#else");
+				block.active = block.taken = true;
+			} else if (directive.equals("endif")) {
+				final Block block = this.peekBlock(directive);
+				if (block.kept) {
+					this.lines.add("#endif");
+					this.uncertainBlocks--;
+				}
+
+				this.blocks.pop();
+			} else if (!this.isActive()) {
+				return;
+			} else if (directive.equals("define")) {
+				this.define(arguments);
+			} else if (directive.equals("undef")) {
+				if (this.uncertainBlocks != 0) {
+					this.macros.put(arguments, UNKNOWN);
+				} else {
+					this.macros.remove(arguments);
+				}
+
+				this.lines.add("#undef " + arguments);
+			} else if (!directive.isEmpty()) { // #version, #extension, #pragma, #line, #error
+				this.lines.add(arguments.isEmpty() ? "#" + directive : "#" + directive + " " + minify(arguments, 0, arguments.length()));
+			}
+		}
+
+		void openBlock(String directive, String arguments, Boolean result) {
+			final Block block = new Block();
+			block.parentActive = this.isActive();
+			this.blocks.add(block);
+			if (block.parentActive) {
+				block.enter(this, directive, arguments, result);
+			}
+		}
+
+		Block peekBlock(String directive) {
+			if (this.blocks.size == 0) {
+				throw new GdxPsxRuntimeException("#" + directive + " without #if");
+			}
+
+			return this.blocks.peek();
+		}
+
+		void define(String arguments) {
+			final int nameEnd = skipIdentifier(arguments, 0);
+			final String name = arguments.substring(0, nameEnd);
+			if (name.isEmpty()) {
+				throw new GdxPsxRuntimeException("invalid #define " + arguments);
+			}
+
+			final StringBuilder builder = this.builder;
+			builder.setLength(0);
+			builder.append("#define ").append(name);
+
+			int valueStart = nameEnd;
+			final boolean function = nameEnd < arguments.length() && arguments.charAt(nameEnd) == '(';
+			if (function) {
+				valueStart = arguments.indexOf(')', nameEnd) + 1;
+				if (valueStart == 0) {
+					throw new GdxPsxRuntimeException("invalid #define " + arguments);
+				}
+
+				builder.append(minify(arguments, nameEnd, valueStart));
+			}
+
+			final String value = minify(arguments, skipWhitespace(arguments, valueStart), arguments.length());
+			if (!value.isEmpty()) {
+				builder.append(' ').append(value);
+			}
+
+			this.macros.put(name, this.uncertainBlocks != 0 ? UNKNOWN : function ? FUNCTION : value);
+			this.lines.add(builder.toString());
+		}
+
+		/** @return true or false if macro is known to be defined or not, or null if it's up to the driver **/
+		Boolean isDefined(String name) {
+			if (isDriverMacro(name)) return null;
+			final String value = this.macros.get(name);
+			if (value == UNKNOWN) return null;
+			return value != null;
+		}
+
+		/** @return result of the condition, or null if it's up to the driver **/
+		Boolean evaluate(String expression) {
+			final Long value = new Expression(this, expression, 0).evaluate();
+			return value == null ? null : value.longValue() != 0L;
+		}
+
+		/** Removes flag definitions that aren't referenced anymore and blocks that became empty, and joins the lines **/
+		String finish() {
+			final ObjectSet<String> identifiers = new ObjectSet<>();
+			for (int idx = 0; idx != this.lines.size; idx++) {
+				final String line = this.lines.get(idx);
+				collectIdentifiers(line, line.startsWith("#define ") ? skipIdentifier(line, 8) : 0, identifiers);
+			}
+
+			final Array<String> output = new Array<>(this.lines.size);
+			for (int idx = 0; idx != this.lines.size; idx++) {
+				final String line = this.lines.get(idx);
+				if (line.startsWith("#define ") && skipIdentifier(line, 8) == line.length() && !identifiers.contains(line.substring(8))) {
+					continue;
+				}
+
+				if (line.equals("#endif")) {
+					while (output.peek().equals("#else") || output.peek().startsWith("#elif ")) output.pop();
+					if (output.peek().startsWith("#if")) {
+						output.pop();
+						continue;
+					}
+				}
+
+				output.add(line);
+			}
+
+			final StringBuilder builder = this.builder;
+			builder.setLength(0);
+			for (int idx = 0; idx != output.size; idx++) {
+				builder.append(output.get(idx)).append('\n');
+			}
+
+			return builder.toString();
+		}
+	}
+
+	private static final class Block {
+		boolean parentActive; // Whether block is inside of the active code
+		boolean active; // Whether current branch is emitted
+		boolean taken; // Whether one of the branches is known to be taken, remaining branches are skipped
+		boolean kept; // Whether directives of the block are kept for the driver
+
+		void enter(Pass pass, String directive, String arguments, Boolean result) {
+			if (result == null) {
+				pass.lines.add("#" + (directive.equals("elif") ? "if" : directive) + " " + minify(arguments, 0, arguments.length()));
+				pass.uncertainBlocks++;
+				this.kept = true;
+				this.active = true;
+			} else {
+				this.active = this.taken = result;
+			}
+		}
+	}
+
+	/** Recursive descent evaluation of the <code>#if</code> expression, null stands for the value that is known only by the driver **/
+	private static final class Expression {
+		final Pass pass;
+		final String source;
+		final int depth;
+		int position;
+		boolean unsupported;
+
+		Expression(Pass pass, String source, int depth) {
+			this.pass = pass;
+			this.source = source;
+			this.depth = depth;
+		}
+
+		Long evaluate() {
+			final Long value = this.or();
+			this.skip();
+			return this.unsupported || this.position != this.source.length() ? null : value;
+		}
+
+		Long or() {
+			Long left = this.and();
+			while (this.accept("||")) {
+				final Long right = this.and();
+				if (isTrue(left) || isTrue(right)) left = 1L;
+				else left = left == null || right == null ? null : 0L;
+			}
+
+			return left;
+		}
+
+		Long and() {
+			Long left = this.bitwiseOr();
+			while (this.accept("&&")) {
+				final Long right = this.bitwiseOr();
+				if (isFalse(left) || isFalse(right)) left = 0L;
+				else left = left == null || right == null ? null : 1L;
+			}
+
+			return left;
+		}
+
+		Long bitwiseOr() {
+			Long left = this.bitwiseXor();
+			while (this.peek() == '|' && this.peek(1) != '|') {
+				this.position++;
+				final Long right = this.bitwiseXor();
+				left = left == null || right == null ? null : left | right;
+			}
+
+			return left;
+		}
+
+		Long bitwiseXor() {
+			Long left = this.bitwiseAnd();
+			while (this.peek() == '^') {
+				this.position++;
+				final Long right = this.bitwiseAnd();
+				left = left == null || right == null ? null : left ^ right;
+			}
+
+			return left;
+		}
+
+		Long bitwiseAnd() {
+			Long left = this.equality();
+			while (this.peek() == '&' && this.peek(1) != '&') {
+				this.position++;
+				final Long right = this.equality();
+				left = left == null || right == null ? null : left & right;
+			}
+
+			return left;
+		}
+
+		Long equality() {
+			Long left = this.relational();
+			while (true) {
+				final boolean equals;
+				if (this.accept("==")) equals = true;
+				else if (this.accept("!=")) equals = false;
+				else return left;
+				final Long right = this.relational();
+				left = left == null || right == null ? null : (left.longValue() == right.longValue()) == equals ? 1L : 0L;
+			}
+		}
+
+		Long relational() {
+			Long left = this.shift();
+			while (true) {
+				final char operator = this.peek();
+				if ((operator != '<' && operator != '>') || this.peek(1) == operator) return left;
+				final boolean orEqual = this.peek(1) == '=';
+				this.position += orEqual ? 2 : 1;
+				final Long right = this.shift();
+				if (left == null || right == null) {
+					left = null;
+					continue;
+				}
+
+				final long a = left, b = right;
+				final boolean result = operator == '<' ? (orEqual ? a <= b : a < b) : (orEqual ? a >= b : a > b);
+				left = result ? 1L : 0L;
+			}
+		}
+
+		Long shift() {
+			Long left = this.additive();
+			while (true) {
+				final boolean leftShift;
+				if (this.accept("<<")) leftShift = true;
+				else if (this.accept(">>")) leftShift = false;
+				else return left;
+				final Long right = this.additive();
+				left = left == null || right == null ? null : leftShift ? left << right : left >> right;
+			}
+		}
+
+		Long additive() {
+			Long left = this.multiplicative();
+			while (true) {
+				final char operator = this.peek();
+				if (operator != '+' && operator != '-') return left;
+				this.position++;
+				final Long right = this.multiplicative();
+				left = left == null || right == null ? null : operator == '+' ? left + right : left - right;
+			}
+		}
+
+		Long multiplicative() {
+			Long left = this.unary();
+			while (true) {
+				final char operator = this.peek();
+				if (operator != '*' && operator != '/' && operator != '%') return left;
+				this.position++;
+				final Long right = this.unary();
+				if (left == null || right == null || (operator != '*' && right == 0L)) left = null;
+				else left = operator == '*' ? left * right : operator == '/' ? left / right : left % right;
+			}
+		}
+
+		Long unary() {
+			final char operator = this.peek();
+			if (operator == '!' || operator == '-' || operator == '+' || operator == '~') {
+				this.position++;
+				final Long value = this.unary();
+				if (value == null) return null;
+				return operator == '!' ? (value == 0L ? 1L : 0L) : operator == '-' ? -value : operator == '~' ? ~value : value;
+			}
+
+			return this.primary();
+		}
+
+		Long primary() {
+			final char current = this.peek();
+			if (current == '(') {
+				this.position++;
+				final Long value = this.or();
+				if (!this.accept(")")) this.unsupported = true;
+				return value;
+			}
+
+			if (current >= '0' && current <= '9') {
+				return this.number();
+			}
+
+			final int end = skipIdentifier(this.source, this.position);
+			if (end == this.position) {
+				this.unsupported = true;
+				return null;
+			}
+
+			final String identifier = this.source.substring(this.position, end);
+			this.position = end;
+			if (identifier.equals("defined")) {
+				final boolean parentheses = this.accept("(");
+				this.skip();
+				final int nameEnd = skipIdentifier(this.source, this.position);
+				final String name = this.source.substring(this.position, nameEnd);
+				this.position = nameEnd;
+				if (name.isEmpty() || (parentheses && !this.accept(")"))) {
+					this.unsupported = true;
+					return null;
+				}
+
+				final Boolean defined = this.pass.isDefined(name);
+				return defined == null ? null : defined ? 1L : 0L;
+			}
+
+			final String value = isDriverMacro(identifier) ? null : this.pass.macros.get(identifier);
+			if (value == null || value == UNKNOWN || value == FUNCTION || value.isEmpty() || this.depth == MAX_EXPANSION_DEPTH) {
+				return null;
+			}
+
+			return new Expression(this.pass, value, this.depth + 1).evaluate();
+		}
+
+		Long number() {
+			int end = this.position;
+			int radix = 10;
+			if (this.source.startsWith("0x", end) || this.source.startsWith("0X", end)) {
+				radix = 16;
+				end += 2;
+			} else if (this.source.charAt(end) == '0' && end + 1 < this.source.length() && isDigit(this.source.charAt(end + 1))) {
+				radix = 8;
+				end++;
+			}
+
+			final int start = end;
+			while (end < this.source.length() && Character.digit(this.source.charAt(end), radix) != -1) end++;
+			final String digits = this.source.substring(start, end);
+			if (end < this.source.length() && (this.source.charAt(end) == 'u' || this.source.charAt(end) == 'U')) end++;
+			this.position = end;
+			if (end < this.source.length() && isIdentifierPart(this.source.charAt(end))) { // Floats and invalid literals
+				this.unsupported = true;
+				return null;
+			}
+
+			try {
+				return digits.isEmpty() ? 0L : Long.parseLong(digits, radix);
+			} catch (NumberFormatException exception) {
+				this.unsupported = true;
+				return null;
+			}
+		}
+
+		char peek() {
+			return this.peek(0);
+		}
+
+		char peek(int offset) {
+			this.skip();
+			final int index = this.position + offset;
+			return index < this.source.length() ? this.source.charAt(index) : '\0';
+		}
+
+		boolean accept(String token) {
+			this.skip();
+			if (this.source.startsWith(token, this.position)) {
+				this.position += token.length();
+				return true;
+			}
+
+			return false;
+		}
+
+		void skip() {
+			this.position = skipWhitespace(this.source, this.position);
+		}
+
+		static boolean isTrue(Long value) {
+			return value != null && value.longValue() != 0L;
+		}
+
+		static boolean isFalse(Long value) {
+			return value != null && value.longValue() == 0L;
+		}
+	}
+
+	// Text utilities
+
+	/** Removes comments and line continuations, keeping line structure of the code **/
+	static String stripComments(String source) {
+		final int length = source.length();
+		final StringBuilder builder = new StringBuilder(length);
+		int idx = 0;
+		while (idx < length) {
+			final char current = source.charAt(idx);
+			final char next = idx + 1 < length ? source.charAt(idx + 1) : '\0';
+			if (current == '/' && next == '/') {
+				while (idx < length && source.charAt(idx) != '\n') idx++;
+			} else if (current == '/' && next == '*') {
+				final int end = source.indexOf("*/", idx + 2);
+				final int commentEnd = end == -1 ? length : end + 2;
+				builder.append(source.indexOf('\n', idx) != -1 && source.indexOf('\n', idx) < commentEnd ? '\n' : ' ');
+				idx = commentEnd;
+			} else if (current == '\\' && (next == '\n' || next == '\r')) {
+				idx += next == '\r' && idx + 2 < length && source.charAt(idx + 2) == '\n' ? 3 : 2;
+			} else if (current == '\r') {
+				idx++;
+			} else {
+				builder.append(current);
+				idx++;
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/** Collapses whitespace in the range, whitespace is kept only where it separates two identifiers/numbers or two operators **/
+	static String minify(String line, int start, int end) {
+		final StringBuilder builder = new StringBuilder(end - start);
+		boolean space = false;
+		for (int idx = start; idx < end; idx++) {
+			final char current = line.charAt(idx);
+			if (isWhitespace(current)) {
+				space = builder.length() != 0;
+				continue;
+			}
+
+			if (space) {
+				final char previous = builder.charAt(builder.length() - 1);
+				if ((isIdentifierPart(previous) && isIdentifierPart(current)) || (isOperator(previous) && isOperator(current))) {
+					builder.append(' ');
+				}
+
+				space = false;
+			}
+
+			builder.append(current);
+		}
+
+		return builder.toString();
+	}
+
+	static boolean isDriverMacro(String name) {
+		return name.startsWith("GL_") || name.startsWith("__");
+	}
+
+	private static void collectIdentifiers(String line, int start, ObjectSet<String> output) {
+		int idx = start;
+		final int length = line.length();
+		while (idx < length) {
+			final char current = line.charAt(idx);
+			if (isIdentifierStart(current)) {
+				final int end = skipIdentifier(line, idx);
+				output.add(line.substring(idx, end));
+				idx = end;
+			} else if (isIdentifierPart(current)) { // Skipping numbers with suffixes
+				while (idx < length && isIdentifierPart(line.charAt(idx))) idx++;
+			} else {
+				idx++;
+			}
+		}
+	}
+
+	private static int skipWhitespace(String text, int idx) {
+		while (idx < text.length() && isWhitespace(text.charAt(idx))) idx++;
+		return idx;
+	}
+
+	private static int skipIdentifier(String text, int idx) {
+		if (idx >= text.length() || !isIdentifierStart(text.charAt(idx))) return idx;
+		while (idx < text.length() && (isIdentifierStart(text.charAt(idx)) || isDigit(text.charAt(idx)))) idx++;
+		return idx;
+	}
+
+	private static boolean isWhitespace(char character) {
+		return character == ' ' || character == '\t' || character == '\n' || character == '\r' || character == '\f' || character == 0x0B;
+	}
+
+	private static boolean isIdentifierStart(char character) {
+		return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || character == '_';
+	}
+
+	private static boolean isIdentifierPart(char character) {
+		return isIdentifierStart(character) || isDigit(character) || character == '.';
+	}
+
+	private static boolean isDigit(char character) {
+		return character >= '0' && character <= '9';
+	}
+
+	private static boolean isOperator(char character) {
+		switch (character) {
+			case '+': case '-': case '*': case '/': case '%': case '<': case '>':
+			case '=': case '!': case '&': case '|': case '^': case '~': case '?': case ':':
+				return true;
+			default:
+				return false;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IdentityMap;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute;
+
+/** Bakes {@link LookupTextureAttribute LUT remapping} into the textures at load time, so static materials don't pay for
+ *    the dependent LUT texture fetch in every fragment. Remapping is the same as <code>applyLUT</code> of the PSX shaders
+ *    (512x512 LUT of 8x8 blue slices, sampled with the filter of the LUT texture), rows are processed in parallel
+ *    with {@link ForkJoinPool}. <br>
+ * Baked textures are cached by (texture, LUT) pair and owned by the baker, so they're disposed with {@link #dispose()}.
+ *    LUTs marked as {@link LookupTextureAttribute#setDynamic(boolean) dynamic} are kept for the runtime path.
+ *    Note that runtime path remaps filtered color, so baked result of linear filtered textures could differ slightly. <br>
+ * Textures are created on the calling thread, so baking should be done on the rendering thread.
+ *
+ * @author bonenaut7 **/
+public class LUTBaker implements Disposable {
+	private static final int MIN_ROWS_PER_TASK = 16;
+
+	private final ForkJoinPool pool;
+	private final IdentityMap<Texture, IdentityMap<Texture, Texture>> cache = new IdentityMap<>();
+	private int cacheSize;
+
+	/** Creates baker that uses {@link ForkJoinPool#commonPool() common pool} **/
+	public LUTBaker() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/** @param pool Pool that rows are baked in **/
+	public LUTBaker(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new GdxPsxRuntimeException("pool can't be null");
+		}
+
+		this.pool = pool;
+	}
+
+	/** Bakes LUTs of every material of the model, see {@link #bake(Material)}
+	 * @param model Model
+	 * @return amount of baked textures **/
+	public int bake(Model model) {
+		int baked = 0;
+		for (Material material : model.materials) {
+			baked += this.bake(material);
+		}
+
+		return baked;
+	}
+
+	/** Replaces diffuse, specular and emissive textures of the material with baked ones and removes their LUT attributes.
+	 *    Dynamic LUTs and LUTs without corresponding texture are kept.
+	 * @param material Material
+	 * @return amount of baked textures **/
+	public int bake(Material material) {
+		int baked = 0;
+		if (this.bake(material, TextureAttribute.Diffuse, LookupTextureAttribute.diffuseLUT)) baked++;
+		if (this.bake(material, TextureAttribute.Specular, LookupTextureAttribute.specularLUT)) baked++;
+		if (this.bake(material, TextureAttribute.Emissive, LookupTextureAttribute.emissiveLUT)) baked++;
+		return baked;
+	}
+
+	/** @param texture Source texture, pixels are taken from the texture data (texture should be loaded from pixmap or file)
+	 * @param lut Lookup table texture
+	 * @return cached baked texture, with filtering, wrapping and mipmapping of the source texture **/
+	public Texture bake(Texture texture, Texture lut) {
+		IdentityMap<Texture, Texture> textureCache = this.cache.get(texture);
+		if (textureCache == null) {
+			this.cache.put(texture, textureCache = new IdentityMap<>());
+		}
+
+		Texture baked = textureCache.get(lut);
+		if (baked == null) {
+			final Pixmap sourcePixmap = consumePixmap(texture);
+			final Pixmap lutPixmap = consumePixmap(lut);
+			final Pixmap bakedPixmap;
+			try {
+				bakedPixmap = this.bake(sourcePixmap, lutPixmap, lut.getMagFilter() != TextureFilter.Nearest);
+			} finally {
+				releasePixmap(texture, sourcePixmap);
+				releasePixmap(lut, lutPixmap);
+			}
+
+			// Managed texture data keeps the pixmap, so texture could be restored after context loss.
+			// Mipmaps are generated if source has them, otherwise MipMap* min filter would leave texture incomplete
+			baked = new Texture(new PixmapTextureData(bakedPixmap, null, texture.getTextureData().useMipMaps(), false, true));
+			baked.setFilter(texture.getMinFilter(), texture.getMagFilter());
+			baked.setWrap(texture.getUWrap(), texture.getVWrap());
+			textureCache.put(lut, baked);
+			this.cacheSize++;
+		}
+
+		return baked;
+	}
+
+	/** @param source Source pixmap
+	 * @param lut Lookup table pixmap
+	 * @param linear true if LUT should be sampled with linear filtering
+	 * @return new RGBA8888 pixmap with remapped colors **/
+	public Pixmap bake(Pixmap source, Pixmap lut, boolean linear) {
+		final Pixmap sourceRGBA = toRGBA8888(source);
+		final Pixmap lutRGBA = toRGBA8888(lut);
+		final Pixmap output = new Pixmap(source.getWidth(), source.getHeight(), Format.RGBA8888);
+		try {
+			this.pool.invoke(new RowsTask(new BakeJob(sourceRGBA, lutRGBA, output, linear, this.pool.getParallelism()), 0, source.getHeight()));
+		} finally {
+			if (sourceRGBA != source) sourceRGBA.dispose();
+			if (lutRGBA != lut) lutRGBA.dispose();
+		}
+
+		return output;
+	}
+
+	/** @return amount of cached baked textures **/
+	public int getCacheSize() {
+		return this.cacheSize;
+	}
+
+	/** Disposes all baked textures **/
+	@Override
+	public void dispose() {
+		for (IdentityMap<Texture, Texture> textureCache : this.cache.values()) {
+			for (Texture baked : textureCache.values()) {
+				baked.getTextureData().consumePixmap().dispose();
+				baked.dispose();
+			}
+		}
+
+		this.cache.clear();
+		this.cacheSize = 0;
+	}
+
+	private boolean bake(Material material, long textureType, long lutType) {
+		final TextureAttribute textureAttribute = material.get(TextureAttribute.class, textureType);
+		final LookupTextureAttribute lutAttribute = material.get(LookupTextureAttribute.class, lutType);
+		if (textureAttribute == null || lutAttribute == null || lutAttribute.isDynamic()) {
+			return false;
+		}
+
+		// Attribute could be shared, so it's replaced with the copy
+		final TextureAttribute baked = (TextureAttribute)textureAttribute.copy();
+		baked.textureDescription.texture = this.bake(textureAttribute.textureDescription.texture, lutAttribute.getTextureDescriptor().texture);
+		material.set(baked);
+		material.remove(lutType);
+		return true;
+	}
+
+	private static Pixmap consumePixmap(Texture texture) {
+		final TextureData data = texture.getTextureData();
+		if (data.getType() != TextureData.TextureDataType.Pixmap) {
+			throw new GdxPsxRuntimeException("texture data should be of Pixmap type");
+		}
+
+		if (!data.isPrepared()) {
+			data.prepare();
+		}
+
+		return data.consumePixmap();
+	}
+
+	private static void releasePixmap(Texture texture, Pixmap pixmap) {
+		if (texture.getTextureData().disposePixmap()) {
+			pixmap.dispose();
+		}
+	}
+
+	private static Pixmap toRGBA8888(Pixmap pixmap) {
+		if (pixmap.getFormat() == Format.RGBA8888) {
+			return pixmap;
+		}
+
+		final Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Format.RGBA8888);
+		converted.setBlending(Blending.None);
+		converted.drawPixmap(pixmap, 0, 0);
+		return converted;
+	}
+
+	// Remapping of the rows, same as applyLUT in the shaders
+	private static final class BakeJob {
+		private final ByteBuffer source;
+		private final ByteBuffer lut;
+		private final ByteBuffer output;
+		private final int width;
+		private final int lutWidth;
+		private final int lutHeight;
+		private final boolean linear;
+		private final int rowsPerTask;
+
+		BakeJob(Pixmap source, Pixmap lut, Pixmap output, boolean linear, int parallelism) {
+			this.source = source.getPixels();
+			this.lut = lut.getPixels();
+			this.output = output.getPixels();
+			this.width = source.getWidth();
+			this.lutWidth = lut.getWidth();
+			this.lutHeight = lut.getHeight();
+			this.linear = linear;
+			this.rowsPerTask = Math.max(MIN_ROWS_PER_TASK, source.getHeight() / (parallelism * 4));
+		}
+
+		void bakeRows(int fromRow, int toRow) {
+			final float[] color0 = new float[4];
+			final float[] color1 = new float[4];
+			for (int offset = fromRow * this.width * 4, end = toRow * this.width * 4; offset != end; offset += 4) {
+				final float red = (this.source.get(offset) & 0xFF) / 255f;
+				final float green = (this.source.get(offset + 1) & 0xFF) / 255f;
+				final float blue = (this.source.get(offset + 2) & 0xFF) / 255f * 63f;
+
+				final float slice0 = (float)Math.floor(blue);
+				final float slice1 = (float)Math.ceil(blue);
+				this.sample(slice0, red, green, color0);
+				this.sample(slice1, red, green, color1);
+
+				final float mix = blue - slice0;
+				for (int component = 0; component != 4; component++) {
+					final float value = color0[component] + (color1[component] - color0[component]) * mix;
+					this.output.put(offset + component, (byte)Math.round(Math.min(Math.max(value, 0f), 1f) * 255f));
+				}
+			}
+		}
+
+		private void sample(float slice, float red, float green, float[] output) {
+			final float quadY = (float)Math.floor(slice / 8f);
+			final float quadX = slice - quadY * 8f;
+			final float u = quadX * 0.125f + 0.5f / 512f + (0.125f - 1f / 512f) * red;
+			final float v = quadY * 0.125f + 0.5f / 512f + (0.125f - 1f / 512f) * green;
+
+			if (!this.linear) {
+				this.texel(clamp((int)Math.floor(u * this.lutWidth), this.lutWidth), clamp((int)Math.floor(v * this.lutHeight), this.lutHeight), 1f, output, true);
+				return;
+			}
+
+			final float x = u * this.lutWidth - 0.5f;
+			final float y = v * this.lutHeight - 0.5f;
+			final int x0 = (int)Math.floor(x);
+			final int y0 = (int)Math.floor(y);
+			final float fractionX = x - x0;
+			final float fractionY = y - y0;
+			this.texel(clamp(x0, this.lutWidth), clamp(y0, this.lutHeight), (1f - fractionX) * (1f - fractionY), output, true);
+			this.texel(clamp(x0 + 1, this.lutWidth), clamp(y0, this.lutHeight), fractionX * (1f - fractionY), output, false);
+			this.texel(clamp(x0, this.lutWidth), clamp(y0 + 1, this.lutHeight), (1f - fractionX) * fractionY, output, false);
+			this.texel(clamp(x0 + 1, this.lutWidth), clamp(y0 + 1, this.lutHeight), fractionX * fractionY, output, false);
+		}
+
+		private void texel(int x, int y, float weight, float[] output, boolean first) {
+			final int offset = (y * this.lutWidth + x) * 4;
+			for (int component = 0; component != 4; component++) {
+				final float value = (this.lut.get(offset + component) & 0xFF) / 255f * weight;
+				output[component] = first ? value : output[component] + value;
+			}
+		}
+
+		private static int clamp(int value, int size) {
+			return value < 0 ? 0 : value >= size ? size - 1 : value;
+		}
+	}
+
+	private static final class RowsTask extends RecursiveAction {
+		private static final long serialVersionUID = -3208318237741307462L;
+
+		private final BakeJob job;
+		private final int fromRow;
+		private final int toRow;
+
+		RowsTask(BakeJob job, int fromRow, int toRow) {
+			this.job = job;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toRow - this.fromRow <= this.job.rowsPerTask) {
+				this.job.bakeRows(this.fromRow, this.toRow);
+				return;
+			}
+
+			final int middleRow = (this.fromRow + this.toRow) >>> 1;
+			invokeAll(new RowsTask(this.job, this.fromRow, middleRow), new RowsTask(this.job, middleRow, this.toRow));
+		}
+	}
+}
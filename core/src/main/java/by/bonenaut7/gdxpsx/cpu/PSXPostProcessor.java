@@ -0,0 +1,565 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.postprocessing.DitheringMatrix;
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShader;
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderAbstract;
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderStatic;
+import by.bonenaut7.gdxpsx.postprocessing.PaletteLUT;
+import by.bonenaut7.gdxpsx.postprocessing.ResolutionDownscalingType;
+
+/** CPU implementation of the post-processing pipeline (resolution downscaling, dithering,
+ *    legacy dithering, color reduction and palette), follows <code>postprocessing.static.frag</code> and
+ *    <code>postprocessing.dynamic.frag</code> operation by operation in single precision floats. <br>
+ * Could be used without GPU at all: for offline screenshot processing, baking textures, or for
+ *    headless golden-image tests. Configuration is set with the same setters as in
+ *    {@link PSXPostProcessingShader}, or copied from the shader with {@link #set(PSXPostProcessingShader)}.
+ *
+ * <br><br>
+ * Processing is equal to drawing input pixmap as the texture (nearest filtering, clamp to edge)
+ *    with {@link com.badlogic.gdx.graphics.g2d.SpriteBatch SpriteBatch} at it's own size and without blending,
+ *    input resolution is the pixmap size. Discarded pixels (alpha less than 0.01) are left untouched in the output. <br>
+ * Output matches the GPU as long as GPU follows IEEE-754 single precision without fused multiply-add and
+ *    rounds to nearest when writing into RGBA8 framebuffer (desktop GL with highp floats, GLES mediump isn't matched).
+ *
+ * <br><br>
+ * Rows are processed in parallel with {@link ForkJoinPool}, pixels are processed in reused primitive arrays without allocations.
+ *    Processor instance shouldn't be used from multiple threads at the same time.
+ *
+ * @author bonenaut7 **/
+public class PSXPostProcessor {
+	private static final int MIN_ROWS_PER_TASK = 8;
+
+	private final ForkJoinPool pool;
+
+	// Configuration, same as in PSXPostProcessingShaderAbstract
+	private boolean isDownscalingEnabled = false;
+	private ResolutionDownscalingType downscalingType = ResolutionDownscalingType.SCALE;
+	private float downscalingScale = 1.0f;
+	private final Vector2 downscalingTargetResolution = new Vector2();
+
+	private boolean isDitheringEnabled = false;
+	private float ditheringIntensity = 0.1f; // post-multiplied by 0.01
+	private float ditheringScale = 1.0f;
+	private DitheringMatrix ditheringMatrix = DitheringMatrix.BAYER_8x8;
+	private boolean isLegacyDitheringEnabled = false;
+	private boolean isDitheringTextureEnabled = false;
+
+	private boolean isColorReductionEnabled = false;
+	private float colorReductionFactor = 255f;
+
+	private boolean isPaletteEnabled = false;
+	private PaletteLUT palette;
+
+	private boolean isStaticPrecisionEnabled = false;
+
+	// Processing state, prepared once per process(...) call
+	private byte[] source = new byte[0];
+	private byte[] destination = new byte[0];
+	private float[] ditheringTable = new float[0];
+	private int width, height, rowsPerTask;
+	private final Vector2 tmpResolution = new Vector2();
+	private final Vector2 tmpDownscaling = new Vector2();
+	private float downscalingX, downscalingY, invDownscalingX, invDownscalingY;
+	private float ditheringResolutionX, ditheringResolutionY;
+	private float ditheringIntensityValue, colorReductionValue;
+	private int ditheringSizeX, ditheringSizeY;
+
+	/** Creates processor that uses {@link ForkJoinPool#commonPool() common pool} **/
+	public PSXPostProcessor() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/** @param pool Pool that rows are processed in **/
+	public PSXPostProcessor(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new GdxPsxRuntimeException("pool can't be null");
+		}
+
+		this.pool = pool;
+	}
+
+	/** Copies configuration from the shader. Input resolution isn't copied, pixmap size is used instead. <br>
+	 * {@link #setStaticPrecisionEnabled(boolean) Static precision} is enabled if shader is {@link PSXPostProcessingShaderStatic}.
+	 * @param shader Post-processing shader
+	 * @return self **/
+	public PSXPostProcessor set(PSXPostProcessingShader shader) {
+		this.isDownscalingEnabled = shader.isDownscalingEnabled();
+		this.downscalingType = shader.getDownscalingType();
+		this.downscalingScale = shader.getDownscalingScale();
+		this.downscalingTargetResolution.set(shader.getDownscalingTargetWidth(), shader.getDownscalingTargetHeight());
+		this.isDitheringEnabled = shader.isDitheringEnabled();
+		this.ditheringIntensity = shader.getDitheringIntensity();
+		this.ditheringScale = shader.getDitheringScale();
+		this.ditheringMatrix = shader.getDitheringMatrix();
+		this.isLegacyDitheringEnabled = shader.isLegacyDitheringEnabled();
+		this.isDitheringTextureEnabled = shader.isDitheringTextureEnabled();
+		this.isColorReductionEnabled = shader.isColorReductionEnabled();
+		this.colorReductionFactor = shader.getColorReductionFactor();
+		this.isPaletteEnabled = shader.isPaletteEnabled();
+		this.palette = shader.getPalette();
+		this.isStaticPrecisionEnabled = shader instanceof PSXPostProcessingShaderStatic;
+		return this;
+	}
+
+	// Resolution downscaling
+
+	public boolean isDownscalingEnabled() {
+		return this.isDownscalingEnabled;
+	}
+
+	public PSXPostProcessor setDownscalingEnabled(boolean enabled) {
+		this.isDownscalingEnabled = enabled;
+		return this;
+	}
+
+	public ResolutionDownscalingType getDownscalingType() {
+		return this.downscalingType;
+	}
+
+	public float getDownscalingScale() {
+		return this.downscalingScale;
+	}
+
+	public PSXPostProcessor setDownscalingFromScale(float scale) {
+		if (scale < 1) {
+			throw new GdxPsxRuntimeException("scale can't be less than 1");
+		}
+
+		this.downscalingType = ResolutionDownscalingType.SCALE;
+		this.downscalingScale = scale;
+		return this;
+	}
+
+	public int getDownscalingTargetWidth() {
+		return (int)this.downscalingTargetResolution.x;
+	}
+
+	public int getDownscalingTargetHeight() {
+		return (int)this.downscalingTargetResolution.y;
+	}
+
+	public PSXPostProcessor setDownscalingToResolution(int width, int height) {
+		if (width < 1 || height < 1) {
+			throw new GdxPsxRuntimeException("width and height can't be less than 1");
+		}
+
+		this.downscalingType = ResolutionDownscalingType.FIT_TO_RESOLUTION;
+		this.downscalingTargetResolution.set(width, height);
+		return this;
+	}
+
+	// Dithering
+
+	public boolean isDitheringEnabled() {
+		return this.isDitheringEnabled;
+	}
+
+	public PSXPostProcessor setDitheringEnabled(boolean enabled) {
+		this.isDitheringEnabled = enabled;
+		return this;
+	}
+
+	public float getDitheringIntensity() {
+		return this.ditheringIntensity;
+	}
+
+	public PSXPostProcessor setDitheringIntensity(float intensity) {
+		this.ditheringIntensity = intensity;
+		return this;
+	}
+
+	public float getDitheringScale() {
+		return this.ditheringScale;
+	}
+
+	public PSXPostProcessor setDitheringScale(float scale) {
+		if (scale < 1) {
+			throw new GdxPsxRuntimeException("scale can't be less than 1");
+		}
+
+		this.ditheringScale = scale;
+		return this;
+	}
+
+	public DitheringMatrix getDitheringMatrix() {
+		return this.ditheringMatrix;
+	}
+
+	public PSXPostProcessor setDitheringMatrix(DitheringMatrix ditheringMatrix) {
+		if (ditheringMatrix == null) {
+			throw new GdxPsxRuntimeException("ditheringMatrix can't be null");
+		}
+
+		this.ditheringMatrix = ditheringMatrix;
+		return this;
+	}
+
+	public boolean isLegacyDitheringEnabled() {
+		return this.isLegacyDitheringEnabled;
+	}
+
+	public PSXPostProcessor setLegacyDitheringEnabled(boolean enabled) {
+		this.isLegacyDitheringEnabled = enabled;
+		return this;
+	}
+
+	public boolean isDitheringTextureEnabled() {
+		return this.isDitheringTextureEnabled;
+	}
+
+	/** @param enabled Enables quantization of the dithering matrix values to 8 bits,
+	 *    same as with {@link PSXPostProcessingShader#setDitheringTextureEnabled(boolean) dithering texture}
+	 * @return self **/
+	public PSXPostProcessor setDitheringTextureEnabled(boolean enabled) {
+		this.isDitheringTextureEnabled = enabled;
+		return this;
+	}
+
+	// Color reduction
+
+	public boolean isColorReductionEnabled() {
+		return this.isColorReductionEnabled;
+	}
+
+	public PSXPostProcessor setColorReductionEnabled(boolean enabled) {
+		this.isColorReductionEnabled = enabled;
+		return this;
+	}
+
+	public float getColorReductionFactor() {
+		return this.colorReductionFactor;
+	}
+
+	public PSXPostProcessor setColorReduction(float colorReduction) {
+		if (colorReduction < 1) {
+			throw new GdxPsxRuntimeException("colorReduction can't be less than 1");
+		}
+
+		this.colorReductionFactor = colorReduction;
+		return this;
+	}
+
+	// Palette
+
+	public boolean isPaletteEnabled() {
+		return this.isPaletteEnabled;
+	}
+
+	public PSXPostProcessor setPaletteEnabled(boolean enabled) {
+		this.isPaletteEnabled = enabled;
+		return this;
+	}
+
+	public PaletteLUT getPalette() {
+		return this.palette;
+	}
+
+	public PSXPostProcessor setPalette(PaletteLUT palette) {
+		this.palette = palette;
+		return this;
+	}
+
+	// Precision
+
+	public boolean isStaticPrecisionEnabled() {
+		return this.isStaticPrecisionEnabled;
+	}
+
+	/** @param enabled Rounds constants (intensity, scales, color reduction factor) to the same decimal
+	 *    places as {@link PSXPostProcessingShaderStatic} writes them into the shader definitions.
+	 *    Should be disabled to match {@link by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderDynamic PSXPostProcessingShaderDynamic}
+	 *    that passes them as uniforms.
+	 * @return self **/
+	public PSXPostProcessor setStaticPrecisionEnabled(boolean enabled) {
+		this.isStaticPrecisionEnabled = enabled;
+		return this;
+	}
+
+	// Processing
+
+	/** @param input Input pixmap
+	 * @return new {@link Format#RGBA8888 RGBA8888} pixmap with processed image, should be disposed by the caller **/
+	public Pixmap process(Pixmap input) {
+		final Pixmap output = new Pixmap(input.getWidth(), input.getHeight(), Format.RGBA8888);
+		this.process(input, output);
+		return output;
+	}
+
+	/** Processes input pixmap into the output pixmap, input and output could be the same pixmap.
+	 * @param input Input pixmap, converted to {@link Format#RGBA8888 RGBA8888} if it has other format
+	 * @param output Output pixmap, should have the same size as input and {@link Format#RGBA8888 RGBA8888} format **/
+	public void process(Pixmap input, Pixmap output) {
+		if (input.getWidth() != output.getWidth() || input.getHeight() != output.getHeight()) {
+			throw new GdxPsxRuntimeException("input and output should have the same size");
+		}
+
+		if (output.getFormat() != Format.RGBA8888) {
+			throw new GdxPsxRuntimeException("output should have RGBA8888 format");
+		}
+
+		final int length = input.getWidth() * input.getHeight() * 4;
+		if (this.source.length < length) {
+			this.source = new byte[length];
+			this.destination = new byte[length];
+		}
+
+		readPixels(input, this.source, length);
+		readPixels(output, this.destination, length);
+
+		this.prepare(input.getWidth(), input.getHeight());
+		this.pool.invoke(new RowsTask(this, 0, this.height));
+
+		final ByteBuffer pixels = output.getPixels();
+		final int position = pixels.position();
+		pixels.put(this.destination, 0, length);
+		pixels.position(position);
+	}
+
+	private void prepare(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.rowsPerTask = Math.max(MIN_ROWS_PER_TASK, height / (this.pool.getParallelism() * 4));
+
+		if (this.isDownscalingEnabled) {
+			final Vector2 downscaling = PSXPostProcessingShaderAbstract.calculateDownscaling(this.downscalingType, this.downscalingScale,
+				this.downscalingTargetResolution, this.tmpResolution.set(width, height), this.tmpDownscaling);
+			this.downscalingX = this.round(downscaling.x, 4);
+			this.downscalingY = this.round(downscaling.y, 4);
+			this.invDownscalingX = this.round(1f / downscaling.x, 8);
+			this.invDownscalingY = this.round(1f / downscaling.y, 8);
+		}
+
+		if (this.isDitheringEnabled) {
+			final float invScale = this.round(1f / this.ditheringScale, 8);
+			this.ditheringResolutionX = width * invScale;
+			this.ditheringResolutionY = height * invScale;
+			this.ditheringIntensityValue = this.round(this.ditheringIntensity * 0.01f, 8);
+			this.ditheringSizeX = this.ditheringMatrix.getSizeX();
+			this.ditheringSizeY = this.ditheringMatrix.getSizeY();
+
+			final float[] matrix = this.ditheringMatrix.getMatrix();
+			if (this.ditheringTable.length < matrix.length) {
+				this.ditheringTable = new float[matrix.length];
+			}
+
+			for (int idx = 0; idx != matrix.length; idx++) {
+				if (this.isDitheringTextureEnabled) {
+					// Same encoding as in DitheringMatrix#getTexture(), decoded as texel.a * 2.0 - 1.0
+					this.ditheringTable[idx] = MathUtils.round(MathUtils.clamp((matrix[idx] + 1f) * 0.5f, 0f, 1f) * 255f) / 255f * 2f - 1f;
+				} else {
+					// Table is always written with 4 decimal places
+					this.ditheringTable[idx] = Float.parseFloat(String.format(Locale.US, "%.4f", matrix[idx]));
+				}
+			}
+		}
+
+		if (this.isColorReductionEnabled) {
+			this.colorReductionValue = this.round(this.colorReductionFactor, 2);
+		}
+	}
+
+	private float round(float value, int decimalPlaces) {
+		if (this.isStaticPrecisionEnabled) {
+			return Float.parseFloat(String.format(Locale.US, "%." + decimalPlaces + "f", value));
+		}
+
+		return value;
+	}
+
+	private void processRows(int fromRow, int toRow) {
+		final byte[] source = this.source, destination = this.destination;
+		final int width = this.width, height = this.height;
+		final boolean downscaling = this.isDownscalingEnabled;
+		final boolean dithering = this.isDitheringEnabled;
+		final PaletteLUT palette = this.isPaletteEnabled ? this.palette : null;
+		final boolean legacyDithering = palette == null && dithering && this.isLegacyDitheringEnabled && this.isColorReductionEnabled;
+		final boolean colorReduction = palette == null && this.isColorReductionEnabled && !(dithering && this.isLegacyDitheringEnabled);
+		final float colorReductionValue = this.colorReductionValue;
+		final float paletteCells = palette != null ? palette.getSize() - 1f : 0f;
+
+		for (int y = fromRow; y != toRow; y++) {
+			final float texCoordY = (y + 0.5f) / height;
+			for (int x = 0; x != width; x++) {
+				final float texCoordX = (x + 0.5f) / width;
+
+				// Resolution downscaling
+				float sampleX = texCoordX, sampleY = texCoordY;
+				if (downscaling) {
+					sampleX = floor(texCoordX * this.downscalingX) * this.invDownscalingX;
+					sampleY = floor(texCoordY * this.downscalingY) * this.invDownscalingY;
+				}
+
+				// Input color, nearest filtering with clamp to edge
+				final int sourceIndex = (clamp((int)floor(sampleX * width), width) + clamp((int)floor(sampleY * height), height) * width) * 4;
+				float r = (source[sourceIndex] & 0xFF) / 255f;
+				float g = (source[sourceIndex + 1] & 0xFF) / 255f;
+				float b = (source[sourceIndex + 2] & 0xFF) / 255f;
+				final float a = (source[sourceIndex + 3] & 0xFF) / 255f;
+
+				// Dithering matrix
+				if (dithering) {
+					final float ditherValue = this.getDitherValue(texCoordX * this.ditheringResolutionX, texCoordY * this.ditheringResolutionY);
+
+					if (legacyDithering) {
+						// convertRGBtoYUV
+						final float grayscale = r * 0.2126f + 0.7152f * g + 0.0722f * b;
+						float yuvX = grayscale;
+						float yuvY = (b - grayscale) / 1.8556f + 0.5f;
+						float yuvZ = (r - grayscale) / 1.5748f + 0.5f;
+
+						// Flattened dither value, original one is [-1.0 to 1.0], field below is [0.0 to 1.0]
+						final float normDither = (ditherValue + 1f) * 0.5f;
+						yuvX = blendChannel(yuvX, normDither, colorReductionValue);
+						yuvY = blendChannel(yuvY, normDither, colorReductionValue) - 0.5f;
+						yuvZ = blendChannel(yuvZ, normDither, colorReductionValue) - 0.5f;
+
+						// convertYUVtoRGB
+						r = yuvX + yuvZ * 1.5648f;
+						g = yuvX + yuvY * -0.187324f + yuvZ * -0.468124f;
+						b = yuvX + yuvY * 1.8556f;
+					} else {
+						final float ditherOffset = ditherValue * this.ditheringIntensityValue;
+						r += ditherOffset;
+						g += ditherOffset;
+						b += ditherOffset;
+					}
+				}
+
+				// Color reduction
+				if (colorReduction) {
+					r = floor(r * colorReductionValue) / colorReductionValue;
+					g = floor(g * colorReductionValue) / colorReductionValue;
+					b = floor(b * colorReductionValue) / colorReductionValue;
+				}
+
+				// Palette
+				if (palette != null) {
+					final int color = palette.getColor(toCell(r, paletteCells), toCell(g, paletteCells), toCell(b, paletteCells));
+					r = (color >>> 24) / 255f;
+					g = (color >>> 16 & 0xFF) / 255f;
+					b = (color >>> 8 & 0xFF) / 255f;
+				}
+
+				// Output, discarded fragments are leaving framebuffer untouched
+				if (a < 0.01f) {
+					continue;
+				}
+
+				final int destinationIndex = (x + y * width) * 4;
+				destination[destinationIndex] = toByte(r);
+				destination[destinationIndex + 1] = toByte(g);
+				destination[destinationIndex + 2] = toByte(b);
+				destination[destinationIndex + 3] = toByte(a);
+			}
+		}
+	}
+
+	private float getDitherValue(float ditheringX, float ditheringY) {
+		final float sizeX = this.ditheringSizeX, sizeY = this.ditheringSizeY;
+		if (this.isDitheringTextureEnabled) {
+			// fract((floor(ditheringResolution) + 0.5) / size), sampled with nearest filtering
+			final float u = fract((floor(ditheringX) + 0.5f) / sizeX);
+			final float v = fract((floor(ditheringY) + 0.5f) / sizeY);
+			return this.ditheringTable[clamp((int)floor(u * sizeX), this.ditheringSizeX) + clamp((int)floor(v * sizeY), this.ditheringSizeY) * this.ditheringSizeX];
+		}
+
+		// Row stride is the Y size, same as in the shader, index out of the table is undefined on GPU and clamped here
+		final float index = floor(mod(ditheringX, sizeX)) + floor(mod(ditheringY, sizeY)) * sizeY;
+		return this.ditheringTable[Math.min((int)index, this.ditheringSizeX * this.ditheringSizeY - 1)];
+	}
+
+	// mix(floored, ceiled, step(normDither, roundingError(channel, floored, ceiled)))
+	private static float blendChannel(float channel, float normDither, float colorReduction) {
+		final float floored = floor(channel * colorReduction) / colorReduction;
+		final float ceiled = ceil(channel * colorReduction) / colorReduction;
+		final float roundingError = Math.abs(channel - floored) / Math.abs(floored - ceiled);
+		final float step = roundingError < normDither ? 0f : 1f;
+		return floored * (1f - step) + ceiled * step;
+	}
+
+	// floor(clamp(channel, 0.0, 1.0) * (size - 1.0) + 0.5)
+	private static int toCell(float channel, float cells) {
+		return (int)floor(MathUtils.clamp(channel, 0f, 1f) * cells + 0.5f);
+	}
+
+	private static float floor(float value) {
+		return (float)Math.floor(value);
+	}
+
+	private static float ceil(float value) {
+		return (float)Math.ceil(value);
+	}
+
+	private static float fract(float value) {
+		return value - floor(value);
+	}
+
+	private static float mod(float value, float modulus) {
+		return value - modulus * floor(value / modulus);
+	}
+
+	private static int clamp(int value, int size) {
+		return value < 0 ? 0 : value >= size ? size - 1 : value;
+	}
+
+	// Normalized fixed-point conversion, same as writing into RGBA8 framebuffer
+	private static byte toByte(float value) {
+		return (byte)(int)(MathUtils.clamp(value, 0f, 1f) * 255f + 0.5f);
+	}
+
+	private static void readPixels(Pixmap pixmap, byte[] output, int length) {
+		if (pixmap.getFormat() == Format.RGBA8888) {
+			final ByteBuffer pixels = pixmap.getPixels();
+			final int position = pixels.position();
+			pixels.get(output, 0, length);
+			pixels.position(position);
+			return;
+		}
+
+		final Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Format.RGBA8888);
+		try {
+			converted.setBlending(Blending.None);
+			converted.drawPixmap(pixmap, 0, 0);
+			converted.getPixels().get(output, 0, length);
+		} finally {
+			converted.dispose();
+		}
+	}
+
+	private static final class RowsTask extends RecursiveAction {
+		private static final long serialVersionUID = 6532467094258167326L;
+
+		private final PSXPostProcessor processor;
+		private final int fromRow;
+		private final int toRow;
+
+		RowsTask(PSXPostProcessor processor, int fromRow, int toRow) {
+			this.processor = processor;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toRow - this.fromRow <= this.processor.rowsPerTask) {
+				this.processor.processRows(this.fromRow, this.toRow);
+				return;
+			}
+
+			final int middleRow = (this.fromRow + this.toRow) >>> 1;
+			invokeAll(new RowsTask(this.processor, this.fromRow, middleRow), new RowsTask(this.processor, middleRow, this.toRow));
+		}
+	}
+}
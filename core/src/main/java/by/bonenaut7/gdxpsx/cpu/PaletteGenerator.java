@@ -0,0 +1,463 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.IntArray;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.postprocessing.PaletteLUT;
+
+/** Generates optimized N-color palette from the set of textures or pixmaps (for example from all textures of the level),
+ *    result could be used for the {@link PaletteLUT} of the post-processing. <br>
+ * Sources are accumulated into the histogram of 15-bit RGB buckets (5 bits per channel), so memory and generation time
+ *    don't depend on the amount of source pixels. Palette is found with median-cut over the histogram, followed by
+ *    k-means refinement. Histogram accumulation and k-means iterations are running in parallel with {@link ForkJoinPool},
+ *    partial histograms are merged pairwise without locks. <br>
+ * Pixels with alpha less than 128 are ignored. Generator instance shouldn't be used from multiple threads at the same time.
+ *
+ * @author bonenaut7 **/
+public class PaletteGenerator {
+	public static final int DEFAULT_ITERATIONS = 8;
+
+	private static final int BUCKET_BITS = 5;
+	private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+	private static final int BUCKETS = 1 << BUCKET_BITS * 3;
+	private static final int MIN_ROWS_PER_TASK = 16;
+	private static final int MIN_BUCKETS_PER_TASK = 1024;
+
+	private final ForkJoinPool pool;
+	private final long[] histogram = new long[BUCKETS];
+	private long pixelCount;
+
+	/** Creates generator that uses {@link ForkJoinPool#commonPool() common pool} **/
+	public PaletteGenerator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/** @param pool Pool that histogram and k-means are computed in **/
+	public PaletteGenerator(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new GdxPsxRuntimeException("pool can't be null");
+		}
+
+		this.pool = pool;
+	}
+
+	/** Adds pixmap pixels into the histogram
+	 * @param pixmap Source pixmap, {@link Format#RGBA8888 RGBA8888} and {@link Format#RGB888 RGB888} are read directly,
+	 *    other formats are converted to RGBA8888 first
+	 * @return self **/
+	public PaletteGenerator add(Pixmap pixmap) {
+		if (pixmap.getFormat() == Format.RGBA8888 || pixmap.getFormat() == Format.RGB888) {
+			this.addHistogram(pixmap);
+			return this;
+		}
+
+		final Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Format.RGBA8888);
+		try {
+			converted.setBlending(Blending.None);
+			converted.drawPixmap(pixmap, 0, 0);
+			this.addHistogram(converted);
+		} finally {
+			converted.dispose();
+		}
+
+		return this;
+	}
+
+	/** Adds texture pixels into the histogram, pixels are taken from the {@link TextureData texture data}
+	 *    (texture should be loaded from pixmap or file, custom texture data isn't supported)
+	 * @param texture Source texture
+	 * @return self **/
+	public PaletteGenerator add(Texture texture) {
+		final TextureData data = texture.getTextureData();
+		if (data.getType() != TextureData.TextureDataType.Pixmap) {
+			throw new GdxPsxRuntimeException("texture data should be of Pixmap type");
+		}
+
+		if (!data.isPrepared()) {
+			data.prepare();
+		}
+
+		final Pixmap pixmap = data.consumePixmap();
+		try {
+			this.add(pixmap);
+		} finally {
+			if (data.disposePixmap()) {
+				pixmap.dispose();
+			}
+		}
+
+		return this;
+	}
+
+	/** @return amount of pixels added into the histogram **/
+	public long getPixelCount() {
+		return this.pixelCount;
+	}
+
+	/** Clears the histogram **/
+	public void reset() {
+		for (int idx = 0; idx != BUCKETS; idx++) {
+			this.histogram[idx] = 0;
+		}
+
+		this.pixelCount = 0;
+	}
+
+	/** @param colors Amount of palette colors
+	 * @return palette colors in RGBA8888 format, could contain less colors if histogram has less unique buckets **/
+	public int[] generate(int colors) {
+		return this.generate(colors, DEFAULT_ITERATIONS);
+	}
+
+	/** @param colors Amount of palette colors, from 1 to {@link PaletteLUT#MAX_COLORS}
+	 * @param iterations Amount of k-means iterations, 0 to use median-cut result as is
+	 * @return palette colors in RGBA8888 format, could contain less colors if histogram has less unique buckets **/
+	public int[] generate(int colors, int iterations) {
+		if (colors < 1 || colors > PaletteLUT.MAX_COLORS) {
+			throw new GdxPsxRuntimeException("colors should be in range from 1 to " + PaletteLUT.MAX_COLORS);
+		}
+
+		if (this.pixelCount == 0) {
+			throw new GdxPsxRuntimeException("no pixels have been added");
+		}
+
+		// Non-empty buckets only, median-cut and k-means are working with them instead of the whole histogram
+		int bucketCount = 0;
+		for (int idx = 0; idx != BUCKETS; idx++) {
+			if (this.histogram[idx] != 0) bucketCount++;
+		}
+
+		final int[] buckets = new int[bucketCount];
+		for (int idx = 0, bucket = 0; idx != BUCKETS; idx++) {
+			if (this.histogram[idx] != 0) buckets[bucket++] = idx;
+		}
+
+		final float[] centroids = this.medianCut(buckets, Math.min(colors, bucketCount));
+		for (int iteration = 0; iteration != iterations; iteration++) {
+			if (!this.refine(buckets, centroids)) {
+				break;
+			}
+		}
+
+		// Centroids could be rounded into the same color
+		final IntArray palette = new IntArray(centroids.length / 3);
+		for (int idx = 0; idx != centroids.length; idx += 3) {
+			final int color = Math.round(centroids[idx]) << 24 | Math.round(centroids[idx + 1]) << 16 | Math.round(centroids[idx + 2]) << 8 | 0xFF;
+			if (!palette.contains(color)) {
+				palette.add(color);
+			}
+		}
+
+		return palette.toArray();
+	}
+
+	/** @param colors Amount of palette colors
+	 * @return palette pixmap with single row of colors, should be disposed by the caller **/
+	public Pixmap generatePixmap(int colors) {
+		final int[] palette = this.generate(colors);
+		final Pixmap pixmap = new Pixmap(palette.length, 1, Format.RGBA8888);
+		for (int idx = 0; idx != palette.length; idx++) {
+			pixmap.drawPixel(idx, 0, palette[idx]);
+		}
+
+		return pixmap;
+	}
+
+	/** @param colors Amount of palette colors
+	 * @param size Amount of lookup table cells per channel
+	 * @return lookup table of the generated palette, built in parallel **/
+	public PaletteLUT generateLUT(int colors, int size) {
+		return new PaletteLUTBuilder(this.pool).build(new PaletteLUT(this.generate(colors), size));
+	}
+
+	/** Generates palette from the pixmaps with the {@link ForkJoinPool#commonPool() common pool}
+	 * @param colors Amount of palette colors
+	 * @param sources Source pixmaps
+	 * @return palette colors in RGBA8888 format **/
+	public static int[] generatePalette(int colors, Pixmap... sources) {
+		final PaletteGenerator generator = new PaletteGenerator();
+		for (Pixmap source : sources) {
+			generator.add(source);
+		}
+
+		return generator.generate(colors);
+	}
+
+	// Median-cut
+
+	// Returns centroids as [r, g, b] triplets in 8-bit space
+	private float[] medianCut(int[] buckets, int colors) {
+		// Boxes are ranges of the buckets array, that is reordered during splits
+		final int[] boxStarts = new int[colors];
+		final int[] boxEnds = new int[colors];
+		boxEnds[0] = buckets.length;
+		int boxCount = 1;
+
+		while (boxCount != colors) {
+			// Splitting box with the largest channel range weighted by population
+			int splitBox = -1, splitChannel = 0;
+			long splitScore = 0;
+			for (int box = 0; box != boxCount; box++) {
+				if (boxEnds[box] - boxStarts[box] < 2) continue;
+
+				int minR = BUCKET_MASK, minG = BUCKET_MASK, minB = BUCKET_MASK, maxR = 0, maxG = 0, maxB = 0;
+				long population = 0;
+				for (int idx = boxStarts[box]; idx != boxEnds[box]; idx++) {
+					final int bucket = buckets[idx];
+					final int r = bucket >>> BUCKET_BITS * 2, g = bucket >>> BUCKET_BITS & BUCKET_MASK, b = bucket & BUCKET_MASK;
+					minR = Math.min(minR, r); maxR = Math.max(maxR, r);
+					minG = Math.min(minG, g); maxG = Math.max(maxG, g);
+					minB = Math.min(minB, b); maxB = Math.max(maxB, b);
+					population += this.histogram[bucket];
+				}
+
+				final int rangeR = maxR - minR, rangeG = maxG - minG, rangeB = maxB - minB;
+				final int channel = rangeR >= rangeG && rangeR >= rangeB ? 0 : rangeG >= rangeB ? 1 : 2;
+				final long score = (long)Math.max(rangeR, Math.max(rangeG, rangeB)) * population;
+				if (score > splitScore) {
+					splitBox = box;
+					splitChannel = channel;
+					splitScore = score;
+				}
+			}
+
+			if (splitBox == -1) {
+				break; // Every box is a single bucket
+			}
+
+			final int start = boxStarts[splitBox], end = boxEnds[splitBox];
+			sortByChannel(buckets, start, end, splitChannel);
+
+			// Weighted median, both halves are kept non-empty
+			long population = 0;
+			for (int idx = start; idx != end; idx++) population += this.histogram[buckets[idx]];
+
+			int median = start + 1;
+			for (long accumulated = this.histogram[buckets[start]]; median < end - 1 && accumulated * 2 < population; median++) {
+				accumulated += this.histogram[buckets[median]];
+			}
+
+			boxStarts[boxCount] = median;
+			boxEnds[boxCount] = end;
+			boxEnds[splitBox] = median;
+			boxCount++;
+		}
+
+		final float[] centroids = new float[boxCount * 3];
+		for (int box = 0; box != boxCount; box++) {
+			double r = 0, g = 0, b = 0;
+			long population = 0;
+			for (int idx = boxStarts[box]; idx != boxEnds[box]; idx++) {
+				final int bucket = buckets[idx];
+				final long weight = this.histogram[bucket];
+				r += getBucketRed(bucket) * (double)weight;
+				g += getBucketGreen(bucket) * (double)weight;
+				b += getBucketBlue(bucket) * (double)weight;
+				population += weight;
+			}
+
+			centroids[box * 3] = (float)(r / population);
+			centroids[box * 3 + 1] = (float)(g / population);
+			centroids[box * 3 + 2] = (float)(b / population);
+		}
+
+		return centroids;
+	}
+
+	// Counting sort by the channel value, buckets with the same channel value are keeping their order
+	private static void sortByChannel(int[] buckets, int start, int end, int channel) {
+		final int shift = (2 - channel) * BUCKET_BITS;
+		final int[] offsets = new int[BUCKET_MASK + 2];
+		for (int idx = start; idx != end; idx++) {
+			offsets[(buckets[idx] >>> shift & BUCKET_MASK) + 1]++;
+		}
+
+		for (int idx = 1; idx != offsets.length; idx++) {
+			offsets[idx] += offsets[idx - 1];
+		}
+
+		final int[] sorted = new int[end - start];
+		for (int idx = start; idx != end; idx++) {
+			sorted[offsets[buckets[idx] >>> shift & BUCKET_MASK]++] = buckets[idx];
+		}
+
+		System.arraycopy(sorted, 0, buckets, start, sorted.length);
+	}
+
+	// K-means
+
+	// Returns true if any centroid has been moved
+	private boolean refine(int[] buckets, float[] centroids) {
+		final RefineTask task = new RefineTask(this, buckets, centroids, 0, buckets.length);
+		this.pool.invoke(task);
+
+		boolean moved = false;
+		final double[] sums = task.sums;
+		for (int centroid = 0; centroid != centroids.length / 3; centroid++) {
+			final double population = sums[centroid * 4 + 3];
+			if (population == 0) {
+				continue; // Empty cluster keeps it's centroid
+			}
+
+			for (int channel = 0; channel != 3; channel++) {
+				final float value = (float)(sums[centroid * 4 + channel] / population);
+				moved |= Math.abs(value - centroids[centroid * 3 + channel]) > 0.01f;
+				centroids[centroid * 3 + channel] = value;
+			}
+		}
+
+		return moved;
+	}
+
+	private static float getBucketRed(int bucket) {
+		return expand(bucket >>> BUCKET_BITS * 2);
+	}
+
+	private static float getBucketGreen(int bucket) {
+		return expand(bucket >>> BUCKET_BITS & BUCKET_MASK);
+	}
+
+	private static float getBucketBlue(int bucket) {
+		return expand(bucket & BUCKET_MASK);
+	}
+
+	// 5-bit channel to the 8-bit space
+	private static float expand(int value) {
+		return value * (255f / BUCKET_MASK);
+	}
+
+	// Leaf tasks are sized from the parallelism, left halves are counting into the histogram of the parent
+	//  and right halves are merged into it pairwise up the tree, so no locks are needed
+	private void addHistogram(Pixmap pixmap) {
+		final int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, pixmap.getHeight() / (this.pool.getParallelism() * 4));
+		this.pixelCount += this.pool.invoke(new HistogramTask(pixmap, this.histogram, rowsPerTask, 0, pixmap.getHeight()));
+	}
+
+	// Returns amount of counted pixels
+	private static final class HistogramTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 2474101539716458236L;
+
+		private final Pixmap pixmap;
+		private final long[] histogram;
+		private final int rowsPerTask;
+		private final int fromRow;
+		private final int toRow;
+
+		HistogramTask(Pixmap pixmap, long[] histogram, int rowsPerTask, int fromRow, int toRow) {
+			this.pixmap = pixmap;
+			this.histogram = histogram;
+			this.rowsPerTask = rowsPerTask;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected Long compute() {
+			final long[] histogram = this.histogram;
+			if (this.toRow - this.fromRow > this.rowsPerTask) {
+				final int middleRow = (this.fromRow + this.toRow) >>> 1;
+				final long[] rightHistogram = new long[BUCKETS];
+				final HistogramTask right = new HistogramTask(this.pixmap, rightHistogram, this.rowsPerTask, middleRow, this.toRow);
+				right.fork();
+				final long leftPixels = new HistogramTask(this.pixmap, histogram, this.rowsPerTask, this.fromRow, middleRow).compute();
+				final long rightPixels = right.join();
+				for (int idx = 0; idx != BUCKETS; idx++) {
+					histogram[idx] += rightHistogram[idx];
+				}
+
+				return leftPixels + rightPixels;
+			}
+
+			// Absolute gets, buffer position isn't shared between tasks
+			final ByteBuffer pixels = this.pixmap.getPixels();
+			final boolean alpha = this.pixmap.getFormat() == Format.RGBA8888;
+			final int bytesPerPixel = alpha ? 4 : 3;
+			final int rowSize = this.pixmap.getWidth() * bytesPerPixel;
+			long pixelCount = 0;
+
+			for (int offset = this.fromRow * rowSize, end = this.toRow * rowSize; offset != end; offset += bytesPerPixel) {
+				if (alpha && (pixels.get(offset + 3) & 0xFF) < 128) {
+					continue;
+				}
+
+				final int r = (pixels.get(offset) & 0xFF) >>> 8 - BUCKET_BITS;
+				final int g = (pixels.get(offset + 1) & 0xFF) >>> 8 - BUCKET_BITS;
+				final int b = (pixels.get(offset + 2) & 0xFF) >>> 8 - BUCKET_BITS;
+				histogram[r << BUCKET_BITS * 2 | g << BUCKET_BITS | b]++;
+				pixelCount++;
+			}
+
+			return pixelCount;
+		}
+	}
+
+	private static final class RefineTask extends RecursiveAction {
+		private static final long serialVersionUID = -6390612581307618225L;
+
+		private final PaletteGenerator generator;
+		private final int[] buckets;
+		private final float[] centroids;
+		private final int from;
+		private final int to;
+		// [r, g, b, population] weighted sums per centroid
+		final double[] sums;
+
+		RefineTask(PaletteGenerator generator, int[] buckets, float[] centroids, int from, int to) {
+			this.generator = generator;
+			this.buckets = buckets;
+			this.centroids = centroids;
+			this.from = from;
+			this.to = to;
+			this.sums = new double[centroids.length / 3 * 4];
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > MIN_BUCKETS_PER_TASK) {
+				final int middle = (this.from + this.to) >>> 1;
+				final RefineTask left = new RefineTask(this.generator, this.buckets, this.centroids, this.from, middle);
+				final RefineTask right = new RefineTask(this.generator, this.buckets, this.centroids, middle, this.to);
+				invokeAll(left, right);
+				for (int idx = 0; idx != this.sums.length; idx++) {
+					this.sums[idx] = left.sums[idx] + right.sums[idx];
+				}
+
+				return;
+			}
+
+			final long[] histogram = this.generator.histogram;
+			final float[] centroids = this.centroids;
+			for (int idx = this.from; idx != this.to; idx++) {
+				final int bucket = this.buckets[idx];
+				final float r = getBucketRed(bucket), g = getBucketGreen(bucket), b = getBucketBlue(bucket);
+
+				int nearest = 0;
+				float nearestDistance = Float.MAX_VALUE;
+				for (int centroid = 0; centroid != centroids.length; centroid += 3) {
+					final float deltaR = centroids[centroid] - r, deltaG = centroids[centroid + 1] - g, deltaB = centroids[centroid + 2] - b;
+					final float distance = deltaR * deltaR + deltaG * deltaG + deltaB * deltaB;
+					if (distance < nearestDistance) {
+						nearest = centroid / 3;
+						nearestDistance = distance;
+					}
+				}
+
+				final double weight = histogram[bucket];
+				this.sums[nearest * 4] += r * weight;
+				this.sums[nearest * 4 + 1] += g * weight;
+				this.sums[nearest * 4 + 2] += b * weight;
+				this.sums[nearest * 4 + 3] += weight;
+			}
+		}
+	}
+}
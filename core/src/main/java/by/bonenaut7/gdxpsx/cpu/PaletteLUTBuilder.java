@@ -0,0 +1,87 @@
+package by.bonenaut7.gdxpsx.cpu;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.postprocessing.PaletteLUT;
+
+/** Builds {@link PaletteLUT} in parallel with {@link ForkJoinPool}, blue slices of the table are built independently.
+ *
+ * @author bonenaut7 **/
+public class PaletteLUTBuilder {
+	private final ForkJoinPool pool;
+
+	/** Creates builder that uses {@link ForkJoinPool#commonPool() common pool} **/
+	public PaletteLUTBuilder() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/** @param pool Pool that slices are built in **/
+	public PaletteLUTBuilder(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new GdxPsxRuntimeException("pool can't be null");
+		}
+
+		this.pool = pool;
+	}
+
+	/** @param lut Table to build
+	 * @return built table **/
+	public PaletteLUT build(PaletteLUT lut) {
+		this.pool.invoke(new SlicesTask(lut, 0, lut.getSize()));
+		return lut;
+	}
+
+	/** @param palette Palette pixmap, see {@link PaletteLUT#getPaletteColors(Pixmap)}
+	 * @param size Amount of cells per channel
+	 * @return built table **/
+	public PaletteLUT build(Pixmap palette, int size) {
+		return this.build(new PaletteLUT(PaletteLUT.getPaletteColors(palette), size));
+	}
+
+	/** Same as {@link PaletteLUT#loadOrCreate(FileHandle, Pixmap, int)}, but table is built in parallel
+	 * @param cacheFile Cache file, could be missing
+	 * @param palette Palette pixmap, see {@link PaletteLUT#getPaletteColors(Pixmap)}
+	 * @param size Amount of cells per channel
+	 * @return table **/
+	public PaletteLUT loadOrBuild(FileHandle cacheFile, Pixmap palette, int size) {
+		final int[] colors = PaletteLUT.getPaletteColors(palette);
+		final PaletteLUT cached = PaletteLUT.loadIfMatches(cacheFile, colors, size);
+		if (cached != null) {
+			return cached;
+		}
+
+		final PaletteLUT lut = this.build(new PaletteLUT(colors, size));
+		lut.save(cacheFile);
+		return lut;
+	}
+
+	private static final class SlicesTask extends RecursiveAction {
+		private static final long serialVersionUID = -2795023604781543362L;
+
+		private final PaletteLUT lut;
+		private final int fromBlue;
+		private final int toBlue;
+
+		SlicesTask(PaletteLUT lut, int fromBlue, int toBlue) {
+			this.lut = lut;
+			this.fromBlue = fromBlue;
+			this.toBlue = toBlue;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toBlue - this.fromBlue == 1) {
+				this.lut.buildSlices(this.fromBlue, this.toBlue);
+				return;
+			}
+
+			final int middleBlue = (this.fromBlue + this.toBlue) >>> 1;
+			invokeAll(new SlicesTask(this.lut, this.fromBlue, middleBlue), new SlicesTask(this.lut, middleBlue, this.toBlue));
+		}
+	}
+}
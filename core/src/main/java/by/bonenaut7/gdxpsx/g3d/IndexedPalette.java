@@ -0,0 +1,149 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+
+/** Color lookup table (CLUT) atlas for the {@link IndexedTexture}s, every row is a palette of up to 256 colors. <br>
+ * Like the CLUTs in the PS1 VRAM, many indexed textures could share one palette texture, so switching between them
+ *    doesn't require rebinding of the palette. Rows are added with {@link #add(int[])}, texture is created lazily
+ *    and updated on the next {@link #getTexture()} call.
+ *
+ * @author bonenaut7 **/
+public class IndexedPalette implements Disposable {
+	public static final int COLORS = 256;
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final Pixmap pixmap;
+	private final int capacity;
+	private int size;
+
+	// Texture is created lazily, and re-created if it was created by another application instance
+	private Texture texture;
+	private Application textureApplication;
+	private boolean dirty;
+	private final IntBuffer boundTexture = BufferUtils.newIntBuffer(16);
+
+	public IndexedPalette() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** @param capacity Maximum amount of palette rows **/
+	public IndexedPalette(int capacity) {
+		if (capacity < 1) {
+			throw new GdxPsxRuntimeException("capacity should be positive");
+		}
+
+		this.capacity = capacity;
+		this.pixmap = new Pixmap(COLORS, capacity, Format.RGBA8888);
+		this.pixmap.setBlending(Pixmap.Blending.None);
+	}
+
+	/** @param colors Palette colors in RGBA8888 format, up to 256 colors
+	 * @return index of the added row **/
+	public int add(int[] colors) {
+		return this.add(colors, colors.length);
+	}
+
+	/** @param colors Palette colors in RGBA8888 format
+	 * @param count Amount of colors to add, up to 256
+	 * @return index of the added row **/
+	public int add(int[] colors, int count) {
+		if (count < 1 || count > COLORS) {
+			throw new GdxPsxRuntimeException("palette should contain from 1 to " + COLORS + " colors");
+		}
+
+		if (this.size == this.capacity) {
+			throw new GdxPsxRuntimeException("palette is full, capacity: " + this.capacity);
+		}
+
+		final ByteBuffer pixels = this.pixmap.getPixels();
+		final int row = this.size++;
+		for (int idx = 0; idx != COLORS; idx++) {
+			final int color = idx < count ? colors[idx] : 0;
+			final int offset = (row * COLORS + idx) * 4;
+			pixels.put(offset, (byte)(color >>> 24));
+			pixels.put(offset + 1, (byte)(color >>> 16));
+			pixels.put(offset + 2, (byte)(color >>> 8));
+			pixels.put(offset + 3, (byte)color);
+		}
+
+		this.dirty = true;
+		return row;
+	}
+
+	/** @param row Palette row
+	 * @param index Color index
+	 * @return color in RGBA8888 format **/
+	public int getColor(int row, int index) {
+		return this.pixmap.getPixel(index, row);
+	}
+
+	/** @return amount of added rows **/
+	public int getSize() {
+		return this.size;
+	}
+
+	/** @return maximum amount of rows **/
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/** @param row Palette row
+	 * @return texture V coordinate of the row center **/
+	public float getRowCoordinate(int row) {
+		return (row + 0.5f) / this.capacity;
+	}
+
+	/** Creates palette texture, or uploads rows added since the last upload. Texture bound to the active texture unit
+	 *    is restored afterwards, so it could be called while rendering without confusing the texture binder.
+	 * @return palette texture with all added rows, <code>256 x capacity</code> **/
+	public Texture getTexture() {
+		final boolean create = this.texture == null || this.textureApplication != Gdx.app;
+		if (!create && !this.dirty) return this.texture;
+
+		// Texture creation and upload bind the palette texture to the active unit and then unbind it
+		Gdx.gl.glGetIntegerv(GL20.GL_TEXTURE_BINDING_2D, this.boundTexture);
+		final int boundTexture = this.boundTexture.get(0);
+
+		// Managed texture data keeps the pixmap, so texture could be restored after context loss. Managed texture can't be drawn to,
+		// so added rows are uploaded by reloading it from the same pixmap
+		final PixmapTextureData data = new PixmapTextureData(this.pixmap, null, false, false, true);
+		if (create) {
+			this.texture = new Texture(data);
+			this.texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			this.texture.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			this.textureApplication = Gdx.app;
+		} else {
+			this.texture.load(data);
+		}
+
+		Gdx.gl.glBindTexture(GL20.GL_TEXTURE_2D, boundTexture);
+		this.dirty = false;
+		return this.texture;
+	}
+
+	@Override
+	public void dispose() {
+		if (this.texture != null) {
+			this.texture.dispose();
+			this.texture = null;
+			this.textureApplication = null;
+		}
+
+		this.pixmap.dispose();
+	}
+}
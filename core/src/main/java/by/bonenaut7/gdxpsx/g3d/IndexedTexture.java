@@ -0,0 +1,98 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Disposable;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.g3d.attributes.IndexedTextureAttribute;
+
+/** Indexed-color texture: texture of the palette indices and a row of the {@link IndexedPalette}, created by {@link PSXTextureConverter}. <br>
+ * 8-bit textures are storing one index per texel, 4-bit textures are storing two indices per texel
+ *    (even texel in the low nibble), so indexed texture takes 4 or 8 times less memory than RGBA8888 texture. <br>
+ * Index texture is bound as diffuse texture, so UV transform, diffuse color and PSX effects are applied as usual,
+ *    palette is resolved in the fragment stage of the {@link PSXShader}, see {@link #applyTo(Material)}.
+ *
+ * @author bonenaut7 **/
+public class IndexedTexture implements Disposable {
+	private final Texture indexTexture;
+	private final Pixmap indices;
+	private final int width;
+	private final int height;
+	private final int bits;
+	private final IndexedPalette palette;
+	private final int paletteRow;
+
+	/** @param indices Pixmap in {@link Pixmap.Format#Alpha} format with indices, texture owns the pixmap
+	 * @param width Width of the texture in indices
+	 * @param bits Bits per index, 4 or 8
+	 * @param palette Palette atlas
+	 * @param paletteRow Row of the palette **/
+	public IndexedTexture(Pixmap indices, int width, int bits, IndexedPalette palette, int paletteRow) {
+		if (bits != 4 && bits != 8) {
+			throw new GdxPsxRuntimeException("only 4 and 8 bits per index are supported");
+		}
+
+		if (indices.getFormat() != Pixmap.Format.Alpha || indices.getWidth() * 8 / bits != width) {
+			throw new GdxPsxRuntimeException("index pixmap should be in Alpha format and contain " + 8 / bits + " indices per texel");
+		}
+
+		this.width = width;
+		this.height = indices.getHeight();
+		this.bits = bits;
+		this.palette = palette;
+		this.paletteRow = paletteRow;
+		this.indices = indices;
+
+		// Managed texture data keeps the pixmap, so texture could be restored after context loss
+		this.indexTexture = new Texture(new PixmapTextureData(indices, null, false, false, true));
+		this.indexTexture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest); // Indices can't be interpolated
+	}
+
+	/** Sets index texture as {@link TextureAttribute#Diffuse} and {@link IndexedTextureAttribute} to the material
+	 * @param material Material
+	 * @return material **/
+	public Material applyTo(Material material) {
+		material.set(TextureAttribute.createDiffuse(this.indexTexture), new IndexedTextureAttribute(this));
+		return material;
+	}
+
+	/** @return texture with palette indices **/
+	public Texture getIndexTexture() {
+		return this.indexTexture;
+	}
+
+	/** @return width in indices (texels of the source image) **/
+	public int getWidth() {
+		return this.width;
+	}
+
+	/** @return height in indices **/
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return bits per index, 4 or 8 **/
+	public int getBits() {
+		return this.bits;
+	}
+
+	public IndexedPalette getPalette() {
+		return this.palette;
+	}
+
+	public int getPaletteRow() {
+		return this.paletteRow;
+	}
+
+	/** Disposes index texture, palette is shared and should be disposed separately **/
+	@Override
+	public void dispose() {
+		this.indexTexture.dispose();
+		this.indices.dispose();
+	}
+}
@@ -0,0 +1,181 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.Comparator;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g3d.Attributes;
+import com.badlogic.gdx.graphics.g3d.decals.Decal;
+import com.badlogic.gdx.graphics.g3d.decals.DecalMaterial;
+import com.badlogic.gdx.graphics.g3d.decals.GroupStrategy;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.Pool;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+
+/** Group strategy for the {@link com.badlogic.gdx.graphics.g3d.decals.DecalBatch DecalBatch} with PSX vertex snapping
+ *    and texture affine mapping, same as in {@link PSXShader}. <br>
+ * Works like {@link com.badlogic.gdx.graphics.g3d.decals.CameraGroupStrategy CameraGroupStrategy}: opaque decals are rendered first
+ *    and grouped by material, so every texture/material group is drawn with one draw call, blended decals are rendered after
+ *    them back to front. Strategy doesn't allocate per frame, groups and comparator are reused. <br>
+ * Effect strengths are shared by all decals of the batch, they could be set explicitly or taken from the environment
+ *    with {@link #setEffects(Attributes)}. Strategy should be disposed, it owns the shader program.
+ *
+ * @author bonenaut7 **/
+public class PSXDecalGroupStrategy implements GroupStrategy, Disposable {
+	private static final int GROUP_OPAQUE = 0;
+	private static final int GROUP_BLEND = 1;
+
+	private final ShaderProgram shader;
+	private Camera camera;
+	private float vertexSnapping;
+	private float textureAffineMapping;
+
+	private final ObjectMap<DecalMaterial, Array<Decal>> materialGroups = new ObjectMap<>();
+	private final Array<Array<Decal>> usedGroups = new Array<>();
+	private final Pool<Array<Decal>> groupsPool = new Pool<Array<Decal>>(16) {
+		protected Array<Decal> newObject() {
+			return new Array<>();
+		}
+	};
+	private final Comparator<Decal> backToFrontComparator = new Comparator<Decal>() {
+		public int compare(Decal decal1, Decal decal2) {
+			return Float.compare(camera.position.dst2(decal2.getPosition()), camera.position.dst2(decal1.getPosition()));
+		}
+	};
+
+	/** @param camera Camera that decals are rendered with **/
+	public PSXDecalGroupStrategy(Camera camera) {
+		this(camera, Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/decal.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/decal.frag").readString());
+	}
+
+	/** @param camera Camera that decals are rendered with
+	 *  @param vertexShader Vertex shader, see <code>by/bonenaut7/gdxpsx/shaders/decal.vert</code>
+	 *  @param fragmentShader Fragment shader **/
+	public PSXDecalGroupStrategy(Camera camera, String vertexShader, String fragmentShader) {
+		this.camera = camera;
+		this.shader = new ShaderProgram(vertexShader, fragmentShader);
+		if (!this.shader.isCompiled()) {
+			throw new GdxPsxRuntimeException("couldn't compile PSX decal shader: " + this.shader.getLog());
+		}
+	}
+
+	@Override
+	public int decideGroup(Decal decal) {
+		return decal.getMaterial().isOpaque() ? GROUP_OPAQUE : GROUP_BLEND;
+	}
+
+	@Override
+	public void beforeGroup(int group, Array<Decal> contents) {
+		if (group == GROUP_BLEND) {
+			Gdx.gl.glEnable(GL20.GL_BLEND);
+			Gdx.gl.glDepthMask(false);
+			contents.sort(this.backToFrontComparator);
+			return;
+		}
+
+		for (int idx = 0; idx != contents.size; idx++) {
+			final Decal decal = contents.get(idx);
+			Array<Decal> materialGroup = this.materialGroups.get(decal.getMaterial());
+			if (materialGroup == null) {
+				materialGroup = this.groupsPool.obtain();
+				this.usedGroups.add(materialGroup);
+				this.materialGroups.put(decal.getMaterial(), materialGroup);
+			}
+
+			materialGroup.add(decal);
+		}
+
+		contents.clear();
+		for (int idx = 0; idx != this.usedGroups.size; idx++) {
+			final Array<Decal> materialGroup = this.usedGroups.get(idx);
+			contents.addAll(materialGroup);
+			materialGroup.clear();
+		}
+
+		this.materialGroups.clear();
+		this.groupsPool.freeAll(this.usedGroups);
+		this.usedGroups.clear();
+	}
+
+	@Override
+	public void afterGroup(int group) {
+		if (group == GROUP_BLEND) {
+			Gdx.gl.glDisable(GL20.GL_BLEND);
+			Gdx.gl.glDepthMask(true);
+		}
+	}
+
+	@Override
+	public void beforeGroups() {
+		Gdx.gl.glEnable(GL20.GL_DEPTH_TEST);
+		this.shader.bind();
+		this.shader.setUniformMatrix("u_projectionViewMatrix", this.camera.combined);
+		this.shader.setUniformi("u_texture", 0);
+		this.shader.setUniformf("u_psxVertexSnapping", this.vertexSnapping);
+		this.shader.setUniformf("u_psxTextureAffineMapping", this.textureAffineMapping);
+	}
+
+	@Override
+	public void afterGroups() {
+		Gdx.gl.glDisable(GL20.GL_DEPTH_TEST);
+	}
+
+	@Override
+	public ShaderProgram getGroupShader(int group) {
+		return this.shader;
+	}
+
+	/** Takes effect strengths from the attributes, effects that attributes don't contain are disabled
+	 *  @param attributes Attributes with {@link AttributePSXEffect}s, for example environment of the scene
+	 *  @return self **/
+	public PSXDecalGroupStrategy setEffects(Attributes attributes) {
+		final AttributePSXEffect vertexSnapping = attributes.get(AttributePSXEffect.class, AttributePSXEffect.vertexSnapping);
+		final AttributePSXEffect textureAffineMapping = attributes.get(AttributePSXEffect.class, AttributePSXEffect.textureAffineMapping);
+		this.vertexSnapping = vertexSnapping == null ? 0f : vertexSnapping.strength;
+		this.textureAffineMapping = textureAffineMapping == null ? 0f : textureAffineMapping.strength;
+		return this;
+	}
+
+	/** @param vertexSnapping Vertex snapping strength, lower means stronger, 0 to disable
+	 *  @return self **/
+	public PSXDecalGroupStrategy setVertexSnapping(float vertexSnapping) {
+		this.vertexSnapping = Math.max(0f, vertexSnapping);
+		return this;
+	}
+
+	public float getVertexSnapping() {
+		return this.vertexSnapping;
+	}
+
+	/** @param textureAffineMapping Texture affine mapping contribution within 0.0-1.0 range
+	 *  @return self **/
+	public PSXDecalGroupStrategy setTextureAffineMapping(float textureAffineMapping) {
+		this.textureAffineMapping = Math.min(Math.max(textureAffineMapping, 0f), 1f);
+		return this;
+	}
+
+	public float getTextureAffineMapping() {
+		return this.textureAffineMapping;
+	}
+
+	public PSXDecalGroupStrategy setCamera(Camera camera) {
+		this.camera = camera;
+		return this;
+	}
+
+	public Camera getCamera() {
+		return this.camera;
+	}
+
+	@Override
+	public void dispose() {
+		this.shader.dispose();
+	}
+}
@@ -0,0 +1,131 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.IndexBufferObject;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.graphics.glutils.VertexBufferObject;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import by.bonenaut7.gdxpsx.g3d.attributes.FixedPointMeshAttribute;
+
+/** Static mesh in compact PSX-like fixed-point vertex format, created by {@link PSXMeshConverter}. <br>
+ * Positions are 16-bit integers relative to the per-mesh origin and scale (as on the PS1 GTE), normals, tangents
+ *    and binormals are normalized bytes, texture coordinates are 16-bit integers with per-mesh offset and scale,
+ *    colors are packed into 4 bytes. Positions and texture coordinates are restored in the vertex stage of the
+ *    {@link PSXShader} from the {@link FixedPointMeshAttribute}, that should be set on the material
+ *    ({@link #createAttribute()}). <br>
+ * Vertex data is kept in the byte buffer, so {@link #getVertices(float[])} and other float-based accessors are returning
+ *    raw bits, bounding box and radius calculations are overridden to dequantize positions.
+ *
+ * @author bonenaut7 **/
+public class PSXFixedPointMesh extends Mesh {
+	private final ByteBuffer vertexData;
+	private final FixedPointMeshAttribute attribute;
+	private final Vector3 tmpVector = new Vector3();
+
+	/** @param vertexData Quantized vertices, with limit set to the vertices size, mesh owns the buffer
+	 *    (it should be created with {@link com.badlogic.gdx.utils.BufferUtils#newUnsafeByteBuffer(int)})
+	 * @param indices Indices, could be empty
+	 * @param attributes Vertex attributes of the quantized vertices
+	 * @param attribute Dequantization parameters **/
+	public PSXFixedPointMesh(ByteBuffer vertexData, short[] indices, VertexAttributes attributes, FixedPointMeshAttribute attribute) {
+		super(new FixedPointVertexData(vertexData, attributes), new IndexBufferObject(true, indices.length), false);
+		this.vertexData = vertexData;
+		this.attribute = attribute;
+		this.setIndices(indices);
+	}
+
+	/** @return dequantization parameters, shouldn't be modified **/
+	public FixedPointMeshAttribute getAttribute() {
+		return this.attribute;
+	}
+
+	/** @return new attribute with dequantization parameters, that should be set on the material of this mesh **/
+	public FixedPointMeshAttribute createAttribute() {
+		return (FixedPointMeshAttribute)this.attribute.copy();
+	}
+
+	/** @param vertex Vertex index
+	 * @param output Vector where dequantized position will be stored
+	 * @return output vector **/
+	public Vector3 getPosition(int vertex, Vector3 output) {
+		final int offset = vertex * this.getVertexSize() + this.getVertexAttribute(Usage.Position).offset;
+		return output.set(this.vertexData.getShort(offset), this.vertexData.getShort(offset + 2), this.vertexData.getShort(offset + 4))
+			.scl(this.attribute.scale).add(this.attribute.origin);
+	}
+
+	@Override
+	public void calculateBoundingBox(BoundingBox bbox) {
+		final int numVertices = this.getNumVertices();
+		if (numVertices == 0) throw new GdxRuntimeException("No vertices defined");
+
+		bbox.inf();
+		for (int vertex = 0; vertex != numVertices; vertex++) {
+			bbox.ext(this.getPosition(vertex, this.tmpVector));
+		}
+	}
+
+	@Override
+	public BoundingBox extendBoundingBox(final BoundingBox out, int offset, int count, final Matrix4 transform) {
+		final int numIndices = this.getNumIndices();
+		final int max = numIndices == 0 ? this.getNumVertices() : numIndices;
+		if (offset < 0 || count < 1 || offset + count > max)
+			throw new GdxRuntimeException("Invalid part specified ( offset=" + offset + ", count=" + count + ", max=" + max + " )");
+
+		for (int idx = offset, end = offset + count; idx != end; idx++) {
+			final int vertex = numIndices == 0 ? idx : this.getIndicesBuffer(false).get(idx) & 0xFFFF;
+			this.getPosition(vertex, this.tmpVector);
+			if (transform != null) this.tmpVector.mul(transform);
+			out.ext(this.tmpVector);
+		}
+
+		return out;
+	}
+
+	@Override
+	public float calculateRadiusSquared(final float centerX, final float centerY, final float centerZ, int offset, int count, final Matrix4 transform) {
+		final int numIndices = this.getNumIndices();
+		if (offset < 0 || count < 1 || offset + count > numIndices) throw new GdxRuntimeException("Not enough indices");
+
+		float result = 0;
+		for (int idx = offset, end = offset + count; idx != end; idx++) {
+			this.getPosition(this.getIndicesBuffer(false).get(idx) & 0xFFFF, this.tmpVector);
+			if (transform != null) this.tmpVector.mul(transform);
+			result = Math.max(result, this.tmpVector.sub(centerX, centerY, centerZ).len2());
+		}
+
+		return result;
+	}
+
+	/** Quantized position attribute, 4 shorts (4th is padding for alignment) **/
+	public static VertexAttribute position() {
+		return new VertexAttribute(Usage.Position, 4, GL20.GL_SHORT, false, ShaderProgram.POSITION_ATTRIBUTE);
+	}
+
+	/** Quantized direction attribute (normal, tangent or binormal), 4 normalized bytes (4th is padding for alignment) **/
+	public static VertexAttribute direction(int usage, String alias) {
+		return new VertexAttribute(usage, 4, GL20.GL_BYTE, true, alias);
+	}
+
+	/** Quantized texture coordinates attribute, 2 shorts **/
+	public static VertexAttribute texCoords(int unit) {
+		return new VertexAttribute(Usage.TextureCoordinates, 2, GL20.GL_SHORT, false, ShaderProgram.TEXCOORD_ATTRIBUTE + unit, unit);
+	}
+
+	// VertexBufferObject with the data that is already prepared
+	private static final class FixedPointVertexData extends VertexBufferObject {
+		FixedPointVertexData(ByteBuffer data, VertexAttributes attributes) {
+			super(GL20.GL_STATIC_DRAW, data, true, attributes);
+			this.getBuffer(true); // Marks buffer as dirty, so it's uploaded on the first bind
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.g3d.Attribute;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.g3d.utils.DefaultTextureBinder;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.Pool;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+
+/** Batch that draws many renderables of the same mesh part with one instanced draw call (props, debris, foliage, pickups). <br>
+ * Renderables are grouped if they share mesh part and environment, and their materials are equal (PSX effect strengths
+ *    could differ), world transforms and PSX effect strengths are passed as per-instance attributes
+ *    to the shaders of {@link PSXInstancedShaderProvider}. Skinned renderables are rendered one by one with regular shaders. <br>
+ * Instanced copy of every mesh is created on the first use (and owned by the batch), so source meshes could be still rendered
+ *    with {@link com.badlogic.gdx.graphics.g3d.ModelBatch ModelBatch}. Groups aren't sorted, so batch is intended for opaque
+ *    renderables. Normals are transformed with world transform, so non-uniform scale isn't supported for the lit renderables. <br>
+ * Requires OpenGL ES 3.0.
+ *
+ * @author bonenaut7 **/
+public class PSXInstancedModelBatch implements Disposable {
+	public static final int DEFAULT_INSTANCES_CAPACITY = 64;
+
+	protected final RenderContext context;
+	protected final PSXInstancedShaderProvider instancedShaderProvider;
+	protected final PSXShaderProvider shaderProvider;
+	protected Camera camera;
+
+	private final Array<Renderable> renderables = new Array<>();
+	private final Pool<Renderable> renderablesPool = new Pool<Renderable>() {
+		protected Renderable newObject() {
+			return new Renderable();
+		}
+
+		@Override
+		public Renderable obtain() {
+			final Renderable renderable = super.obtain();
+			renderable.environment = null;
+			renderable.material = null;
+			renderable.meshPart.set("", null, 0, 0, 0);
+			renderable.bones = null;
+			renderable.shader = null;
+			renderable.userData = null;
+			return renderable;
+		}
+	};
+	private final Array<InstanceGroup> groups = new Array<>();
+	private final IdentityMap<Mesh, Array<InstanceGroup>> groupsByMesh = new IdentityMap<>();
+	private final Pool<InstanceGroup> groupsPool = new Pool<InstanceGroup>() {
+		protected InstanceGroup newObject() {
+			return new InstanceGroup();
+		}
+	};
+	private final Pool<Array<InstanceGroup>> groupArraysPool = new Pool<Array<InstanceGroup>>() {
+		protected Array<InstanceGroup> newObject() {
+			return new Array<>(false, 4);
+		}
+	};
+	private final IdentityMap<Mesh, InstancedMesh> instancedMeshes = new IdentityMap<>();
+	private final VertexAttribute[] instanceAttributes = PSXInstancedShaderProvider.createInstanceAttributes();
+	private final Renderable groupRenderable = new Renderable();
+	private float[] instanceData = new float[DEFAULT_INSTANCES_CAPACITY * PSXInstancedShaderProvider.INSTANCE_SIZE];
+	private int drawCalls;
+
+	public PSXInstancedModelBatch() {
+		this(PSXShaderProvider.DEFAULT_SHADER_TYPE, new DefaultShader.Config());
+	}
+
+	public PSXInstancedModelBatch(PSXShaderType shaderType) {
+		this(shaderType, new DefaultShader.Config());
+	}
+
+	/** @param shaderType Type of {@link PSXShader}
+	 * @param config Shader config **/
+	public PSXInstancedModelBatch(PSXShaderType shaderType, DefaultShader.Config config) {
+		if (Gdx.gl30 == null) {
+			throw new GdxPsxRuntimeException("instanced rendering requires OpenGL ES 3.0");
+		}
+
+		this.context = new RenderContext(new DefaultTextureBinder(DefaultTextureBinder.LRU, 1));
+		this.instancedShaderProvider = new PSXInstancedShaderProvider(shaderType, config);
+		this.shaderProvider = new PSXShaderProvider(shaderType, config);
+	}
+
+	/** @param camera Camera to render with **/
+	public void begin(Camera camera) {
+		if (this.camera != null) {
+			throw new GdxPsxRuntimeException("end() should be called before begin()");
+		}
+
+		this.camera = camera;
+		this.drawCalls = 0;
+	}
+
+	/** @param renderableProvider Provider of renderables, for example {@link com.badlogic.gdx.graphics.g3d.ModelInstance ModelInstance} **/
+	public void render(RenderableProvider renderableProvider) {
+		this.render(renderableProvider, null);
+	}
+
+	/** @param renderableProvider Provider of renderables, for example {@link com.badlogic.gdx.graphics.g3d.ModelInstance ModelInstance}
+	 * @param environment Environment to render with, or null to keep environment of renderables **/
+	public void render(RenderableProvider renderableProvider, Environment environment) {
+		if (this.camera == null) {
+			throw new GdxPsxRuntimeException("begin() should be called before render()");
+		}
+
+		final int offset = this.renderables.size;
+		renderableProvider.getRenderables(this.renderables, this.renderablesPool);
+		for (int idx = offset; idx < this.renderables.size; idx++) {
+			final Renderable renderable = this.renderables.get(idx);
+			if (environment != null) renderable.environment = environment;
+			this.findGroup(renderable).renderables.add(renderable);
+		}
+	}
+
+	/** @param renderableProviders Providers of renderables
+	 * @param environment Environment to render with, or null to keep environment of renderables **/
+	public <T extends RenderableProvider> void render(Iterable<T> renderableProviders, Environment environment) {
+		for (RenderableProvider renderableProvider : renderableProviders) {
+			this.render(renderableProvider, environment);
+		}
+	}
+
+	/** Draws all groups and skinned renderables **/
+	public void end() {
+		if (this.camera == null) {
+			throw new GdxPsxRuntimeException("begin() should be called before end()");
+		}
+
+		this.context.begin();
+		Shader currentShader = null;
+		for (int idx = 0; idx != this.groups.size; idx++) {
+			final InstanceGroup group = this.groups.get(idx);
+			final Renderable first = group.renderables.first();
+
+			if (first.bones != null) {
+				for (int renderableIdx = 0; renderableIdx != group.renderables.size; renderableIdx++) {
+					final Renderable renderable = group.renderables.get(renderableIdx);
+					currentShader = this.switchShader(currentShader, this.shaderProvider.getShader(renderable));
+					currentShader.render(renderable);
+					this.drawCalls++;
+				}
+
+				continue;
+			}
+
+			final InstancedMesh instancedMesh = this.obtainInstancedMesh(first.meshPart.mesh, group.renderables.size);
+			if (instancedMesh.grown && currentShader != null) {
+				// Shader keeps bound mesh, so it should be rebound with the new instance buffer
+				currentShader.end();
+				currentShader = null;
+			}
+
+			instancedMesh.mesh.setInstanceData(this.fillInstanceData(group.renderables), 0, group.renderables.size * PSXInstancedShaderProvider.INSTANCE_SIZE);
+			this.groupRenderable.set(first);
+			this.groupRenderable.meshPart.mesh = instancedMesh.mesh;
+			this.groupRenderable.shader = null;
+
+			currentShader = this.switchShader(currentShader, this.instancedShaderProvider.getShader(this.groupRenderable));
+			currentShader.render(this.groupRenderable);
+			this.drawCalls++;
+		}
+
+		if (currentShader != null) currentShader.end();
+		this.context.end();
+		this.clear();
+		this.camera = null;
+	}
+
+	/** @return amount of draw calls of the last frame (after {@link #end()}) **/
+	public int getDrawCalls() {
+		return this.drawCalls;
+	}
+
+	/** @return provider of the instanced shaders, could be used for prewarming **/
+	public PSXInstancedShaderProvider getInstancedShaderProvider() {
+		return this.instancedShaderProvider;
+	}
+
+	/** Disposes instanced copies of the meshes, they're created again on the next use **/
+	public void clearMeshes() {
+		for (InstancedMesh instancedMesh : this.instancedMeshes.values()) {
+			instancedMesh.mesh.dispose();
+		}
+
+		this.instancedMeshes.clear();
+	}
+
+	@Override
+	public void dispose() {
+		this.clear();
+		this.clearMeshes();
+		this.instancedShaderProvider.dispose();
+		this.shaderProvider.dispose();
+	}
+
+	private InstanceGroup findGroup(Renderable renderable) {
+		Array<InstanceGroup> meshGroups = this.groupsByMesh.get(renderable.meshPart.mesh);
+		if (meshGroups == null) {
+			this.groupsByMesh.put(renderable.meshPart.mesh, meshGroups = this.groupArraysPool.obtain());
+		} else if (renderable.bones == null) {
+			for (int idx = 0; idx != meshGroups.size; idx++) {
+				final InstanceGroup group = meshGroups.get(idx);
+				if (group.accepts(renderable)) return group;
+			}
+		}
+
+		final InstanceGroup group = this.groupsPool.obtain();
+		meshGroups.add(group);
+		this.groups.add(group);
+		return group;
+	}
+
+	private Shader switchShader(Shader currentShader, Shader shader) {
+		if (currentShader != shader) {
+			if (currentShader != null) currentShader.end();
+			shader.begin(this.camera, this.context);
+		}
+
+		return shader;
+	}
+
+	private InstancedMesh obtainInstancedMesh(Mesh mesh, int instances) {
+		InstancedMesh instancedMesh = this.instancedMeshes.get(mesh);
+		if (instancedMesh == null) {
+			instancedMesh = new InstancedMesh();
+			instancedMesh.mesh = mesh.copy(true);
+			this.instancedMeshes.put(mesh, instancedMesh);
+		}
+
+		instancedMesh.grown = false;
+		if (instancedMesh.capacity < instances) {
+			instancedMesh.capacity = Math.max(instances, Math.max(DEFAULT_INSTANCES_CAPACITY, instancedMesh.capacity * 2));
+			instancedMesh.mesh.disableInstancedRendering();
+			instancedMesh.mesh.enableInstancedRendering(false, instancedMesh.capacity, this.instanceAttributes);
+			instancedMesh.grown = true;
+		}
+
+		return instancedMesh;
+	}
+
+	private float[] fillInstanceData(Array<Renderable> renderables) {
+		final int size = renderables.size * PSXInstancedShaderProvider.INSTANCE_SIZE;
+		if (this.instanceData.length < size) {
+			this.instanceData = new float[Math.max(size, this.instanceData.length * 2)];
+		}
+
+		final float[] data = this.instanceData;
+		for (int idx = 0, offset = 0; idx != renderables.size; idx++, offset += PSXInstancedShaderProvider.INSTANCE_SIZE) {
+			final Renderable renderable = renderables.get(idx);
+			System.arraycopy(renderable.worldTransform.val, 0, data, offset, 16);
+			data[offset + 16] = getStrength(renderable, AttributePSXEffect.vertexSnapping);
+			data[offset + 17] = getStrength(renderable, AttributePSXEffect.textureAffineMapping);
+		}
+
+		return data;
+	}
+
+	private void clear() {
+		for (int idx = 0; idx != this.groups.size; idx++) {
+			this.groups.get(idx).renderables.clear();
+		}
+
+		for (Array<InstanceGroup> meshGroups : this.groupsByMesh.values()) {
+			meshGroups.clear();
+			this.groupArraysPool.free(meshGroups);
+		}
+
+		this.groupsPool.freeAll(this.groups);
+		this.groups.clear();
+		this.groupsByMesh.clear();
+		this.renderablesPool.freeAll(this.renderables);
+		this.renderables.clear();
+	}
+
+	private static float getStrength(Renderable renderable, long type) {
+		Attribute attribute = renderable.material == null ? null : renderable.material.get(type);
+		if (attribute == null && renderable.environment != null) attribute = renderable.environment.get(type);
+		return attribute == null ? 0f : ((AttributePSXEffect)attribute).strength;
+	}
+
+	private static final class InstancedMesh {
+		Mesh mesh;
+		int capacity;
+		boolean grown;
+	}
+
+	private static final class InstanceGroup {
+		final Array<Renderable> renderables = new Array<>();
+
+		boolean accepts(Renderable renderable) {
+			final Renderable first = this.renderables.first();
+			return first.bones == null
+				&& first.meshPart.offset == renderable.meshPart.offset
+				&& first.meshPart.size == renderable.meshPart.size
+				&& first.meshPart.primitiveType == renderable.meshPart.primitiveType
+				&& first.environment == renderable.environment
+				&& isCompatible(first.material, renderable.material);
+		}
+
+		// Materials should be equal, except of PSX effect strengths that are passed per instance
+		private static boolean isCompatible(Material material, Material other) {
+			if (material == other) return true;
+			if (material == null || other == null || material.getMask() != other.getMask()) return false;
+
+			for (Attribute attribute : material) {
+				if (attribute.type == AttributePSXEffect.vertexSnapping || attribute.type == AttributePSXEffect.textureAffineMapping) continue;
+				if (!attribute.equals(other.get(attribute.type))) return false;
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+
+/** Provider of the instanced {@link PSXShader}s, world transform and PSX effect strengths are taken from per-instance attributes
+ *    ({@link #createInstanceAttributes()}) instead of uniforms. Used by {@link PSXInstancedModelBatch}, meshes of the renderables
+ *    should have instanced rendering enabled with these attributes. Requires OpenGL ES 3.0.
+ *
+ * @author bonenaut7 **/
+public class PSXInstancedShaderProvider extends PSXShaderProvider {
+	public static final String INSTANCED_DEFINE = "#define psxInstancedFlag\n";
+	/** Floats per instance: world transform (16) and strengths of vertex snapping and texture affine mapping (2) **/
+	public static final int INSTANCE_SIZE = 18;
+
+	public PSXInstancedShaderProvider() {
+		super();
+	}
+
+	public PSXInstancedShaderProvider(PSXShaderType shaderType) {
+		super(shaderType);
+	}
+
+	public PSXInstancedShaderProvider(PSXShaderType shaderType, final DefaultShader.Config config) {
+		super(shaderType, config);
+	}
+
+	@Override
+	protected Shader createShader(final Renderable renderable, final String prefix) {
+		return new PSXShader(renderable, this.config, prefix + INSTANCED_DEFINE);
+	}
+
+	/** @return per-instance attributes, see {@link #INSTANCE_SIZE} **/
+	public static VertexAttribute[] createInstanceAttributes() {
+		return new VertexAttribute[] {
+			new VertexAttribute(Usage.Generic, 4, "a_psxInstanceTransform0", 0),
+			new VertexAttribute(Usage.Generic, 4, "a_psxInstanceTransform1", 1),
+			new VertexAttribute(Usage.Generic, 4, "a_psxInstanceTransform2", 2),
+			new VertexAttribute(Usage.Generic, 4, "a_psxInstanceTransform3", 3),
+			new VertexAttribute(Usage.Generic, 2, "a_psxInstanceEffects", 4)
+		};
+	}
+}
@@ -0,0 +1,249 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.Pool;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+
+/** Shader provider with lighting level of detail: close or large renderables are rendered with per-fragment lighting
+ *    ({@link PSXShaderType#LIT_PerFragmentLighting}), distant or small ones with cheaper per-vertex lighting
+ *    ({@link PSXShaderType#LIT_PerVertexLighting}). Provider holds both shader families as {@link PSXShaderProvider}s. <br>
+ * Renderable uses per-fragment lighting if it's closer to the camera than {@link #setFragmentDistance(float) fragment distance},
+ *    or if its bounding sphere covers more than {@link #setFragmentScreenSize(float) fragment screen size} of the viewport height.
+ *    Thresholds are relaxed by {@link #setHysteresis(float) hysteresis} for the renderables that are already using per-fragment
+ *    lighting, so they don't flicker on the boundary. Previous choice is tracked per material, which is unique for every
+ *    part of the {@link com.badlogic.gdx.graphics.g3d.ModelInstance ModelInstance} by default. <br>
+ * Renderables without environment are always rendered with per-vertex shaders.
+ *
+ * @author bonenaut7 **/
+public class PSXLightingLODShaderProvider implements ShaderProvider {
+	public static final float DEFAULT_FRAGMENT_DISTANCE = 10f;
+	public static final float DEFAULT_HYSTERESIS = 0.1f;
+
+	// States of materials that weren't rendered for this amount of frames are removed
+	private static final int STATE_LIFETIME_FRAMES = 120;
+
+	protected final PSXShaderProvider vertexLightingProvider;
+	protected final PSXShaderProvider fragmentLightingProvider;
+	protected Camera camera;
+	private float fragmentDistance = DEFAULT_FRAGMENT_DISTANCE;
+	private float fragmentScreenSize;
+	private float hysteresis = DEFAULT_HYSTERESIS;
+
+	private final IdentityMap<Material, LightingState> states = new IdentityMap<>();
+	private final Pool<LightingState> statesPool = new Pool<LightingState>() {
+		protected LightingState newObject() {
+			return new LightingState();
+		}
+	};
+	private long lastPruneFrame;
+	private final Vector3 tmpVector = new Vector3();
+	private final Vector3 tmpScale = new Vector3();
+
+	/** @param camera Camera that renderables are rendered with **/
+	public PSXLightingLODShaderProvider(Camera camera) {
+		this(camera, new DefaultShader.Config());
+	}
+
+	/** @param camera Camera that renderables are rendered with
+	 * @param config Shader config, shaders of the config are ignored **/
+	public PSXLightingLODShaderProvider(Camera camera, DefaultShader.Config config) {
+		if (camera == null) {
+			throw new GdxPsxRuntimeException("camera can't be null");
+		}
+
+		this.camera = camera;
+		this.vertexLightingProvider = new PSXShaderProvider(PSXShaderType.LIT_PerVertexLighting, copyConfig(config));
+		this.fragmentLightingProvider = new PSXShaderProvider(PSXShaderType.LIT_PerFragmentLighting, copyConfig(config));
+	}
+
+	@Override
+	public Shader getShader(Renderable renderable) {
+		// Lighting is decided every time, renderables reused across frames keep the shader of the previous decision
+		final PSXShaderProvider provider = this.isFragmentLighting(renderable) ? this.fragmentLightingProvider : this.vertexLightingProvider;
+		final Shader suggestedShader = renderable.shader;
+		if (suggestedShader == null || provider.isOwner(suggestedShader)) return provider.getShader(renderable);
+
+		renderable.shader = null; // Shader of the other lighting family could render it too, so it shouldn't be suggested
+		final Shader shader = provider.getShader(renderable);
+		renderable.shader = suggestedShader;
+		return shader;
+	}
+
+	/** @param renderable Renderable
+	 * @return true if renderable should be rendered with per-fragment lighting, updates lighting state of the renderable material **/
+	public boolean isFragmentLighting(Renderable renderable) {
+		if (renderable.environment == null) return false;
+
+		final long frame = Gdx.graphics.getFrameId();
+		if (frame - this.lastPruneFrame >= STATE_LIFETIME_FRAMES) {
+			this.pruneStates(frame);
+		}
+
+		LightingState state = null;
+		if (renderable.material != null) {
+			state = this.states.get(renderable.material);
+			if (state == null) {
+				this.states.put(renderable.material, state = this.statesPool.obtain());
+			}
+
+			state.frame = frame;
+		}
+
+		final boolean fragment = this.selectFragmentLighting(renderable, state != null && state.fragment);
+		if (state != null) state.fragment = fragment;
+		return fragment;
+	}
+
+	/** @param renderable Renderable
+	 * @param fragment true if renderable used per-fragment lighting previously
+	 * @return true if renderable should be rendered with per-fragment lighting **/
+	protected boolean selectFragmentLighting(Renderable renderable, boolean fragment) {
+		final Vector3 center = this.tmpVector.set(renderable.meshPart.center).mul(renderable.worldTransform);
+		final float distance = this.camera.position.dst(center);
+		final float relaxation = fragment ? this.hysteresis : 0f;
+
+		if (this.fragmentDistance > 0f && distance < this.fragmentDistance * (1f + relaxation)) {
+			return true;
+		}
+
+		if (this.fragmentScreenSize > 0f) {
+			final Vector3 scale = renderable.worldTransform.getScale(this.tmpScale);
+			final float radius = renderable.meshPart.radius * Math.max(Math.abs(scale.x), Math.max(Math.abs(scale.y), Math.abs(scale.z)));
+			return this.getScreenSize(radius, distance) > this.fragmentScreenSize * (1f - relaxation);
+		}
+
+		return false;
+	}
+
+	/** @param radius Radius of the bounding sphere
+	 * @param distance Distance to the bounding sphere center
+	 * @return diameter of the bounding sphere relative to the viewport height **/
+	protected float getScreenSize(float radius, float distance) {
+		if (this.camera instanceof PerspectiveCamera) {
+			if (distance <= radius) return Float.POSITIVE_INFINITY;
+			return radius / (distance * (float)Math.tan(((PerspectiveCamera)this.camera).fieldOfView * 0.5f * MathUtils.degreesToRadians));
+		}
+
+		if (this.camera instanceof OrthographicCamera) {
+			return radius * 2f / (this.camera.viewportHeight * ((OrthographicCamera)this.camera).zoom);
+		}
+
+		return radius * 2f / this.camera.viewportHeight;
+	}
+
+	private void pruneStates(long frame) {
+		final IdentityMap.Entries<Material, LightingState> entries = this.states.entries();
+		while (entries.hasNext()) {
+			final IdentityMap.Entry<Material, LightingState> entry = entries.next();
+			if (frame - entry.value.frame >= STATE_LIFETIME_FRAMES) {
+				this.statesPool.free(entry.value);
+				entries.remove();
+			}
+		}
+
+		this.lastPruneFrame = frame;
+	}
+
+	/** @param camera Camera that renderables are rendered with
+	 * @return self **/
+	public PSXLightingLODShaderProvider setCamera(Camera camera) {
+		if (camera == null) {
+			throw new GdxPsxRuntimeException("camera can't be null");
+		}
+
+		this.camera = camera;
+		return this;
+	}
+
+	public Camera getCamera() {
+		return this.camera;
+	}
+
+	/** @param fragmentDistance Renderables closer than this distance are using per-fragment lighting, 0 to disable distance criterion
+	 * @return self **/
+	public PSXLightingLODShaderProvider setFragmentDistance(float fragmentDistance) {
+		this.fragmentDistance = fragmentDistance;
+		return this;
+	}
+
+	public float getFragmentDistance() {
+		return this.fragmentDistance;
+	}
+
+	/** @param fragmentScreenSize Renderables with bounding sphere diameter larger than this part of the viewport height
+	 *    are using per-fragment lighting, 0 to disable screen size criterion
+	 * @return self **/
+	public PSXLightingLODShaderProvider setFragmentScreenSize(float fragmentScreenSize) {
+		this.fragmentScreenSize = fragmentScreenSize;
+		return this;
+	}
+
+	public float getFragmentScreenSize() {
+		return this.fragmentScreenSize;
+	}
+
+	/** @param hysteresis Relative relaxation of the thresholds for the renderables that are already using per-fragment lighting
+	 * @return self **/
+	public PSXLightingLODShaderProvider setHysteresis(float hysteresis) {
+		this.hysteresis = hysteresis;
+		return this;
+	}
+
+	public float getHysteresis() {
+		return this.hysteresis;
+	}
+
+	/** @return provider of the per-vertex lighting shaders, could be used for prewarming **/
+	public PSXShaderProvider getVertexLightingProvider() {
+		return this.vertexLightingProvider;
+	}
+
+	/** @return provider of the per-fragment lighting shaders, could be used for prewarming **/
+	public PSXShaderProvider getFragmentLightingProvider() {
+		return this.fragmentLightingProvider;
+	}
+
+	@Override
+	public void dispose() {
+		this.vertexLightingProvider.dispose();
+		this.fragmentLightingProvider.dispose();
+		this.states.clear();
+		this.statesPool.clear();
+	}
+
+	private static DefaultShader.Config copyConfig(DefaultShader.Config config) {
+		final DefaultShader.Config copy = new DefaultShader.Config();
+		copy.numDirectionalLights = config.numDirectionalLights;
+		copy.numPointLights = config.numPointLights;
+		copy.numSpotLights = config.numSpotLights;
+		copy.numBones = config.numBones;
+		copy.numBoneWeights = config.numBoneWeights;
+		copy.ignoreUnimplemented = config.ignoreUnimplemented;
+		copy.defaultCullFace = config.defaultCullFace;
+		copy.defaultDepthFunc = config.defaultDepthFunc;
+		return copy;
+	}
+
+	private static final class LightingState implements Pool.Poolable {
+		long frame;
+		boolean fragment;
+
+		@Override
+		public void reset() {
+			this.frame = 0;
+			this.fragment = false;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.NumberUtils;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.g3d.attributes.FixedPointMeshAttribute;
+
+/** Converts meshes into compact fixed-point {@link PSXFixedPointMesh} format: <ul>
+ *  <li>Positions - 3 shorts relative to the mesh bounds center, scaled per axis to the bounds (+ padding short)</li>
+ *  <li>Normals, tangents, binormals - 3 normalized bytes (+ padding byte)</li>
+ *  <li>Colors - 4 normalized bytes</li>
+ *  <li>Texture coordinates - 2 shorts, offset and scaled to the bounds of all texture coordinates of the mesh</li>
+ *  <li>Other attributes (bone weights, generic) are kept as is</li></ul>
+ * Typical static mesh with position, normal and texture coordinates takes 16 bytes per vertex instead of 32. <br>
+ * Only float attributes (and packed colors) of the source mesh are supported.
+ *
+ * @author bonenaut7 **/
+public final class PSXMeshConverter {
+	private static final float POSITION_RANGE = 32767f;
+	private static final float TEXCOORD_RANGE = 65535f;
+	private static final int TEXCOORD_BIAS = 32768;
+
+	private PSXMeshConverter() {
+	}
+
+	/** Converts mesh into fixed-point format, source mesh isn't modified or disposed.
+	 * @param mesh Source mesh with float attributes
+	 * @return converted mesh, {@link PSXFixedPointMesh#createAttribute()} should be set on the materials that are used with it **/
+	public static PSXFixedPointMesh convert(Mesh mesh) {
+		final VertexAttributes sourceAttributes = mesh.getVertexAttributes();
+		final VertexAttribute sourcePosition = sourceAttributes.findByUsage(Usage.Position);
+		if (sourcePosition == null || sourcePosition.type != GL20.GL_FLOAT) {
+			throw new GdxPsxRuntimeException("mesh should have float position attribute");
+		}
+
+		final int numVertices = mesh.getNumVertices();
+		final int sourceVertexSize = sourceAttributes.vertexSize / 4;
+		final float[] vertices = new float[numVertices * sourceVertexSize];
+		mesh.getVertices(vertices);
+
+		// Quantized attributes
+		final VertexAttribute[] attributes = new VertexAttribute[sourceAttributes.size()];
+		for (int idx = 0; idx != attributes.length; idx++) {
+			final VertexAttribute attribute = sourceAttributes.get(idx);
+			if (attribute.usage != Usage.ColorPacked && attribute.type != GL20.GL_FLOAT) {
+				throw new GdxPsxRuntimeException("unsupported vertex attribute type: " + attribute.alias);
+			}
+
+			switch (attribute.usage) {
+				case Usage.Position: attributes[idx] = PSXFixedPointMesh.position(); break;
+				case Usage.Normal:
+				case Usage.Tangent:
+				case Usage.BiNormal: attributes[idx] = PSXFixedPointMesh.direction(attribute.usage, attribute.alias); break;
+				case Usage.ColorUnpacked:
+				case Usage.ColorPacked: attributes[idx] = new VertexAttribute(Usage.ColorPacked, 4, GL20.GL_UNSIGNED_BYTE, true, attribute.alias); break;
+				case Usage.TextureCoordinates: attributes[idx] = PSXFixedPointMesh.texCoords(attribute.unit); break;
+				default: attributes[idx] = attribute.copy(); break;
+			}
+		}
+
+		final VertexAttributes quantizedAttributes = new VertexAttributes(attributes);
+
+		// Bounds of positions and texture coordinates
+		final Vector3 min = new Vector3(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+		final Vector3 max = new Vector3(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+		final Vector2 texCoordMin = new Vector2(Float.MAX_VALUE, Float.MAX_VALUE);
+		final Vector2 texCoordMax = new Vector2(-Float.MAX_VALUE, -Float.MAX_VALUE);
+		for (int vertex = 0; vertex != numVertices; vertex++) {
+			final int base = vertex * sourceVertexSize;
+			final int position = base + sourcePosition.offset / 4;
+			for (int component = 0; component != 3; component++) {
+				final float value = component < sourcePosition.numComponents ? vertices[position + component] : 0f;
+				setComponent(min, component, Math.min(getComponent(min, component), value));
+				setComponent(max, component, Math.max(getComponent(max, component), value));
+			}
+
+			for (int idx = 0; idx != sourceAttributes.size(); idx++) {
+				final VertexAttribute attribute = sourceAttributes.get(idx);
+				if (attribute.usage == Usage.TextureCoordinates) {
+					final int texCoord = base + attribute.offset / 4;
+					texCoordMin.set(Math.min(texCoordMin.x, vertices[texCoord]), Math.min(texCoordMin.y, vertices[texCoord + 1]));
+					texCoordMax.set(Math.max(texCoordMax.x, vertices[texCoord]), Math.max(texCoordMax.y, vertices[texCoord + 1]));
+				}
+			}
+		}
+
+		final FixedPointMeshAttribute dequantization = new FixedPointMeshAttribute();
+		if (numVertices != 0) {
+			dequantization.origin.set(min).add(max).scl(0.5f);
+			dequantization.scale.set(scale(max.x - min.x, POSITION_RANGE * 2f), scale(max.y - min.y, POSITION_RANGE * 2f), scale(max.z - min.z, POSITION_RANGE * 2f));
+		}
+
+		if (texCoordMin.x <= texCoordMax.x) {
+			dequantization.texCoordScale.set(scale(texCoordMax.x - texCoordMin.x, TEXCOORD_RANGE), scale(texCoordMax.y - texCoordMin.y, TEXCOORD_RANGE));
+			// Shorts are biased into signed range, bias is folded into the offset
+			dequantization.texCoordOffset.set(texCoordMin.x + TEXCOORD_BIAS * dequantization.texCoordScale.x, texCoordMin.y + TEXCOORD_BIAS * dequantization.texCoordScale.y);
+		}
+
+		// Vertices
+		final ByteBuffer data = BufferUtils.newUnsafeByteBuffer(numVertices * quantizedAttributes.vertexSize);
+		for (int vertex = 0; vertex != numVertices; vertex++) {
+			final int base = vertex * sourceVertexSize;
+			final int quantizedBase = vertex * quantizedAttributes.vertexSize;
+
+			for (int idx = 0; idx != attributes.length; idx++) {
+				final VertexAttribute source = sourceAttributes.get(idx);
+				final int input = base + source.offset / 4;
+				final int output = quantizedBase + attributes[idx].offset;
+
+				switch (source.usage) {
+					case Usage.Position: {
+						for (int component = 0; component != 3; component++) {
+							final float value = component < source.numComponents ? vertices[input + component] : 0f;
+							final float quantized = (value - getComponent(dequantization.origin, component)) / getComponent(dequantization.scale, component);
+							data.putShort(output + component * 2, (short)MathUtils.clamp(Math.round(quantized), -POSITION_RANGE, POSITION_RANGE));
+						}
+
+						data.putShort(output + 6, (short)0);
+					} break;
+					case Usage.Normal:
+					case Usage.Tangent:
+					case Usage.BiNormal: {
+						for (int component = 0; component != 3; component++) {
+							final float value = component < source.numComponents ? vertices[input + component] : 0f;
+							data.put(output + component, (byte)Math.round(MathUtils.clamp(value, -1f, 1f) * 127f));
+						}
+
+						data.put(output + 3, (byte)0);
+					} break;
+					case Usage.ColorUnpacked: {
+						for (int component = 0; component != 4; component++) {
+							final float value = component < source.numComponents ? vertices[input + component] : 1f;
+							data.put(output + component, (byte)Math.round(MathUtils.clamp(value, 0f, 1f) * 255f));
+						}
+					} break;
+					case Usage.TextureCoordinates: {
+						final Vector2 offset = dequantization.texCoordOffset, scale = dequantization.texCoordScale;
+						data.putShort(output, (short)MathUtils.clamp(Math.round((vertices[input] - offset.x) / scale.x), -TEXCOORD_BIAS, TEXCOORD_BIAS - 1));
+						data.putShort(output + 2, (short)MathUtils.clamp(Math.round((vertices[input + 1] - offset.y) / scale.y), -TEXCOORD_BIAS, TEXCOORD_BIAS - 1));
+					} break;
+					default: {
+						// Raw copy, packed colors are written with their bits as is
+						for (int component = 0, words = source.getSizeInBytes() / 4; component != words; component++) {
+							data.putInt(output + component * 4, NumberUtils.floatToRawIntBits(vertices[input + component]));
+						}
+					} break;
+				}
+			}
+		}
+
+		final short[] indices = new short[mesh.getNumIndices()];
+		if (indices.length != 0) {
+			mesh.getIndices(indices);
+		}
+
+		return new PSXFixedPointMesh(data, indices, quantizedAttributes, dequantization);
+	}
+
+	/** Converts every mesh of the model in place: mesh parts are switched to converted meshes, converted meshes are managed
+	 *    by the model, and {@link FixedPointMeshAttribute} is set on the materials. Source meshes aren't used anymore, but stay
+	 *    managed by the model and are disposed with it, to free them earlier meshes should be converted with {@link #convert(Mesh)}
+	 *    while the model is built. Material shared between different meshes is copied for every mesh.
+	 *    Bounds of the mesh parts are kept. Skinned meshes are supported, bone weights are kept as floats.
+	 * @param model Model with float meshes
+	 * @return same model **/
+	public static Model convert(Model model) {
+		final IdentityMap<Mesh, PSXFixedPointMesh> converted = new IdentityMap<>();
+		for (int idx = 0; idx != model.meshes.size; idx++) {
+			final Mesh mesh = model.meshes.get(idx);
+			if (mesh instanceof PSXFixedPointMesh) {
+				continue;
+			}
+
+			final PSXFixedPointMesh fixedPointMesh = convert(mesh);
+			converted.put(mesh, fixedPointMesh);
+			model.meshes.set(idx, fixedPointMesh);
+			model.manageDisposable(fixedPointMesh);
+		}
+
+		for (MeshPart meshPart : model.meshParts) {
+			replaceMesh(meshPart, converted);
+		}
+
+		// Materials are compared by identity, their hash is changed when attribute is set
+		final IdentityMap<Material, Mesh> materialMeshes = new IdentityMap<>();
+		final IdentityMap<Mesh, IdentityMap<Material, Material>> materialCopies = new IdentityMap<>();
+		for (Node node : model.nodes) {
+			convertNode(model, node, converted, materialMeshes, materialCopies);
+		}
+
+		return model;
+	}
+
+	private static void convertNode(Model model, Node node, IdentityMap<Mesh, PSXFixedPointMesh> converted,
+		IdentityMap<Material, Mesh> materialMeshes, IdentityMap<Mesh, IdentityMap<Material, Material>> materialCopies) {
+		for (NodePart nodePart : node.parts) {
+			replaceMesh(nodePart.meshPart, converted);
+			if (!(nodePart.meshPart.mesh instanceof PSXFixedPointMesh) || nodePart.material == null) {
+				continue;
+			}
+
+			final PSXFixedPointMesh mesh = (PSXFixedPointMesh)nodePart.meshPart.mesh;
+			final Mesh materialMesh = materialMeshes.get(nodePart.material);
+			if (materialMesh == null) {
+				materialMeshes.put(nodePart.material, mesh);
+				nodePart.material.set(mesh.createAttribute());
+			} else if (materialMesh != mesh) {
+				// Material is already used by other mesh, every other mesh gets it's own copy
+				IdentityMap<Material, Material> copies = materialCopies.get(mesh);
+				if (copies == null) {
+					materialCopies.put(mesh, copies = new IdentityMap<>());
+				}
+
+				Material copy = copies.get(nodePart.material);
+				if (copy == null) {
+					copy = nodePart.material.copy();
+					copy.set(mesh.createAttribute());
+					copies.put(nodePart.material, copy);
+					model.materials.add(copy);
+				}
+
+				nodePart.material = copy;
+			}
+		}
+
+		for (Node child : node.getChildren()) {
+			convertNode(model, child, converted, materialMeshes, materialCopies);
+		}
+	}
+
+	private static void replaceMesh(MeshPart meshPart, IdentityMap<Mesh, PSXFixedPointMesh> converted) {
+		final PSXFixedPointMesh mesh = converted.get(meshPart.mesh);
+		if (mesh != null) {
+			meshPart.mesh = mesh;
+		}
+	}
+
+	// Step that maps the range into the amount of quantization steps, ranges without size are keeping 1.0 step
+	private static float scale(float range, float steps) {
+		return range > 0f ? range / steps : 1f;
+	}
+
+	private static float getComponent(Vector3 vector, int component) {
+		return component == 0 ? vector.x : component == 1 ? vector.y : vector.z;
+	}
+
+	private static void setComponent(Vector3 vector, int component, float value) {
+		if (component == 0) vector.x = value;
+		else if (component == 1) vector.y = value;
+		else vector.z = value;
+	}
+}
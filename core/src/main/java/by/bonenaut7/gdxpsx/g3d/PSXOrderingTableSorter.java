@@ -0,0 +1,125 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+
+/** Renderable sorter that orders blended renderables with the ordering table, like the GPU of the PS1 did. <br>
+ * Blended renderables are put into the buckets by quantized view depth in O(n) (without comparisons) and rendered bucket by bucket,
+ *    from the farthest to the nearest one; renderables of the same bucket keep their submission order. Amount of buckets
+ *    ({@link #setDepthResolution(int) depth resolution}) defines how precise the order is, depth range is the camera far plane. <br>
+ * Opaque renderables are rendered before blended ones and sorted by the opaque sorter, {@link PSXRenderableSorter} by default.
+ *    Usage: <code>new ModelBatch(new PSXShaderProvider(), new PSXOrderingTableSorter())</code>
+ *
+ * @author bonenaut7 **/
+public class PSXOrderingTableSorter implements RenderableSorter {
+	public static final int DEFAULT_DEPTH_RESOLUTION = 1024;
+
+	private RenderableSorter opaqueSorter;
+	private int depthResolution;
+	private final Array<Renderable> opaque = new Array<>(false, 16, Renderable.class);
+	private final Array<Renderable> blended = new Array<>(false, 16, Renderable.class);
+	private int[] heads, tails;
+	private int[] next = new int[0];
+	private final Vector3 tmpVector = new Vector3();
+
+	public PSXOrderingTableSorter() {
+		this(DEFAULT_DEPTH_RESOLUTION, new PSXRenderableSorter());
+	}
+
+	/** @param depthResolution Amount of the ordering table buckets
+	 *  @param opaqueSorter Sorter of the opaque renderables, or null to keep their submission order **/
+	public PSXOrderingTableSorter(int depthResolution, RenderableSorter opaqueSorter) {
+		this.setDepthResolution(depthResolution);
+		this.opaqueSorter = opaqueSorter;
+	}
+
+	@Override
+	public void sort(final Camera camera, final Array<Renderable> renderables) {
+		final Object[] items = renderables.items; // Array could be untyped
+		for (int idx = 0; idx != renderables.size; idx++) {
+			final Renderable renderable = (Renderable)items[idx];
+			(isBlended(renderable) ? this.blended : this.opaque).add(renderable);
+		}
+
+		if (this.opaqueSorter != null) this.opaqueSorter.sort(camera, this.opaque);
+
+		int offset = 0;
+		for (int idx = 0; idx != this.opaque.size; idx++) {
+			items[offset++] = this.opaque.items[idx];
+		}
+
+		if (this.blended.size != 0) {
+			this.fillOrderingTable(camera);
+			for (int bucket = this.depthResolution - 1; bucket >= 0; bucket--) {
+				for (int idx = this.heads[bucket]; idx != -1; idx = this.next[idx]) {
+					items[offset++] = this.blended.items[idx];
+				}
+			}
+		}
+
+		this.opaque.clear();
+		this.blended.clear();
+	}
+
+	// Links blended renderables into the buckets by quantized view depth
+	private void fillOrderingTable(final Camera camera) {
+		final int size = this.blended.size;
+		if (this.next.length < size) this.next = new int[Math.max(size, (int)(this.next.length * 1.75f))];
+
+		Arrays.fill(this.heads, -1);
+		final float scale = camera.far > 0f ? this.depthResolution / camera.far : 0f;
+		for (int idx = 0; idx != size; idx++) {
+			final Renderable renderable = this.blended.items[idx];
+			final float depth = this.tmpVector.set(renderable.meshPart.center).mul(renderable.worldTransform).sub(camera.position).dot(camera.direction);
+			final int bucket = Math.min(Math.max((int)(depth * scale), 0), this.depthResolution - 1);
+
+			this.next[idx] = -1;
+			if (this.heads[bucket] == -1) this.heads[bucket] = idx;
+			else this.next[this.tails[bucket]] = idx;
+			this.tails[bucket] = idx;
+		}
+	}
+
+	/** @param depthResolution Amount of the ordering table buckets, PS1 games were usually using 256-4096 entries
+	 *  @return self **/
+	public PSXOrderingTableSorter setDepthResolution(int depthResolution) {
+		if (depthResolution < 1) {
+			throw new GdxPsxRuntimeException("depthResolution should be positive");
+		}
+
+		this.depthResolution = depthResolution;
+		this.heads = new int[depthResolution];
+		this.tails = new int[depthResolution];
+		return this;
+	}
+
+	public int getDepthResolution() {
+		return this.depthResolution;
+	}
+
+	/** @param opaqueSorter Sorter of the opaque renderables, or null to keep their submission order
+	 *  @return self **/
+	public PSXOrderingTableSorter setOpaqueSorter(RenderableSorter opaqueSorter) {
+		this.opaqueSorter = opaqueSorter;
+		return this;
+	}
+
+	public RenderableSorter getOpaqueSorter() {
+		return this.opaqueSorter;
+	}
+
+	private static boolean isBlended(final Renderable renderable) {
+		if (renderable.material == null) return false;
+
+		final BlendingAttribute blending = renderable.material.get(BlendingAttribute.class, BlendingAttribute.Type);
+		return blending != null && blending.blended;
+	}
+}
@@ -0,0 +1,204 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.g3d.Attributes;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+import by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute;
+
+/** Renderable sorter for the PSX scenes, replacement for the {@link com.badlogic.gdx.graphics.g3d.utils.DefaultRenderableSorter DefaultRenderableSorter}.
+ *    Every renderable gets 64-bit sort key, keys are sorted with LSD radix sort over primitive arrays, without comparators and allocations
+ *    (after arrays are grown). <br>
+ * Opaque renderables are grouped by shader, diffuse texture, diffuse LUT texture and PSX effect strengths, and sorted front to back
+ *    within the group, so {@link PSXShader} skips most of texture binds and uniform uploads. Blended renderables are rendered after
+ *    opaque ones, back to front. <br>
+ * Key layout of opaque renderables (from the highest bit): blended flag (1), shader (12), diffuse texture (12), diffuse LUT texture (10),
+ *    PSX effects (13), depth (16). Key layout of blended renderables: blended flag (1), inverted depth (24), shader (12), diffuse texture (12),
+ *    unused bits. Textures are identified by lower bits of their GL handles, so rare collisions only make grouping less effective.
+ *
+ * @author bonenaut7 **/
+public class PSXRenderableSorter implements RenderableSorter {
+	private static final int SHADER_BITS = 12;
+	private static final int TEXTURE_BITS = 12;
+	private static final int LUT_BITS = 10;
+	private static final int EFFECTS_BITS = 13;
+	private static final int DEPTH_BITS = 16;
+	private static final int BLENDED_DEPTH_BITS = 24;
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+
+	private final ObjectIntMap<Shader> shaderIds = new ObjectIntMap<>();
+	private final int[] histogram = new int[RADIX_SIZE];
+	private long[] keys = new long[0], tmpKeys = new long[0];
+	private int[] indices = new int[0], tmpIndices = new int[0];
+	private Object[] tmpRenderables = new Object[0];
+	private final Vector3 tmpVector = new Vector3();
+
+	@Override
+	public void sort(final Camera camera, final Array<Renderable> renderables) {
+		final int size = renderables.size;
+		if (size < 2) return;
+
+		this.ensureCapacity(size);
+		final Object[] items = renderables.items; // Array could be untyped
+		for (int idx = 0; idx != size; idx++) {
+			this.keys[idx] = this.createKey(camera, (Renderable)items[idx]);
+			this.indices[idx] = idx;
+		}
+
+		this.radixSort(size);
+
+		System.arraycopy(items, 0, this.tmpRenderables, 0, size);
+		for (int idx = 0; idx != size; idx++) {
+			items[idx] = this.tmpRenderables[this.indices[idx]];
+		}
+
+		Arrays.fill(this.tmpRenderables, 0, size, null);
+	}
+
+	/** @param camera Camera
+	 *  @param renderable Renderable
+	 *  @return sort key of the renderable, renderables are rendered in ascending order of keys (keys are compared as unsigned) **/
+	protected long createKey(final Camera camera, final Renderable renderable) {
+		final float distance = camera.position.dst(getTranslation(renderable.worldTransform, renderable.meshPart.center, this.tmpVector));
+		final float depth = camera.far > 0f ? Math.min(Math.max(distance / camera.far, 0f), 1f) : 0f;
+		final long shader = this.getShaderId(renderable.shader) & mask(SHADER_BITS);
+		final long texture = getTextureHandle(renderable.material, TextureAttribute.Diffuse) & mask(TEXTURE_BITS);
+
+		if (isBlended(renderable)) {
+			final long invertedDepth = mask(BLENDED_DEPTH_BITS) - (long)(depth * mask(BLENDED_DEPTH_BITS));
+			return 1L << 63 | invertedDepth << 39 | shader << 27 | texture << 15;
+		}
+
+		final long lut = getLUTHandle(renderable.material) & mask(LUT_BITS);
+		final long effects = getEffectsHash(renderable) & mask(EFFECTS_BITS);
+		return shader << 51 | texture << 39 | lut << 29 | effects << 16 | (long)(depth * mask(DEPTH_BITS));
+	}
+
+	/** Forgets identifiers of the shaders, should be called when shaders are disposed **/
+	public void clear() {
+		this.shaderIds.clear();
+	}
+
+	private int getShaderId(final Shader shader) {
+		if (shader == null) return 0;
+
+		int id = this.shaderIds.get(shader, 0);
+		if (id == 0) {
+			if (this.shaderIds.size == mask(SHADER_BITS)) this.shaderIds.clear();
+			this.shaderIds.put(shader, id = this.shaderIds.size + 1);
+		}
+
+		return id;
+	}
+
+	// LSD radix sort of the keys with their indices, passes with the same digit in every key are skipped
+	private void radixSort(final int size) {
+		long[] keys = this.keys, tmpKeys = this.tmpKeys;
+		int[] indices = this.indices, tmpIndices = this.tmpIndices;
+		final int[] histogram = this.histogram;
+
+		for (int shift = 0; shift != 64; shift += RADIX_BITS) {
+			Arrays.fill(histogram, 0);
+			for (int idx = 0; idx != size; idx++) {
+				histogram[(int)(keys[idx] >>> shift) & (RADIX_SIZE - 1)]++;
+			}
+
+			if (histogram[(int)(keys[0] >>> shift) & (RADIX_SIZE - 1)] == size) continue;
+
+			for (int digit = 0, offset = 0; digit != RADIX_SIZE; digit++) {
+				final int count = histogram[digit];
+				histogram[digit] = offset;
+				offset += count;
+			}
+
+			for (int idx = 0; idx != size; idx++) {
+				final int position = histogram[(int)(keys[idx] >>> shift) & (RADIX_SIZE - 1)]++;
+				tmpKeys[position] = keys[idx];
+				tmpIndices[position] = indices[idx];
+			}
+
+			final long[] swapKeys = keys;
+			keys = tmpKeys;
+			tmpKeys = swapKeys;
+			final int[] swapIndices = indices;
+			indices = tmpIndices;
+			tmpIndices = swapIndices;
+		}
+
+		this.keys = keys;
+		this.tmpKeys = tmpKeys;
+		this.indices = indices;
+		this.tmpIndices = tmpIndices;
+	}
+
+	private void ensureCapacity(final int size) {
+		if (this.keys.length >= size) return;
+
+		final int capacity = Math.max(size, (int)(this.keys.length * 1.75f));
+		this.keys = new long[capacity];
+		this.tmpKeys = new long[capacity];
+		this.indices = new int[capacity];
+		this.tmpIndices = new int[capacity];
+		this.tmpRenderables = new Object[capacity];
+	}
+
+	private static boolean isBlended(final Renderable renderable) {
+		if (renderable.material == null) return false;
+
+		final BlendingAttribute blending = renderable.material.get(BlendingAttribute.class, BlendingAttribute.Type);
+		return blending != null && blending.blended;
+	}
+
+	private static int getTextureHandle(final Attributes attributes, final long type) {
+		if (attributes == null) return 0;
+
+		final TextureAttribute attribute = attributes.get(TextureAttribute.class, type);
+		if (attribute == null || attribute.textureDescription.texture == null) return 0;
+		return attribute.textureDescription.texture.getTextureObjectHandle();
+	}
+
+	private static int getLUTHandle(final Attributes attributes) {
+		if (attributes == null) return 0;
+
+		final LookupTextureAttribute attribute = attributes.get(LookupTextureAttribute.class, LookupTextureAttribute.diffuseLUT);
+		if (attribute == null) return 0;
+
+		final GLTexture texture = attribute.getTextureDescriptor().texture;
+		return texture == null ? 0 : texture.getTextureObjectHandle();
+	}
+
+	// Hash of the effect strengths, effects of the environment are used if material doesn't override them
+	private static int getEffectsHash(final Renderable renderable) {
+		final int hash = 31 * getEffectStrength(renderable, AttributePSXEffect.vertexSnapping) + getEffectStrength(renderable, AttributePSXEffect.textureAffineMapping);
+		return hash ^ hash >>> EFFECTS_BITS ^ hash >>> EFFECTS_BITS * 2;
+	}
+
+	private static int getEffectStrength(final Renderable renderable, final long type) {
+		AttributePSXEffect attribute = renderable.material == null ? null : renderable.material.get(AttributePSXEffect.class, type);
+		if (attribute == null && renderable.environment != null) attribute = renderable.environment.get(AttributePSXEffect.class, type);
+		return attribute == null ? 0 : Float.floatToIntBits(attribute.strength);
+	}
+
+	private static Vector3 getTranslation(final Matrix4 worldTransform, final Vector3 center, final Vector3 output) {
+		if (center.isZero()) return worldTransform.getTranslation(output);
+		if (!worldTransform.hasRotationOrScaling()) return worldTransform.getTranslation(output).add(center);
+		return output.set(center).mul(worldTransform);
+	}
+
+	private static long mask(final int bits) {
+		return (1L << bits) - 1L;
+	}
+}
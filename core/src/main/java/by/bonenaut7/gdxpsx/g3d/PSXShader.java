@@ -1,28 +1,38 @@
 package by.bonenaut7.gdxpsx.g3d;
 
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g3d.Attributes;
+import com.badlogic.gdx.graphics.g3d.Environment;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.shaders.BaseShader;
 import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.IntFloatMap;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntSet;
 
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+import by.bonenaut7.gdxpsx.PSXShaderPreprocessor;
 import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+import by.bonenaut7.gdxpsx.g3d.attributes.FixedPointMeshAttribute;
+import by.bonenaut7.gdxpsx.g3d.attributes.IndexedTextureAttribute;
 import by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute;
 
 public class PSXShader extends DefaultShader {
 	public final static Uniform psxVertexJitterUniform = new Uniform("u_psxVertexSnapping", AttributePSXEffect.vertexSnapping);
 	public final static Setter psxVertexJitterSetter = new LocalSetter() {
 		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
-			AttributePSXEffect psxEffect = combinedAttributes.get(AttributePSXEffect.class, AttributePSXEffect.vertexSnapping);
-			shader.set(inputID, psxEffect.strength);
+			setEffect(shader, inputID, renderable, combinedAttributes, AttributePSXEffect.vertexSnapping);
 		}
 	};
 	
 	public final static Uniform psxTextureAffinenessUniform = new Uniform("u_psxTextureAffineMapping", AttributePSXEffect.textureAffineMapping);
 	public final static Setter psxTextureAffinenessSetter = new LocalSetter() {
 		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
-			AttributePSXEffect psxEffect = combinedAttributes.get(AttributePSXEffect.class, AttributePSXEffect.textureAffineMapping);
-			shader.set(inputID, psxEffect.strength);
+			setEffect(shader, inputID, renderable, combinedAttributes, AttributePSXEffect.textureAffineMapping);
 		}	
 	};
 	
@@ -30,24 +40,75 @@ public class PSXShader extends DefaultShader {
 	public final static Uniform diffuseLUTUniform = new Uniform("u_diffuseLUT", LookupTextureAttribute.diffuseLUT);
 	public final static Setter diffuseLUTSetter = new LocalSetter() {
 		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
-			shader.set(inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.diffuseLUT).getTextureDescriptor()));
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_DIFFUSE_LUT);
+			setTextureUnit(shader, inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.diffuseLUT).getTextureDescriptor()));
 		}
 	};
 	
 	public final static Uniform specularLUTUniform = new Uniform("u_specularLUT", LookupTextureAttribute.specularLUT);
 	public final static Setter specularLUTSetter = new LocalSetter() {
 		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
-			shader.set(inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.specularLUT).getTextureDescriptor()));
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_SPECULAR_LUT);
+			setTextureUnit(shader, inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.specularLUT).getTextureDescriptor()));
 		}
 	};
 	
 	public final static Uniform emissiveLUTUniform = new Uniform("u_emissiveLUT", LookupTextureAttribute.emissiveLUT);
 	public final static Setter emissiveLUTSetter = new LocalSetter() {
 		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
-			shader.set(inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.emissiveLUT).getTextureDescriptor()));
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_EMISSIVE_LUT);
+			setTextureUnit(shader, inputID, shader.context.textureBinder.bind(combinedAttributes.get(LookupTextureAttribute.class, LookupTextureAttribute.emissiveLUT).getTextureDescriptor()));
 		}
 	};
 	
+	public final static Uniform psxFixedPointOriginUniform = new Uniform("u_psxFixedPointOrigin", FixedPointMeshAttribute.fixedPoint);
+	public final static Setter psxFixedPointOriginSetter = new LocalSetter() {
+		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+			shader.set(inputID, combinedAttributes.get(FixedPointMeshAttribute.class, FixedPointMeshAttribute.fixedPoint).origin);
+		}
+	};
+	
+	public final static Uniform psxFixedPointScaleUniform = new Uniform("u_psxFixedPointScale", FixedPointMeshAttribute.fixedPoint);
+	public final static Setter psxFixedPointScaleSetter = new LocalSetter() {
+		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+			shader.set(inputID, combinedAttributes.get(FixedPointMeshAttribute.class, FixedPointMeshAttribute.fixedPoint).scale);
+		}
+	};
+	
+	public final static Uniform psxFixedPointTexCoordUniform = new Uniform("u_psxFixedPointTexCoord", FixedPointMeshAttribute.fixedPoint);
+	public final static Setter psxFixedPointTexCoordSetter = new LocalSetter() {
+		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+			FixedPointMeshAttribute fixedPoint = combinedAttributes.get(FixedPointMeshAttribute.class, FixedPointMeshAttribute.fixedPoint);
+			shader.set(inputID, fixedPoint.texCoordOffset.x, fixedPoint.texCoordOffset.y, fixedPoint.texCoordScale.x, fixedPoint.texCoordScale.y);
+		}
+	};
+	
+	public final static Uniform psxPaletteTextureUniform = new Uniform("u_psxPaletteTexture", IndexedTextureAttribute.indexedTexture);
+	public final static Setter psxPaletteTextureSetter = new LocalSetter() {
+		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+			IndexedTexture texture = combinedAttributes.get(IndexedTextureAttribute.class, IndexedTextureAttribute.indexedTexture).texture;
+			Texture paletteTexture = texture.getPalette().getTexture(); // Uploads added rows before binding
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_INDEXED_PALETTE);
+			setTextureUnit(shader, inputID, shader.context.textureBinder.bind(paletteTexture));
+		}
+	};
+	
+	public final static Uniform psxIndexedTextureUniform = new Uniform("u_psxIndexedTexture", IndexedTextureAttribute.indexedTexture);
+	public final static Setter psxIndexedTextureSetter = new LocalSetter() {
+		public void set(BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+			IndexedTexture texture = combinedAttributes.get(IndexedTextureAttribute.class, IndexedTextureAttribute.indexedTexture).texture;
+			shader.set(inputID, texture.getWidth(), texture.getBits() == 4 ? 1f : 0f, texture.getPalette().getRowCoordinate(texture.getPaletteRow()), 0f);
+		}
+	};
+	
+	// Cached uniform values, uniforms are uploaded only when value is changed
+	private final IntFloatMap floatUniformsCache = new IntFloatMap();
+	private final IntIntMap intUniformsCache = new IntIntMap();
+	// Uniforms with values taken from the current environment
+	private final IntSet environmentUniforms = new IntSet();
+	private Environment currentEnvironment;
+	private boolean environmentGlobals;
+	
 	public PSXShader(final Renderable renderable) {
 		this(renderable, new Config());
 	}
@@ -60,8 +121,9 @@ public class PSXShader extends DefaultShader {
 		this(renderable, config, prefix, config.vertexShader, config.fragmentShader);
 	}
 
+	/** Sources are passed through {@link PSXShaderPreprocessor} before compilation, unless it's {@link PSXShaderPreprocessor#setEnabled(boolean) disabled} **/
 	public PSXShader(final Renderable renderable, final Config config, final String prefix, final String vertexShader, final String fragmentShader) {
-		this(renderable, config, new ShaderProgram(prefix + vertexShader, prefix + fragmentShader));
+		this(renderable, config, new ShaderProgram(PSXShaderPreprocessor.processVertexShader(prefix + vertexShader), PSXShaderPreprocessor.processFragmentShader(prefix + fragmentShader)));
 	}
 	
 	public PSXShader(final Renderable renderable, final Config config, final ShaderProgram shaderProgram) {
@@ -71,24 +133,113 @@ public class PSXShader extends DefaultShader {
 		this.register(diffuseLUTUniform, diffuseLUTSetter);
 		this.register(specularLUTUniform, specularLUTSetter);
 		this.register(emissiveLUTUniform, emissiveLUTSetter);
+		this.register(psxFixedPointOriginUniform, psxFixedPointOriginSetter);
+		this.register(psxFixedPointScaleUniform, psxFixedPointScaleSetter);
+		this.register(psxFixedPointTexCoordUniform, psxFixedPointTexCoordSetter);
+		this.register(psxPaletteTextureUniform, psxPaletteTextureSetter);
+		this.register(psxIndexedTextureUniform, psxIndexedTextureSetter);
 	}
 	
-	public static String createPSXPrefix(final Renderable renderable, final Config config) {
-		final String prefix$ = createPrefix(renderable, config);
-		String prefix = prefix$;
-		Attributes attributes = combineAttributes(renderable);
-		final long attributesMask = attributes.getMask();
+	@Override
+	public void begin(final Camera camera, final RenderContext context) {
+		super.begin(camera, context);
+		this.floatUniformsCache.clear();
+		this.intUniformsCache.clear();
+		this.environmentUniforms.clear();
+		this.currentEnvironment = null;
+	}
+	
+	@Override
+	public void render(final Renderable renderable, final Attributes combinedAttributes) {
+		if (renderable.environment != this.currentEnvironment) {
+			this.currentEnvironment = renderable.environment;
+			this.environmentUniforms.clear();
+		}
+		
+		super.render(renderable, combinedAttributes);
+	}
+	
+	/** Uploads uniform only if value differs from the previously uploaded one since {@link #begin(Camera, RenderContext) begin}
+	 *  @param uniform Uniform ID
+	 *  @param value Value
+	 *  @return true if uniform was uploaded **/
+	public boolean setCached(final int uniform, final float value) {
+		if (this.floatUniformsCache.get(uniform, Float.NaN) == value) {
+			PSXRenderStats.increment(Counter.UNIFORM_UPLOADS_SKIPPED);
+			return false;
+		}
 		
-		if (hasFlag(attributesMask, AttributePSXEffect.vertexSnapping)) prefix += "#define " + AttributePSXEffect.vertexSnappingAlias + "Flag\n";
-		if (hasFlag(attributesMask, AttributePSXEffect.textureAffineMapping)) prefix += "#define " + AttributePSXEffect.textureAffineMappingAlias + "Flag\n";
-		if (hasFlag(attributesMask, LookupTextureAttribute.diffuseLUT) || hasFlag(attributesMask, LookupTextureAttribute.specularLUT) || hasFlag(attributesMask, LookupTextureAttribute.emissiveLUT)) {
-			prefix += "#define " + LookupTextureAttribute.LUTMappingAlias + "Flag\n";
-			if (hasFlag(attributesMask, LookupTextureAttribute.diffuseLUT)) prefix += "#define " + LookupTextureAttribute.diffuseLUTAlias + "Flag\n";
-			if (hasFlag(attributesMask, LookupTextureAttribute.specularLUT)) prefix += "#define " + LookupTextureAttribute.specularLUTAlias + "Flag\n";
-			if (hasFlag(attributesMask, LookupTextureAttribute.emissiveLUT)) prefix += "#define " + LookupTextureAttribute.emissiveLUTAlias + "Flag\n";
+		PSXRenderStats.increment(Counter.UNIFORM_UPLOADS);
+		this.floatUniformsCache.put(uniform, value);
+		return this.set(uniform, value);
+	}
+	
+	/** Uploads uniform only if value differs from the previously uploaded one since {@link #begin(Camera, RenderContext) begin}
+	 *  @param uniform Uniform ID
+	 *  @param value Value
+	 *  @return true if uniform was uploaded **/
+	public boolean setCached(final int uniform, final int value) {
+		if (this.intUniformsCache.containsKey(uniform) && this.intUniformsCache.get(uniform, 0) == value) {
+			PSXRenderStats.increment(Counter.UNIFORM_UPLOADS_SKIPPED);
+			return false;
 		}
 		
-		return prefix;
+		PSXRenderStats.increment(Counter.UNIFORM_UPLOADS);
+		this.intUniformsCache.put(uniform, value);
+		return this.set(uniform, value);
+	}
+	
+	/** Treats PSX effect attributes of the {@link Environment} as global uniforms: they're set once for the environment
+	 *    after {@link #begin(Camera, RenderContext) begin}, without attribute lookups for the next renderables with the same environment
+	 *    (unless material overrides them). Changes of environment attributes between begin and end are ignored.
+	 *  @param environmentGlobals true to enable **/
+	public void setEnvironmentGlobals(final boolean environmentGlobals) {
+		this.environmentGlobals = environmentGlobals;
+	}
+	
+	public boolean isEnvironmentGlobals() {
+		return this.environmentGlobals;
+	}
+	
+	/** Sets PSX effect strength uniform, see {@link #setCached(int, float)} and {@link #setEnvironmentGlobals(boolean)} **/
+	protected static void setEffect(final BaseShader shader, final int inputID, final Renderable renderable, final Attributes combinedAttributes, final long type) {
+		if (!(shader instanceof PSXShader)) {
+			shader.set(inputID, combinedAttributes.get(AttributePSXEffect.class, type).strength);
+			return;
+		}
+		
+		final PSXShader psxShader = (PSXShader)shader;
+		final boolean global = psxShader.environmentGlobals && (renderable.material == null || !renderable.material.has(type));
+		if (global && psxShader.environmentUniforms.contains(inputID)) return;
+		
+		psxShader.setCached(inputID, combinedAttributes.get(AttributePSXEffect.class, type).strength);
+		if (global) psxShader.environmentUniforms.add(inputID);
+		else psxShader.environmentUniforms.remove(inputID);
+	}
+	
+	/** Sets texture unit uniform, see {@link #setCached(int, int)} **/
+	protected static void setTextureUnit(final BaseShader shader, final int inputID, final int unit) {
+		if (shader instanceof PSXShader) ((PSXShader)shader).setCached(inputID, unit);
+		else shader.set(inputID, unit);
+	}
+	
+	/** Checks if this shader could be shared with the renderable that has the same prefix.
+	 *  Prefix doesn't reflect environment presence if mesh has no normals, while shader binds lights for it.
+	 *  @param renderable Renderable with the same {@link #createPSXPrefix(Renderable, Config) prefix}
+	 *  @return true if shader can be used for the renderable **/
+	public boolean canShare(final Renderable renderable) {
+		final boolean lighting = renderable.environment != null;
+		return this.lighting == lighting && this.shadowMap == (lighting && renderable.environment.shadowMap != null);
+	}
+	
+	/** Creates prefix for the renderable, doesn't use any shared state so it's safe to call from any thread.
+	 *  Allocates new builder every call, use {@link PSXShaderPrefixBuilder} with {@link PSXShaderPrefixCache}
+	 *    to avoid allocations.
+	 *  @param renderable Renderable
+	 *  @param config Shader config
+	 *  @return prefix with defines for the shader **/
+	public static String createPSXPrefix(final Renderable renderable, final Config config) {
+		return new PSXShaderPrefixBuilder().set(renderable).build(config).toString();
 	}
 	
 	protected final static Attributes tmpAttributes = new Attributes();
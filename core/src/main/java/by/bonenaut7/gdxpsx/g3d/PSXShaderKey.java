@@ -0,0 +1,98 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+
+/** Hashable description of everything that {@link PSXShader} depends on for the renderable:
+ *    combined attributes mask of environment and material (including {@link by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect AttributePSXEffect}
+ *    and {@link by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute LookupTextureAttribute} bits),
+ *    vertex attributes mask, texture coordinate units, bone weights and environment flags. <br>
+ * Light counts aren't part of the key, because they're fixed by the {@link com.badlogic.gdx.graphics.g3d.shaders.DefaultShader.Config shader config}. <br>
+ * Key is mutable, so it can be reused for the lookups without allocations.
+ *
+ * @author bonenaut7 **/
+public final class PSXShaderKey {
+	public static final int FLAG_ENVIRONMENT = 1;
+	public static final int FLAG_SHADOW_MAP = 1 << 1;
+	public static final int FLAG_BONES = 1 << 2;
+
+	/** Combined mask of environment and material attributes **/
+	public long attributesMask;
+	/** Vertex attributes mask with size packed, see {@link VertexAttributes#getMaskWithSizePacked()} **/
+	public long vertexMask;
+	/** Bit mask of texture coordinate units **/
+	public int textureCoordinates;
+	/** Amount of bone weight vertex attributes **/
+	public int boneWeights;
+	/** Combination of FLAG_* values **/
+	public int flags;
+
+	public PSXShaderKey() {
+	}
+
+	public PSXShaderKey(PSXShaderKey key) {
+		this.set(key);
+	}
+
+	/** Fills key from the renderable, doesn't use any shared state, so it's safe to call from any thread.
+	 * @param renderable Renderable
+	 * @return self **/
+	public PSXShaderKey set(Renderable renderable) {
+		long attributesMask = 0;
+		if (renderable.environment != null) attributesMask |= renderable.environment.getMask();
+		if (renderable.material != null) attributesMask |= renderable.material.getMask();
+		this.attributesMask = attributesMask;
+
+		final VertexAttributes attributes = renderable.meshPart.mesh.getVertexAttributes();
+		this.vertexMask = attributes.getMaskWithSizePacked();
+		this.textureCoordinates = 0;
+		this.boneWeights = 0;
+		for (int idx = 0, size = attributes.size(); idx != size; idx++) {
+			final VertexAttribute attribute = attributes.get(idx);
+			if (attribute.usage == Usage.TextureCoordinates) this.textureCoordinates |= 1 << attribute.unit;
+			else if (attribute.usage == Usage.BoneWeight) this.boneWeights++;
+		}
+
+		int flags = 0;
+		if (renderable.environment != null) {
+			flags |= FLAG_ENVIRONMENT;
+			if (renderable.environment.shadowMap != null) flags |= FLAG_SHADOW_MAP;
+		}
+		if (renderable.bones != null) flags |= FLAG_BONES;
+		this.flags = flags;
+		return this;
+	}
+
+	public PSXShaderKey set(PSXShaderKey key) {
+		this.attributesMask = key.attributesMask;
+		this.vertexMask = key.vertexMask;
+		this.textureCoordinates = key.textureCoordinates;
+		this.boneWeights = key.boneWeights;
+		this.flags = key.flags;
+		return this;
+	}
+
+	public PSXShaderKey copy() {
+		return new PSXShaderKey(this);
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = this.attributesMask * 31 + this.vertexMask;
+		hash = hash * 31 + this.textureCoordinates;
+		hash = hash * 31 + this.boneWeights;
+		hash = hash * 31 + this.flags;
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) return true;
+		if (!(object instanceof PSXShaderKey)) return false;
+		final PSXShaderKey key = (PSXShaderKey)object;
+		return this.attributesMask == key.attributesMask && this.vertexMask == key.vertexMask && this.textureCoordinates == key.textureCoordinates
+			&& this.boneWeights == key.boneWeights && this.flags == key.flags;
+	}
+}
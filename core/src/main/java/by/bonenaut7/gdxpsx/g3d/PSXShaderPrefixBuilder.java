@@ -0,0 +1,133 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.CubemapAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+import by.bonenaut7.gdxpsx.g3d.attributes.FixedPointMeshAttribute;
+import by.bonenaut7.gdxpsx.g3d.attributes.IndexedTextureAttribute;
+import by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute;
+
+/** Reentrant builder of the {@link PSXShader} prefix. <br>
+ * Unlike {@link DefaultShader#createPrefix(Renderable, DefaultShader.Config)} it doesn't use any shared
+ *    state and doesn't allocate (except growing of the internal buffer on first calls), prefix is
+ *    written into the builder-owned {@link StringBuilder}. Builder instance itself is a scratch state,
+ *    so every thread should use it's own instance. <br>
+ * Prefix is built only from the {@link PSXShaderKey}, so the same key always produces the same prefix,
+ *    see {@link PSXShaderPrefixCache} for the interned prefixes.
+ *
+ * @author bonenaut7 **/
+public final class PSXShaderPrefixBuilder {
+	private final PSXShaderKey key = new PSXShaderKey();
+	private final StringBuilder builder = new StringBuilder(1024);
+
+	/** Fills the key from the renderable
+	 * @param renderable Renderable
+	 * @return self **/
+	public PSXShaderPrefixBuilder set(Renderable renderable) {
+		this.key.set(renderable);
+		return this;
+	}
+
+	/** @param key Key to build prefix for
+	 * @return self **/
+	public PSXShaderPrefixBuilder set(PSXShaderKey key) {
+		this.key.set(key);
+		return this;
+	}
+
+	/** @return current key, shouldn't be modified **/
+	public PSXShaderKey getKey() {
+		return this.key;
+	}
+
+	/** Builds prefix for the current key. Produces the same defines as
+	 *    {@link DefaultShader#createPrefix(Renderable, DefaultShader.Config)} followed by gdx-psx defines.
+	 * @param config Shader config
+	 * @return builder-owned buffer with the prefix, valid until next call **/
+	public StringBuilder build(DefaultShader.Config config) {
+		final StringBuilder builder = this.builder;
+		final long attributesMask = this.key.attributesMask;
+		final long vertexMask = this.key.vertexMask & 0xFFFFFFFFL; // Size is packed into high bits
+		final boolean environment = (this.key.flags & PSXShaderKey.FLAG_ENVIRONMENT) != 0;
+		final boolean bones = (this.key.flags & PSXShaderKey.FLAG_BONES) != 0;
+		builder.setLength(0);
+
+		// DefaultShader prefix
+		if (hasFlag(vertexMask, Usage.Position)) builder.append("#define positionFlag\n");
+		if ((vertexMask & (Usage.ColorUnpacked | Usage.ColorPacked)) != 0) builder.append("#define colorFlag\n");
+		if (hasFlag(vertexMask, Usage.BiNormal)) builder.append("#define binormalFlag\n");
+		if (hasFlag(vertexMask, Usage.Tangent)) builder.append("#define tangentFlag\n");
+		if (hasFlag(vertexMask, Usage.Normal)) builder.append("#define normalFlag\n");
+		if (hasFlag(vertexMask, Usage.Normal) || hasFlag(vertexMask, Usage.Tangent | Usage.BiNormal)) {
+			if (environment) {
+				builder.append("#define lightingFlag\n");
+				builder.append("#define ambientCubemapFlag\n");
+				builder.append("#define numDirectionalLights ").append(config.numDirectionalLights).append('\n');
+				builder.append("#define numPointLights ").append(config.numPointLights).append('\n');
+				builder.append("#define numSpotLights ").append(config.numSpotLights).append('\n');
+				if (hasFlag(attributesMask, ColorAttribute.Fog)) builder.append("#define fogFlag\n");
+				if ((this.key.flags & PSXShaderKey.FLAG_SHADOW_MAP) != 0) builder.append("#define shadowMapFlag\n");
+				if (hasFlag(attributesMask, CubemapAttribute.EnvironmentMap)) builder.append("#define environmentCubemapFlag\n");
+			}
+		}
+		for (int textureCoordinates = this.key.textureCoordinates, unit = 0; textureCoordinates != 0; textureCoordinates >>>= 1, unit++) {
+			if ((textureCoordinates & 1) != 0) builder.append("#define texCoord").append(unit).append("Flag\n");
+		}
+		if (bones) {
+			for (int idx = 0; idx < config.numBoneWeights; idx++) {
+				builder.append("#define boneWeight").append(idx).append("Flag\n");
+			}
+		}
+		if (hasFlag(attributesMask, BlendingAttribute.Type)) appendFlag(builder, BlendingAttribute.Alias);
+		appendTexture(builder, attributesMask, TextureAttribute.Diffuse, TextureAttribute.DiffuseAlias);
+		appendTexture(builder, attributesMask, TextureAttribute.Specular, TextureAttribute.SpecularAlias);
+		appendTexture(builder, attributesMask, TextureAttribute.Normal, TextureAttribute.NormalAlias);
+		appendTexture(builder, attributesMask, TextureAttribute.Emissive, TextureAttribute.EmissiveAlias);
+		appendTexture(builder, attributesMask, TextureAttribute.Reflection, TextureAttribute.ReflectionAlias);
+		appendTexture(builder, attributesMask, TextureAttribute.Ambient, TextureAttribute.AmbientAlias);
+		if (hasFlag(attributesMask, ColorAttribute.Diffuse)) appendFlag(builder, ColorAttribute.DiffuseAlias);
+		if (hasFlag(attributesMask, ColorAttribute.Specular)) appendFlag(builder, ColorAttribute.SpecularAlias);
+		if (hasFlag(attributesMask, ColorAttribute.Emissive)) appendFlag(builder, ColorAttribute.EmissiveAlias);
+		if (hasFlag(attributesMask, ColorAttribute.Reflection)) appendFlag(builder, ColorAttribute.ReflectionAlias);
+		if (hasFlag(attributesMask, FloatAttribute.Shininess)) appendFlag(builder, FloatAttribute.ShininessAlias);
+		if (hasFlag(attributesMask, FloatAttribute.AlphaTest)) appendFlag(builder, FloatAttribute.AlphaTestAlias);
+		if (bones && config.numBones > 0) builder.append("#define numBones ").append(config.numBones).append('\n');
+
+		// PSX prefix
+		if (hasFlag(attributesMask, AttributePSXEffect.vertexSnapping)) appendFlag(builder, AttributePSXEffect.vertexSnappingAlias);
+		if (hasFlag(attributesMask, AttributePSXEffect.textureAffineMapping)) appendFlag(builder, AttributePSXEffect.textureAffineMappingAlias);
+		if (hasFlag(attributesMask, FixedPointMeshAttribute.fixedPoint)) appendFlag(builder, FixedPointMeshAttribute.fixedPointAlias);
+		if (hasFlag(attributesMask, IndexedTextureAttribute.indexedTexture)) appendFlag(builder, IndexedTextureAttribute.indexedTextureAlias);
+		if ((attributesMask & (LookupTextureAttribute.diffuseLUT | LookupTextureAttribute.specularLUT | LookupTextureAttribute.emissiveLUT)) != 0) {
+			appendFlag(builder, LookupTextureAttribute.LUTMappingAlias);
+			if (hasFlag(attributesMask, LookupTextureAttribute.diffuseLUT)) appendFlag(builder, LookupTextureAttribute.diffuseLUTAlias);
+			if (hasFlag(attributesMask, LookupTextureAttribute.specularLUT)) appendFlag(builder, LookupTextureAttribute.specularLUTAlias);
+			if (hasFlag(attributesMask, LookupTextureAttribute.emissiveLUT)) appendFlag(builder, LookupTextureAttribute.emissiveLUTAlias);
+		}
+
+		return builder;
+	}
+
+	private static void appendFlag(StringBuilder builder, String alias) {
+		builder.append("#define ").append(alias).append("Flag\n");
+	}
+
+	// FIXME(libgdx) implement UV mapping, all textures are using texCoord0 same as in DefaultShader
+	private static void appendTexture(StringBuilder builder, long attributesMask, long type, String alias) {
+		if (hasFlag(attributesMask, type)) {
+			builder.append("#define ").append(alias).append("Flag\n");
+			builder.append("#define ").append(alias).append("Coord texCoord0\n");
+		}
+	}
+
+	private static boolean hasFlag(long masks, long flag) {
+		return (masks & flag) == flag;
+	}
+}
@@ -0,0 +1,70 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/** Thread-safe cache of interned {@link PSXShader} prefixes keyed by {@link PSXShaderKey}. <br>
+ * Repeated calls with the same key are returning the same string instance without allocations,
+ *    so prefixes could be prepared on loader threads (every thread with it's own {@link PSXShaderPrefixBuilder}),
+ *    while only GL thread compiles the shaders. <br>
+ * Cache is bound to the config, config shouldn't be changed after cache creation.
+ *
+ * @author bonenaut7 **/
+public class PSXShaderPrefixCache {
+	private final DefaultShader.Config config;
+	private final ObjectMap<PSXShaderKey, String> prefixes = new ObjectMap<>();
+
+	public PSXShaderPrefixCache(DefaultShader.Config config) {
+		this.config = config;
+	}
+
+	/** @param builder Caller-owned builder with the key set
+	 * @return interned prefix for the builder's key **/
+	public String get(PSXShaderPrefixBuilder builder) {
+		final PSXShaderKey key = builder.getKey();
+		synchronized (this.prefixes) {
+			final String prefix = this.prefixes.get(key);
+			if (prefix != null) {
+				return prefix;
+			}
+		}
+
+		// Building outside of the lock, the first stored prefix wins if other thread was faster
+		final String prefix = builder.build(this.config).toString();
+		synchronized (this.prefixes) {
+			final String storedPrefix = this.prefixes.get(key);
+			if (storedPrefix != null) {
+				return storedPrefix;
+			}
+
+			this.prefixes.put(key.copy(), prefix);
+			return prefix;
+		}
+	}
+
+	/** @param builder Caller-owned builder, key is being overwritten
+	 * @param renderable Renderable
+	 * @return interned prefix for the renderable **/
+	public String get(PSXShaderPrefixBuilder builder, Renderable renderable) {
+		return this.get(builder.set(renderable));
+	}
+
+	/** @return config that prefixes are built with **/
+	public DefaultShader.Config getConfig() {
+		return this.config;
+	}
+
+	/** @return amount of cached prefixes **/
+	public int getSize() {
+		synchronized (this.prefixes) {
+			return this.prefixes.size;
+		}
+	}
+
+	public void clear() {
+		synchronized (this.prefixes) {
+			this.prefixes.clear();
+		}
+	}
+}
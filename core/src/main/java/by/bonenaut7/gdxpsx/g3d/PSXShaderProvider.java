@@ -2,10 +2,22 @@ package by.bonenaut7.gdxpsx.g3d;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.Shader;
 import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
 import com.badlogic.gdx.graphics.g3d.utils.BaseShaderProvider;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
 
 /** PSXShader provider for the {@link ModelBatch} and replacement for previously used {@link ShaderTransformer}.
  *  PSXShader is shader made out of default libgdx 3d shader with some another features such as: <ul>
@@ -13,10 +25,31 @@ import com.badlogic.gdx.graphics.g3d.utils.BaseShaderProvider;
  *  <li>Per-renderable PSX Texture affineness(aka broken perspective)</li>
  *  <li>Per-renderable Lookup table texture support</li>
  *  <li>SpotLights support</li></ul>
+ *  Shaders could be compiled ahead of time (for example on a loading screen) with
+ *    {@link #prewarm(ModelInstance, Environment) prewarm(...)} and {@link #updatePrewarm(float)}.
  */
 public class PSXShaderProvider extends BaseShaderProvider {
 	public static final PSXShaderType DEFAULT_SHADER_TYPE = PSXShaderType.LIT_PerFragmentLighting;
 	public final DefaultShader.Config config;
+	protected final ObjectMap<PSXShaderKey, Shader> shadersByKey = new ObjectMap<>();
+	protected final ObjectMap<String, Shader> shadersByPrefix = new ObjectMap<>();
+	protected final PSXShaderPrefixCache prefixCache;
+	private final PSXShaderPrefixBuilder prefixBuilder = new PSXShaderPrefixBuilder();
+	private final PSXShaderKey tmpKey = new PSXShaderKey();
+	
+	// Prewarming
+	private final Array<Renderable> prewarmQueue = new Array<>();
+	private final ObjectSet<String> prewarmPrefixes = new ObjectSet<>();
+	private final Array<String> latePermutations = new Array<>();
+	private final Array<Renderable> tmpRenderables = new Array<>();
+	private final Pool<Renderable> tmpRenderablesPool = new Pool<Renderable>() {
+		protected Renderable newObject() {
+			return new Renderable();
+		}
+	};
+	private int prewarmQueued, prewarmCompleted;
+	private boolean prewarmFinished;
+	private boolean environmentGlobals;
 
 	public PSXShaderProvider() {
 		this(DEFAULT_SHADER_TYPE, new DefaultShader.Config());
@@ -42,6 +75,7 @@ public class PSXShaderProvider extends BaseShaderProvider {
 	 *  @param config - Shader config **/
 	public PSXShaderProvider(PSXShaderType shaderType, final DefaultShader.Config config) {
 		this.config = config == null ? new DefaultShader.Config() : config;
+		this.prefixCache = new PSXShaderPrefixCache(this.config);
 		if ((this.config.vertexShader == null || this.config.fragmentShader == null) && shaderType == null) shaderType = PSXShaderType.LIT_PerFragmentLighting;
 		if (shaderType != null) {
 			switch (shaderType) {
@@ -57,7 +91,190 @@ public class PSXShaderProvider extends BaseShaderProvider {
 		}
 	}
 
-	protected Shader createShader(final Renderable renderable) {
-		return new PSXShader(renderable, this.config);
+	/** Finds shader for the renderable with a hash lookup by {@link PSXShaderKey}, instead of
+	 *    checking every created shader with {@link Shader#canRender(Renderable)}.
+	 *  New shader is created only if there's no shader with the same {@link PSXShader#createPSXPrefix(Renderable, DefaultShader.Config) prefix},
+	 *    otherwise shader with identical prefix is reused for the renderable. **/
+	@Override
+	public Shader getShader(final Renderable renderable) {
+		final Shader suggestedShader = renderable.shader;
+		if (suggestedShader != null && suggestedShader.canRender(renderable)) {
+			PSXRenderStats.increment(Counter.SHADER_LOOKUP_HITS);
+			return suggestedShader;
+		}
+		
+		Shader shader = this.shadersByKey.get(this.tmpKey.set(renderable));
+		if (shader != null) {
+			PSXRenderStats.increment(Counter.SHADER_LOOKUP_HITS);
+			return shader;
+		}
+		
+		PSXRenderStats.increment(Counter.SHADER_LOOKUP_MISSES);
+		final String prefix = this.prefixCache.get(this.prefixBuilder, renderable);
+		shader = this.shadersByPrefix.get(prefix);
+		if (shader == null || !(shader instanceof PSXShader && ((PSXShader)shader).canShare(renderable))) {
+			final long compileStartTime = PSXRenderStats.compileStarted();
+			shader = this.createShader(renderable, prefix);
+			if (!shader.canRender(renderable)) throw new GdxPsxRuntimeException("unable to provide a shader for this renderable");
+			shader.init();
+			PSXRenderStats.compiled(Counter.SHADERS_CREATED, compileStartTime);
+			if (shader instanceof PSXShader) ((PSXShader)shader).setEnvironmentGlobals(this.environmentGlobals);
+			this.shaders.add(shader);
+			if (!this.shadersByPrefix.containsKey(prefix)) this.shadersByPrefix.put(prefix, shader);
+			if (this.prewarmFinished) this.latePermutations.add(prefix);
+		}
+		
+		this.shadersByKey.put(this.tmpKey.copy(), shader);
+		return shader;
+	}
+	
+	/** Final, because {@link #getShader(Renderable)} creates shaders with the already resolved prefix,
+	 *    override {@link #createShader(Renderable, String)} instead **/
+	@Override
+	protected final Shader createShader(final Renderable renderable) {
+		return this.createShader(renderable, this.prefixCache.get(this.prefixBuilder, renderable));
+	}
+	
+	/** Creates new shader, this is the only extension point for the shader creation of the provider
+	 *  @param renderable Renderable
+	 *  @param prefix Prefix created with {@link PSXShader#createPSXPrefix(Renderable, DefaultShader.Config)}
+	 *  @return new shader for the renderable **/
+	protected Shader createShader(final Renderable renderable, final String prefix) {
+		return new PSXShader(renderable, this.config, prefix);
+	}
+	
+	/** @return cache of interned shader prefixes, could be used from loader threads
+	 *    (with thread-owned {@link PSXShaderPrefixBuilder}) to prepare prefixes ahead of time **/
+	public PSXShaderPrefixCache getPrefixCache() {
+		return this.prefixCache;
+	}
+	
+	/** Sets {@link PSXShader#setEnvironmentGlobals(boolean) environment globals} mode for created and future shaders
+	 *  @param environmentGlobals true if PSX effect attributes of the environment should be set once per environment
+	 *  @return self **/
+	public PSXShaderProvider setEnvironmentGlobals(boolean environmentGlobals) {
+		this.environmentGlobals = environmentGlobals;
+		for (int idx = 0; idx != this.shaders.size; idx++) {
+			final Shader shader = this.shaders.get(idx);
+			if (shader instanceof PSXShader) ((PSXShader)shader).setEnvironmentGlobals(environmentGlobals);
+		}
+		
+		return this;
+	}
+	
+	public boolean isEnvironmentGlobals() {
+		return this.environmentGlobals;
+	}
+	
+	/** @param shader Shader
+	 *  @return true if shader was created by this provider **/
+	public boolean isOwner(final Shader shader) {
+		return this.shaders.contains(shader, true);
+	}
+	
+	// Prewarming
+	
+	/** Queues shaders for all renderables of the model to be compiled with {@link #updatePrewarm(float)}
+	 *  @param model Model
+	 *  @param environment Environment that model will be rendered with, or null **/
+	public void prewarm(final Model model, final Environment environment) {
+		this.prewarm(new ModelInstance(model), environment);
+	}
+	
+	/** Queues shaders for all renderables of the model instance to be compiled with {@link #updatePrewarm(float)}
+	 *  @param modelInstance Model instance
+	 *  @param environment Environment that model instance will be rendered with, or null **/
+	public void prewarm(final ModelInstance modelInstance, final Environment environment) {
+		modelInstance.getRenderables(this.tmpRenderables, this.tmpRenderablesPool);
+		for (int idx = 0; idx != this.tmpRenderables.size; idx++) {
+			final Renderable renderable = this.tmpRenderables.get(idx);
+			renderable.environment = environment;
+			this.prewarm(renderable);
+		}
+		
+		this.tmpRenderablesPool.freeAll(this.tmpRenderables);
+		this.tmpRenderables.clear();
+	}
+	
+	/** Queues shader for the renderable to be compiled with {@link #updatePrewarm(float)}.
+	 *  Renderable is copied, and queued only if there's no shader or queued renderable with the same
+	 *    {@link PSXShader#createPSXPrefix(Renderable, DefaultShader.Config) prefix}.
+	 *  @param renderable Renderable descriptor, with environment that it will be rendered with **/
+	public void prewarm(final Renderable renderable) {
+		if (this.shadersByKey.containsKey(this.tmpKey.set(renderable))) return;
+		
+		final String prefix = this.prefixCache.get(this.prefixBuilder, renderable);
+		if (this.shadersByPrefix.containsKey(prefix) || !this.prewarmPrefixes.add(prefix)) return;
+		
+		final Renderable copy = new Renderable().set(renderable);
+		copy.shader = null;
+		this.prewarmQueue.add(copy);
+		this.prewarmQueued++;
+		this.prewarmFinished = false;
+	}
+	
+	/** Compiles queued shaders until time budget is exceeded, at least one shader is compiled per call.
+	 *  @param budget Time budget in seconds
+	 *  @return true if all queued shaders are compiled **/
+	public boolean updatePrewarm(float budget) {
+		final long startTime = TimeUtils.nanoTime();
+		final long budgetNanos = (long)(budget * 1000000000L);
+		
+		while (this.prewarmQueue.size != 0) {
+			this.getShader(this.prewarmQueue.removeIndex(this.prewarmQueue.size - 1));
+			this.prewarmCompleted++;
+			
+			if (TimeUtils.timeSinceNanos(startTime) >= budgetNanos) break;
+		}
+		
+		if (this.prewarmQueue.size == 0) {
+			this.prewarmPrefixes.clear();
+			this.prewarmFinished = true;
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/** Compiles all queued shaders at once **/
+	public void finishPrewarm() {
+		this.updatePrewarm(Float.POSITIVE_INFINITY);
+	}
+	
+	/** @return prewarm progress within 0.0-1.0 range, for the loading bars **/
+	public float getPrewarmProgress() {
+		return this.prewarmQueued == 0 ? 1f : (float)this.prewarmCompleted / this.prewarmQueued;
+	}
+	
+	/** @return amount of shaders queued for prewarm since last {@link #resetPrewarmProgress()} **/
+	public int getPrewarmQueued() {
+		return this.prewarmQueued;
+	}
+	
+	/** @return amount of shaders compiled by prewarm since last {@link #resetPrewarmProgress()} **/
+	public int getPrewarmCompleted() {
+		return this.prewarmCompleted;
+	}
+	
+	/** Resets prewarm progress counters, queued shaders are kept **/
+	public void resetPrewarmProgress() {
+		this.prewarmQueued = this.prewarmQueue.size;
+		this.prewarmCompleted = 0;
+	}
+	
+	/** @return prefixes of the shaders that were created after prewarm has finished,
+	 *    i.e. permutations that were missed while prewarming **/
+	public Array<String> getLatePermutations() {
+		return this.latePermutations;
+	}
+	
+	@Override
+	public void dispose() {
+		super.dispose();
+		this.shadersByKey.clear();
+		this.shadersByPrefix.clear();
+		this.prewarmQueue.clear();
+		this.prewarmPrefixes.clear();
+		this.latePermutations.clear();
 	}
 }
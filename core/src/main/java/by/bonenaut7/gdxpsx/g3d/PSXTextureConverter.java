@@ -0,0 +1,129 @@
+package by.bonenaut7.gdxpsx.g3d;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+
+/** Converts RGBA images into indexed-color {@link IndexedTexture}s with 4 or 8 bits per index. <br>
+ * Images with up to 16/256 unique colors are converted losslessly with {@link #convert(Pixmap, int, IndexedPalette)},
+ *    other images should be mapped to the palette with {@link #convert(Pixmap, int, int[], IndexedPalette)}
+ *    (palette could be generated with <code>by.bonenaut7.gdxpsx.cpu.PaletteGenerator</code>, not available on GWT).
+ *    Fully transparent pixels are treated as one color. 4-bit textures should have even width.
+ *
+ * @author bonenaut7 **/
+public final class PSXTextureConverter {
+	private PSXTextureConverter() {
+	}
+
+	/** Converts image with the exact palette of its unique colors
+	 * @param pixmap Source image
+	 * @param bits Bits per index, 4 or 8
+	 * @param palette Palette atlas, where the palette row will be added
+	 * @return indexed texture **/
+	public static IndexedTexture convert(Pixmap pixmap, int bits, IndexedPalette palette) {
+		final int[] colors = getColors(pixmap, 1 << bits);
+		if (colors == null) {
+			throw new GdxPsxRuntimeException("image contains more than " + (1 << bits) + " colors, palette should be specified");
+		}
+
+		return convert(pixmap, bits, colors, palette);
+	}
+
+	/** Converts image by mapping every pixel to the nearest color of the palette (squared RGBA distance)
+	 * @param pixmap Source image
+	 * @param bits Bits per index, 4 or 8
+	 * @param colors Palette colors in RGBA8888 format, up to 16/256 colors
+	 * @param palette Palette atlas, where the palette row will be added
+	 * @return indexed texture **/
+	public static IndexedTexture convert(Pixmap pixmap, int bits, int[] colors, IndexedPalette palette) {
+		if (bits != 4 && bits != 8) {
+			throw new GdxPsxRuntimeException("only 4 and 8 bits per index are supported");
+		}
+
+		if (colors.length == 0 || colors.length > 1 << bits) {
+			throw new GdxPsxRuntimeException("palette should contain from 1 to " + (1 << bits) + " colors");
+		}
+
+		final int width = pixmap.getWidth();
+		final int height = pixmap.getHeight();
+		if (bits == 4 && (width & 1) != 0) {
+			throw new GdxPsxRuntimeException("4-bit texture should have even width");
+		}
+
+		final Pixmap indices = new Pixmap(width * bits / 8, height, Format.Alpha);
+		final ByteBuffer pixels = indices.getPixels();
+		final IntIntMap cache = new IntIntMap(colors.length);
+		for (int y = 0; y != height; y++) {
+			for (int x = 0; x != width; x++) {
+				final int color = normalize(pixmap.getPixel(x, y));
+				int index = cache.get(color, -1);
+				if (index == -1) {
+					index = findNearest(colors, color);
+					cache.put(color, index);
+				}
+
+				if (bits == 8) {
+					pixels.put(y * width + x, (byte)index);
+				} else {
+					final int offset = (y * width + x) >> 1;
+					pixels.put(offset, (byte)((x & 1) == 0 ? (pixels.get(offset) & 0xF0) | index : (pixels.get(offset) & 0x0F) | (index << 4)));
+				}
+			}
+		}
+
+		return new IndexedTexture(indices, width, bits, palette, palette.add(colors));
+	}
+
+	/** @param pixmap Image
+	 * @param limit Maximum amount of colors
+	 * @return unique colors of the image in RGBA8888 format, or null if there's more colors than limit **/
+	public static int[] getColors(Pixmap pixmap, int limit) {
+		final IntIntMap colors = new IntIntMap(limit);
+		final int[] result = new int[limit];
+		for (int y = 0, height = pixmap.getHeight(); y != height; y++) {
+			for (int x = 0, width = pixmap.getWidth(); x != width; x++) {
+				final int color = normalize(pixmap.getPixel(x, y));
+				if (!colors.containsKey(color)) {
+					if (colors.size == limit) {
+						return null;
+					}
+
+					result[colors.size] = color;
+					colors.put(color, colors.size);
+				}
+			}
+		}
+
+		final int[] trimmed = new int[colors.size];
+		System.arraycopy(result, 0, trimmed, 0, trimmed.length);
+		return trimmed;
+	}
+
+	private static int normalize(int color) {
+		return (color & 0xFF) == 0 ? 0 : color;
+	}
+
+	private static int findNearest(int[] colors, int color) {
+		int nearest = 0;
+		int nearestDistance = Integer.MAX_VALUE;
+		for (int idx = 0; idx != colors.length; idx++) {
+			final int candidate = colors[idx];
+			int distance = 0;
+			for (int shift = 0; shift != 32; shift += 8) {
+				final int delta = ((color >>> shift) & 0xFF) - ((candidate >>> shift) & 0xFF);
+				distance += delta * delta;
+			}
+
+			if (distance < nearestDistance) {
+				nearest = idx;
+				nearestDistance = distance;
+			}
+		}
+
+		return nearest;
+	}
+}
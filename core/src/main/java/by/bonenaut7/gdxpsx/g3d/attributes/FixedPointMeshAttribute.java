@@ -0,0 +1,60 @@
+package by.bonenaut7.gdxpsx.g3d.attributes;
+
+import com.badlogic.gdx.graphics.g3d.Attribute;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+
+/** Dequantization parameters of the fixed-point mesh, see {@link by.bonenaut7.gdxpsx.g3d.PSXFixedPointMesh PSXFixedPointMesh}. <br>
+ * Vertex stage restores values as <code>position = origin + a_position * scale</code>
+ *    and <code>texCoord = texCoordOffset + a_texCoord0 * texCoordScale</code>. **/
+public class FixedPointMeshAttribute extends Attribute {
+	public static final String fixedPointAlias = "psxFixedPoint";
+	public static final long fixedPoint = register(fixedPointAlias);
+
+	public final Vector3 origin = new Vector3();
+	public final Vector3 scale = new Vector3(1, 1, 1);
+	public final Vector2 texCoordOffset = new Vector2();
+	public final Vector2 texCoordScale = new Vector2(1, 1);
+
+	public FixedPointMeshAttribute() {
+		super(fixedPoint);
+	}
+
+	public FixedPointMeshAttribute(Vector3 origin, Vector3 scale, Vector2 texCoordOffset, Vector2 texCoordScale) {
+		super(fixedPoint);
+		this.set(origin, scale, texCoordOffset, texCoordScale);
+	}
+
+	public FixedPointMeshAttribute set(Vector3 origin, Vector3 scale, Vector2 texCoordOffset, Vector2 texCoordScale) {
+		this.origin.set(origin);
+		this.scale.set(scale);
+		this.texCoordOffset.set(texCoordOffset);
+		this.texCoordScale.set(texCoordScale);
+		return this;
+	}
+
+	public Attribute copy() {
+		return new FixedPointMeshAttribute(this.origin, this.scale, this.texCoordOffset, this.texCoordScale);
+	}
+
+	@Override
+	protected boolean equals(Attribute other) {
+		final FixedPointMeshAttribute attribute = (FixedPointMeshAttribute)other;
+		return this.origin.equals(attribute.origin) && this.scale.equals(attribute.scale)
+			&& this.texCoordOffset.equals(attribute.texCoordOffset) && this.texCoordScale.equals(attribute.texCoordScale);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = super.hashCode();
+		result = 967 * result + this.origin.hashCode();
+		result = 967 * result + this.scale.hashCode();
+		result = 967 * result + this.texCoordOffset.hashCode();
+		result = 967 * result + this.texCoordScale.hashCode();
+		return result;
+	}
+
+	public int compareTo(Attribute attribute) {
+		return (int)(this.type - attribute.type);
+	}
+}
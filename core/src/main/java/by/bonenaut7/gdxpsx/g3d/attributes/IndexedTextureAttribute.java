@@ -0,0 +1,42 @@
+package by.bonenaut7.gdxpsx.g3d.attributes;
+
+import com.badlogic.gdx.graphics.g3d.Attribute;
+
+import by.bonenaut7.gdxpsx.g3d.IndexedTexture;
+
+/** Indexed-color texture attribute, holds the index texture and its palette, see {@link IndexedTexture}. <br>
+ * Index texture should also be set as diffuse texture, use {@link IndexedTexture#applyTo(com.badlogic.gdx.graphics.g3d.Material)}. **/
+public class IndexedTextureAttribute extends Attribute {
+	public static final String indexedTextureAlias = "psxIndexedTexture";
+	public static final long indexedTexture = register(indexedTextureAlias);
+
+	public IndexedTexture texture;
+
+	public IndexedTextureAttribute(IndexedTexture texture) {
+		super(indexedTexture);
+		this.texture = texture;
+	}
+
+	public IndexedTextureAttribute set(IndexedTexture texture) {
+		this.texture = texture;
+		return this;
+	}
+
+	public Attribute copy() {
+		return new IndexedTextureAttribute(this.texture);
+	}
+
+	@Override
+	protected boolean equals(Attribute other) {
+		return this.texture == ((IndexedTextureAttribute)other).texture;
+	}
+
+	@Override
+	public int hashCode() {
+		return 967 * super.hashCode() + System.identityHashCode(this.texture);
+	}
+
+	public int compareTo(Attribute attribute) {
+		return (int)(this.type - attribute.type);
+	}
+}
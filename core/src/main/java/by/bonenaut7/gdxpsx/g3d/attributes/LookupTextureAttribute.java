@@ -20,6 +20,7 @@ public class LookupTextureAttribute extends Attribute {
 	public static LookupTextureAttribute createEmissiveLUT(Texture texture) { return new LookupTextureAttribute(emissiveLUT, texture); }
 	
 	protected final TextureDescriptor<Texture> textureDescriptor;
+	protected boolean dynamic;
 	protected LookupTextureAttribute(long type, Texture texture) {
 		super(type);
 		this.textureDescriptor = new TextureDescriptor<>();
@@ -35,11 +36,37 @@ public class LookupTextureAttribute extends Attribute {
 		return this.textureDescriptor;
 	}
 	
+	/** Marks lookup table as changing at runtime (animated), so it wouldn't be baked into the textures at load time
+	 *  @param dynamic true if lookup table is changing
+	 *  @return self **/
+	public LookupTextureAttribute setDynamic(boolean dynamic) {
+		this.dynamic = dynamic;
+		return this;
+	}
+	
+	public boolean isDynamic() {
+		return this.dynamic;
+	}
+	
 	public Attribute copy() {
-		return new LookupTextureAttribute(this.type, this.textureDescriptor.texture);
+		return new LookupTextureAttribute(this.type, this.textureDescriptor.texture).setDynamic(this.dynamic);
+	}
+
+	@Override
+	protected boolean equals(Attribute attribute) {
+		final LookupTextureAttribute other = (LookupTextureAttribute)attribute;
+		return this.dynamic == other.dynamic && this.textureDescriptor.equals(other.textureDescriptor);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = super.hashCode();
+		result = 967 * result + this.textureDescriptor.hashCode();
+		result = 967 * result + (this.dynamic ? 1 : 0);
+		return result;
 	}
 
 	public int compareTo(Attribute attribute) {
 		return (int)(this.type - attribute.type);
 	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,18 @@
 package by.bonenaut7.gdxpsx.postprocessing;
 
+import java.nio.ByteBuffer;
 import java.util.Locale;
 
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.math.MathUtils;
+
 public class DitheringMatrix {
 	// Predefined matrices
 	public static final DitheringMatrix BAYER_2x2 = new DitheringMatrix(2, 2, generateBayerMatrix(1));
@@ -22,6 +33,11 @@ public class DitheringMatrix {
 	private final int sizeY;
 	private final float[] matrix;
 	
+	// Texture is created lazily, and re-created if it was created by another application instance
+	private Texture texture;
+	private Pixmap texturePixmap;
+	private Application textureApplication;
+	
 	public DitheringMatrix(int size, float[] array) {
 		this(size, size, array);
 	}
@@ -52,6 +68,49 @@ public class DitheringMatrix {
 		return this.matrix;
 	}
 	
+	/** @return Texture with dithering pattern, created once per matrix on first call. <br>
+	 *    Texture is <code>sizeX * sizeY</code> sized, in {@link Format#Alpha Alpha} format(single byte per texel)
+	 *    with nearest filtering, values are stored as <code>(value + 1) * 0.5</code>, so shader should
+	 *    decode them with <code>texel.a * 2.0 - 1.0</code>. Texture has repeat wrapping only if it's
+	 *    power-of-two sized, shaders should wrap coordinates by themselves to support any size. **/
+	public Texture getTexture() {
+		if (this.texture == null || this.textureApplication != Gdx.app) {
+			if (this.texturePixmap != null) {
+				this.texturePixmap.dispose();
+			}
+			
+			final Pixmap pixmap = this.texturePixmap = new Pixmap(this.sizeX, this.sizeY, Format.Alpha);
+			final ByteBuffer pixels = pixmap.getPixels();
+			for (int idx = 0; idx != this.matrix.length; idx++) {
+				pixels.put(idx, (byte)MathUtils.round(MathUtils.clamp((this.matrix[idx] + 1f) * 0.5f, 0f, 1f) * 255f));
+			}
+			
+			// Managed texture data keeps the pixmap, so texture could be restored after context loss
+			this.texture = new Texture(new PixmapTextureData(pixmap, null, false, false, true));
+			this.texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			if (MathUtils.isPowerOfTwo(this.sizeX) && MathUtils.isPowerOfTwo(this.sizeY)) {
+				this.texture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+			} else {
+				this.texture.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			}
+			
+			this.textureApplication = Gdx.app;
+		}
+		
+		return this.texture;
+	}
+	
+	/** Disposes texture created by {@link #getTexture()}, if there's any **/
+	public void disposeTexture() {
+		if (this.texture != null) {
+			this.texture.dispose();
+			this.texturePixmap.dispose();
+			this.texture = null;
+			this.texturePixmap = null;
+			this.textureApplication = null;
+		}
+	}
+	
 	// Takes bayer level, 1 - 2x2, 2 - 4x4, 3 - 8x8 and so on
 	// This exists thanks to Kevin Cruijssen, https://codegolf.stackexchange.com/a/259685
 	public static float[] generateBayerMatrix(int bayerLevel) {
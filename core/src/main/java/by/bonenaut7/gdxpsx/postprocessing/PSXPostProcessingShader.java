@@ -14,6 +14,7 @@ import com.badlogic.gdx.utils.Disposable;
  * 		<li> Resolution downscaling - Downscale image by scale or to the target resolution </li>
  * 		<li> Dithering - Image dithering with pre-made or custom patterns </li>
  * 		<li> Color reduction - Simulation of physical color reduction by simple math function. </li>
+ * 		<li> Palette - Replacing colors with the nearest colors of the custom palette. </li>
  * </ul>
  * 
  * <br>
@@ -22,6 +23,7 @@ import com.badlogic.gdx.utils.Disposable;
  * <ul>
  * 		<li> Create the PSXPostProcessingShader instance, for example with
  * 			{@link by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderStatic PSXPostProcessingShaderStatic}
+ * 			or {@link by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderDynamic PSXPostProcessingShaderDynamic}
  * 		</li>
  * 		<li> Configure PSXPostProcessingShader as you wish </li> 
  * 		<li> Set input resolution with {@link #setInputResolution(int, int) setInputResolution(...)} </li>
@@ -32,11 +34,15 @@ import com.badlogic.gdx.utils.Disposable;
  * 
  * Comparing to pre-release versions of gdx-psx, this one should be the
  *   best of all tries, it utilizes interface as the API, pre-made
- *   implementations (currently static shader only), and you can
+ *   implementations (static and dynamic shaders), and you can
  *   extend any class to change the logic as you wish.
  * 
  * @author bonenaut7 **/
 public interface PSXPostProcessingShader extends Disposable {
+	/** Texture unit used for the dithering texture **/
+	int DITHERING_TEXTURE_UNIT = 1;
+	/** Texture unit used for the palette texture **/
+	int PALETTE_TEXTURE_UNIT = 2;
 	
 	/** @return true if downscaling is enabled **/
 	boolean isDownscalingEnabled();
@@ -46,6 +52,10 @@ public interface PSXPostProcessingShader extends Disposable {
 	 * @return self **/
 	PSXPostProcessingShader setDownscalingEnabled(boolean enabled);
 	
+	/** @return current downscaling mode, selected by the last {@link #setDownscalingFromScale(float)}
+	 *    or {@link #setDownscalingToResolution(int, int)} call **/
+	ResolutionDownscalingType getDownscalingType();
+	
 	/** @return downscaling scale, equal or higher than 1 **/
 	float getDownscalingScale();
 
@@ -127,6 +137,19 @@ public interface PSXPostProcessingShader extends Disposable {
 	 * @return true if legacy dithering is enabled **/
 	PSXPostProcessingShader setLegacyDitheringEnabled(boolean enabled);
 	
+	/** @return true if dithering matrix is sampled from the texture **/
+	boolean isDitheringTextureEnabled();
+	
+	/** Enables or disables texture-backed dithering matrix.
+	 * Instead of inlining dithering matrix into the shader as an array, matrix is uploaded
+	 *   once as a small texture ({@link DitheringMatrix#getTexture()}) and sampled with a single
+	 *   texture fetch per pixel. Texture is bound to the {@link #DITHERING_TEXTURE_UNIT} when
+	 *   {@link #getShaderProgram()} is called, so texture on this unit shouldn't be changed
+	 *   until drawing is done.
+	 * @param enabled Enables dithering texture if following parameter is true
+	 * @return self **/
+	PSXPostProcessingShader setDitheringTextureEnabled(boolean enabled);
+	
 	
 	
 	/** @return true if color reduction is enabled **/
@@ -148,6 +171,28 @@ public interface PSXPostProcessingShader extends Disposable {
 	PSXPostProcessingShader setColorReduction(float colorReduction);
 	
 	
+	
+	/** @return true if palette is enabled **/
+	boolean isPaletteEnabled();
+	
+	/** Enables or disables palette.
+	 * Palette is applied after dithering in place of color reduction (color reduction and legacy dithering
+	 *   aren't applied while palette is used), color is replaced with a single {@link PaletteLUT} texture fetch.
+	 *   Texture is bound to the {@link #PALETTE_TEXTURE_UNIT} when {@link #getShaderProgram()} is called.
+	 *   Palette isn't used if {@link #setPalette(PaletteLUT) palette LUT} isn't set.
+	 * @param enabled Enables palette if following parameter is true
+	 * @return self **/
+	PSXPostProcessingShader setPaletteEnabled(boolean enabled);
+	
+	/** @return palette lookup table, or null if it's not set **/
+	PaletteLUT getPalette();
+	
+	/** Sets palette lookup table, it's not disposed by the shader.
+	 * @param palette Built palette lookup table, or null
+	 * @return self **/
+	PSXPostProcessingShader setPalette(PaletteLUT palette);
+	
+	
 	/** Sets input resolution for the downscaling and dithering (framebuffer or app's backbuffer resolution)
 	 * @param width Width, can't be less than 1
 	 * @param height Height, can't be less than 1
@@ -162,12 +207,15 @@ public interface PSXPostProcessingShader extends Disposable {
 	/** Updates shader or uniform information(based on implementation specifics).
 	 * In most of cases will do pretty big work, and should be counted as heavy method.
 	 * For example, in static implementation shader is being compiled from scratch,
-	 *   and all definitions for the shader will be created every {@link #update()} call.
+	 *   and all definitions for the shader will be created every {@link #update()} call,
+	 *   while dynamic implementation only compiles new feature combinations and marks uniforms as dirty.
 	 * @return true if shader updated successfully, or false if error has been ocurred **/
 	boolean update();
 	
 	/** @return {@link com.badlogic.gdx.graphics.glutils.ShaderProgram Post-processing ShaderProgram},
 	 *    or null if {@link #update()} hasn't been called before.
-	 *    (could be called in implementation's constructor by default, not producing null's at all). **/
+	 *    (could be called in implementation's constructor by default, not producing null's at all).
+	 *    Textures used by the shader (like dithering texture) are bound in this method, so it should
+	 *    be called right before drawing. **/
 	ShaderProgram getShaderProgram();
 }
@@ -1,7 +1,14 @@
 package by.bonenaut7.gdxpsx.postprocessing;
 
+import java.util.Locale;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
 
 public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessingShader {
 	protected boolean isDownscalingEnabled = false;
@@ -14,10 +21,14 @@ public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessi
 	protected float ditheringScale = 1.0f;
 	protected DitheringMatrix ditheringMatrix = DitheringMatrix.BAYER_8x8;
 	protected boolean isLegacyDitheringEnabled = false;
+	protected boolean isDitheringTextureEnabled = false;
 	
 	protected boolean isColorReductionEnabled = false;
 	protected float colorReductionFactor = 255f;
 	
+	protected boolean isPaletteEnabled = false;
+	protected PaletteLUT palette;
+	
 	protected Vector2 inputResolution = new Vector2(1, 1);
 	
 	// Resolution downscaling
@@ -33,6 +44,11 @@ public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessi
 		return this;
 	}
 
+	@Override
+	public ResolutionDownscalingType getDownscalingType() {
+		return this.downscalingType;
+	}
+
 	@Override
 	public float getDownscalingScale() {
 		return this.downscalingScale;
@@ -146,6 +162,17 @@ public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessi
 		return this;
 	}
 
+	@Override
+	public boolean isDitheringTextureEnabled() {
+		return this.isDitheringTextureEnabled;
+	}
+	
+	@Override
+	public PSXPostProcessingShader setDitheringTextureEnabled(boolean enabled) {
+		this.isDitheringTextureEnabled = enabled;
+		return this;
+	}
+
 	// Color reduction
 	
 	@Override
@@ -174,6 +201,30 @@ public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessi
 		return this;
 	}
 	
+	// Palette
+	
+	@Override
+	public boolean isPaletteEnabled() {
+		return this.isPaletteEnabled;
+	}
+	
+	@Override
+	public PSXPostProcessingShaderAbstract setPaletteEnabled(boolean enabled) {
+		this.isPaletteEnabled = enabled;
+		return this;
+	}
+	
+	@Override
+	public PaletteLUT getPalette() {
+		return this.palette;
+	}
+	
+	@Override
+	public PSXPostProcessingShaderAbstract setPalette(PaletteLUT palette) {
+		this.palette = palette;
+		return this;
+	}
+	
 	// Internals
 	
 	@Override
@@ -195,4 +246,75 @@ public abstract class PSXPostProcessingShaderAbstract implements PSXPostProcessi
 		this.inputResolution.set(inputResolution);
 		return this;
 	}
+	
+	/** Calculates resolution downscaling values used by the shader
+	 *    (<code>RESOLUTION_DOWNSCALING</code> xy components).
+	 * @param output Vector where result will be stored
+	 * @return output vector **/
+	protected Vector2 calculateDownscaling(Vector2 output) {
+		return calculateDownscaling(this.downscalingType, this.downscalingScale, this.downscalingTargetResolution, this.inputResolution, output);
+	}
+	
+	/** Calculates resolution downscaling values used by the shader
+	 *    (<code>RESOLUTION_DOWNSCALING</code> xy components) for the specified parameters.
+	 * @param type Downscaling type
+	 * @param scale Downscaling scale, used with {@link ResolutionDownscalingType#SCALE}
+	 * @param targetResolution Target resolution, used with {@link ResolutionDownscalingType#FIT_TO_RESOLUTION}
+	 * @param inputResolution Input resolution
+	 * @param output Vector where result will be stored
+	 * @return output vector **/
+	public static Vector2 calculateDownscaling(ResolutionDownscalingType type, float scale, Vector2 targetResolution, Vector2 inputResolution, Vector2 output) {
+		float resX = inputResolution.x, resY = inputResolution.y;
+		
+		switch (type) {
+			case SCALE: {
+				resX /= scale;
+				resY /= scale;
+			} break;
+			case FIT_TO_RESOLUTION: {
+				resX = MathUtils.clamp(inputResolution.x / targetResolution.x, 1, inputResolution.x);
+				resY = MathUtils.clamp(inputResolution.y / targetResolution.y, 1, inputResolution.y);
+			} break;
+		}
+		
+		return output.set(resX, resY);
+	}
+	
+	/** Binds texture of the current dithering matrix to the {@link #DITHERING_TEXTURE_UNIT},
+	 *    and restores active texture unit back to the 0 unit (that batches are using) **/
+	protected void bindDitheringTexture() {
+		PSXRenderStats.increment(Counter.TEXTURE_BINDS_DITHERING);
+		this.ditheringMatrix.getTexture().bind(DITHERING_TEXTURE_UNIT);
+		Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+	}
+	
+	/** Binds texture of the current palette to the {@link #PALETTE_TEXTURE_UNIT},
+	 *    and restores active texture unit back to the 0 unit (that batches are using) **/
+	protected void bindPaletteTexture() {
+		PSXRenderStats.increment(Counter.TEXTURE_BINDS_PALETTE_LUT);
+		this.palette.getTexture().bind(PALETTE_TEXTURE_UNIT);
+		Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+	}
+	
+	/** @return true if palette is enabled and set **/
+	protected boolean isPaletteUsed() {
+		return this.isPaletteEnabled && this.palette != null;
+	}
+	
+	// Generating dithering table definition is scary(because mostly it's shitcode for my shitty decisions)
+	protected String createDitheringTableDefinition() {
+		final float[] matrix = this.ditheringMatrix.getMatrix();
+		final StringBuilder builder = new StringBuilder();
+		builder.append("float[").append(matrix.length).append("](");
+		
+		for (int idx = 0; idx != matrix.length; idx++) {
+			builder.append(String.format(Locale.US, "%.4f,", matrix[idx]));
+		}
+		
+		// Removing [,] and replacing it with [)] (without semicolon, because it should be present in shader)
+		final int length = builder.length();
+		builder.replace(length - 1, length, ")");
+		
+		return builder.toString();
+	}
 }
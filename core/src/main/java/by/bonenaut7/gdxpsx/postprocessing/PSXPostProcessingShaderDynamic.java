@@ -0,0 +1,243 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import java.util.Locale;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Vector2;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+
+/** Post-processing shader that pushes it's numeric parameters (input resolution, downscaling,
+ *    dithering intensity and scale, color reduction factor) as uniforms instead of baking them
+ *    into the shader source. <br>
+ * Only feature set (downscaling, dithering, legacy dithering, color reduction, palette) and the dithering
+ *    matrix are compiled into the program (matrix isn't compiled if
+ *    {@link #setDitheringTextureEnabled(boolean) dithering texture} is used), every combination of features is compiled once and
+ *    kept until {@link #dispose()}, so {@link #update()} and {@link #setInputResolution(int, int)}
+ *    are only marking uniforms as dirty. Dirty uniforms are uploaded on the next
+ *    {@link #getShaderProgram()} call, so it should be called after changing the configuration
+ *    (and outside of the batch's begin/end, because program is being bound to upload uniforms). <br>
+ * Variants are obtained from {@link PSXShaderProgramCache}, so they're shared with other instances
+ *    that have the same configuration.
+ *
+ * @author bonenaut7 **/
+public final class PSXPostProcessingShaderDynamic extends PSXPostProcessingShaderAbstract {
+	// Variant flags
+	private static final int VARIANT_DOWNSCALING = 1;
+	private static final int VARIANT_DITHERING = 1 << 1;
+	private static final int VARIANT_DITHERING_LEGACY = 1 << 2;
+	private static final int VARIANT_COLOR_REDUCTION = 1 << 3;
+	private static final int VARIANT_DITHERING_TEXTURE = 1 << 4;
+	private static final int VARIANT_PALETTE = 1 << 5;
+	private static final int VARIANTS = 1 << 6;
+
+	private final ShaderProgram[] variants = new ShaderProgram[VARIANTS];
+	private DitheringMatrix variantsDitheringMatrix;
+	private ShaderProgram shaderProgram;
+	private boolean uniformsDirty = true;
+
+	private final PSXShaderProgramCache cache;
+	private final String vertexShader;
+	private final String fragmentShader;
+	private final Vector2 tmpDownscaling = new Vector2();
+
+	public PSXPostProcessingShaderDynamic() {
+		this(PSXShaderProgramCache.getShared());
+	}
+
+	/** @param cache Cache that compiled variants are shared through **/
+	public PSXPostProcessingShaderDynamic(PSXShaderProgramCache cache) {
+		this(
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.dynamic.frag").readString(),
+			cache
+		);
+	}
+
+	public PSXPostProcessingShaderDynamic(String vertexShader, String fragmentShader) {
+		this(vertexShader, fragmentShader, PSXShaderProgramCache.getShared());
+	}
+
+	/** @param vertexShader Vertex shader source
+	 *  @param fragmentShader Fragment shader source
+	 *  @param cache Cache that compiled variants are shared through **/
+	public PSXPostProcessingShaderDynamic(String vertexShader, String fragmentShader, PSXShaderProgramCache cache) {
+		if (cache == null) {
+			throw new GdxPsxRuntimeException("cache can't be null");
+		}
+
+		this.cache = cache;
+		this.vertexShader = vertexShader;
+		this.fragmentShader = fragmentShader;
+		this.update();
+	}
+
+	@Override
+	public PSXPostProcessingShaderDynamic setInputResolution(int width, int height) {
+		super.setInputResolution(width, height);
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	@Override
+	public PSXPostProcessingShaderDynamic setInputResolution(Vector2 inputResolution) {
+		super.setInputResolution(inputResolution);
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	/** Selects shader variant for the current configuration and marks uniforms as dirty.
+	 * Variant is compiled only if it's used for the first time (or dithering matrix has been changed).
+	 * @return true if selected variant is compiled successfully, or false if error has been occurred **/
+	@Override
+	public boolean update() {
+		// Dithering table is baked into the dithering variants, so they're invalid after matrix change
+		if (this.variantsDitheringMatrix != this.ditheringMatrix) {
+			for (int variant = 0; variant != VARIANTS; variant++) {
+				if ((variant & VARIANT_DITHERING) != 0 && (variant & VARIANT_DITHERING_TEXTURE) == 0 && this.variants[variant] != null) {
+					this.cache.release(this.variants[variant]);
+					this.variants[variant] = null;
+				}
+			}
+
+			this.variantsDitheringMatrix = this.ditheringMatrix;
+		}
+
+		final int variant = this.getVariant();
+		if (this.variants[variant] == null) {
+			final String definitions = this.createDefinitions(variant);
+			this.variants[variant] = this.cache.obtain(definitions, this.vertexShader, this.fragmentShader);
+
+			if (!this.variants[variant].isCompiled()) {
+				Gdx.app.error("GDX-PSX", "Unable to compile shader, shader log:\n" + this.variants[variant].getLog());
+				Gdx.app.error("GDX-PSX", "\n" + definitions + this.fragmentShader);
+			}
+		}
+
+		this.shaderProgram = this.variants[variant];
+		this.uniformsDirty = true;
+		return this.shaderProgram.isCompiled();
+	}
+
+	/** @return {@link com.badlogic.gdx.graphics.glutils.ShaderProgram Post-processing ShaderProgram}
+	 *    of the currently selected variant. Binds the program to upload uniforms if they're dirty,
+	 *    or if the program is shared with other instances (uniforms could be changed by them). **/
+	@Override
+	public ShaderProgram getShaderProgram() {
+		if ((this.uniformsDirty || this.cache.getReferences(this.shaderProgram) > 1) && this.shaderProgram.isCompiled()) {
+			this.shaderProgram.bind();
+			this.applyUniforms(this.shaderProgram);
+			this.uniformsDirty = false;
+			PSXRenderStats.increment(Counter.POST_PROCESS_UNIFORM_UPDATES);
+		}
+
+		if (this.isDitheringEnabled && this.isDitheringTextureEnabled) {
+			this.bindDitheringTexture();
+		}
+
+		if (this.isPaletteUsed()) {
+			this.bindPaletteTexture();
+		}
+
+		return this.shaderProgram;
+	}
+
+	/** @return cache that compiled variants are shared through **/
+	public PSXShaderProgramCache getCache() {
+		return this.cache;
+	}
+
+	/** Releases all variants to the {@link PSXShaderProgramCache cache} **/
+	@Override
+	public void dispose() {
+		for (int variant = 0; variant != VARIANTS; variant++) {
+			if (this.variants[variant] != null) {
+				this.cache.release(this.variants[variant]);
+				this.variants[variant] = null;
+			}
+		}
+
+		this.shaderProgram = null;
+	}
+
+	private int getVariant() {
+		int variant = 0;
+		if (this.isDownscalingEnabled) variant |= VARIANT_DOWNSCALING;
+		if (this.isDitheringEnabled) variant |= VARIANT_DITHERING;
+		if (this.isDitheringEnabled && this.isDitheringTextureEnabled) variant |= VARIANT_DITHERING_TEXTURE;
+
+		// Palette replaces color reduction and legacy dithering
+		if (this.isPaletteUsed()) {
+			variant |= VARIANT_PALETTE;
+		} else {
+			if (this.isDitheringEnabled && this.isLegacyDitheringEnabled) variant |= VARIANT_DITHERING_LEGACY;
+			if (this.isColorReductionEnabled) variant |= VARIANT_COLOR_REDUCTION;
+		}
+		return variant;
+	}
+
+	// Uniforms are fetched without pedantic checks, optimized out uniforms are returning -1 which is ignored by GL
+	private void applyUniforms(ShaderProgram program) {
+		program.setUniformf(program.fetchUniformLocation("u_inputResolution", false), this.inputResolution.x, this.inputResolution.y);
+
+		if (this.isDownscalingEnabled) {
+			final Vector2 downscaling = this.calculateDownscaling(this.tmpDownscaling);
+			program.setUniformf(program.fetchUniformLocation("u_resolutionDownscaling", false), downscaling.x, downscaling.y, 1f / downscaling.x, 1f / downscaling.y);
+		}
+
+		if (this.isDitheringEnabled) {
+			program.setUniformf(program.fetchUniformLocation("u_ditheringIntensity", false), this.ditheringIntensity * 0.01f);
+			program.setUniformf(program.fetchUniformLocation("u_ditheringInvScale", false), 1f / this.ditheringScale);
+
+			if (this.isDitheringTextureEnabled) {
+				program.setUniformi(program.fetchUniformLocation("u_ditheringTexture", false), DITHERING_TEXTURE_UNIT);
+				program.setUniformf(program.fetchUniformLocation("u_ditheringMatrixSize", false), this.ditheringMatrix.getSizeX(), this.ditheringMatrix.getSizeY());
+			}
+		}
+
+		if (this.isPaletteUsed()) {
+			program.setUniformi(program.fetchUniformLocation("u_paletteTexture", false), PALETTE_TEXTURE_UNIT);
+			program.setUniformf(program.fetchUniformLocation("u_paletteSize", false), this.palette.getSize());
+		} else if (this.isColorReductionEnabled) {
+			program.setUniformf(program.fetchUniformLocation("u_colorReduction", false), this.colorReductionFactor);
+		}
+	}
+
+	private String createDefinitions(int variant) {
+		final StringBuilder builder = new StringBuilder();
+
+		if ((variant & VARIANT_DOWNSCALING) != 0) {
+			builder.append("#define RESOLUTION_DOWNSCALING\n");
+		}
+
+		if ((variant & VARIANT_DITHERING) != 0) {
+			builder.append("#define DITHERING\n");
+
+			if ((variant & VARIANT_DITHERING_LEGACY) != 0) {
+				builder.append("#define DITHERING_LEGACY\n");
+			}
+
+			if ((variant & VARIANT_DITHERING_TEXTURE) != 0) {
+				builder.append("#define DITHERING_TEXTURE\n");
+			} else {
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE_X %.2f\n", (float)this.ditheringMatrix.getSizeX()));
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE_Y %.2f\n", (float)this.ditheringMatrix.getSizeY()));
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE %d\n", this.ditheringMatrix.getSizeX() * this.ditheringMatrix.getSizeY()));
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE %s\n", this.createDitheringTableDefinition()));
+			}
+		}
+
+		if ((variant & VARIANT_COLOR_REDUCTION) != 0) {
+			builder.append("#define COLOR_REDUCTION\n");
+		}
+
+		if ((variant & VARIANT_PALETTE) != 0) {
+			builder.append("#define PALETTE\n");
+		}
+
+		return builder.toString();
+	}
+}
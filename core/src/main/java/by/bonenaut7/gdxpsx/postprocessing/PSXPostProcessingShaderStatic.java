@@ -4,81 +4,120 @@ import java.util.Locale;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
 
 public final class PSXPostProcessingShaderStatic extends PSXPostProcessingShaderAbstract {
 	private ShaderProgram shaderProgram;
+	private final PSXShaderProgramCache cache;
 	private final String vertexShader;
 	private final String fragmentShader;
+	private final Vector2 tmpDownscaling = new Vector2();
 	
 	public PSXPostProcessingShaderStatic() {
-		this.vertexShader = Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.vert").readString();
-		this.fragmentShader = Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.static.frag").readString();
-		this.update();
+		this(PSXShaderProgramCache.getShared());
+	}
+	
+	/** @param cache Cache that compiled programs are shared through **/
+	public PSXPostProcessingShaderStatic(PSXShaderProgramCache cache) {
+		this(
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.static.frag").readString(),
+			cache
+		);
 	}
 	
 	public PSXPostProcessingShaderStatic(String vertexShader, String fragmentShader) {
+		this(vertexShader, fragmentShader, PSXShaderProgramCache.getShared());
+	}
+	
+	/** @param vertexShader Vertex shader source
+	 *  @param fragmentShader Fragment shader source
+	 *  @param cache Cache that compiled programs are shared through **/
+	public PSXPostProcessingShaderStatic(String vertexShader, String fragmentShader, PSXShaderProgramCache cache) {
+		if (cache == null) {
+			throw new GdxPsxRuntimeException("cache can't be null");
+		}
+		
+		this.cache = cache;
 		this.vertexShader = vertexShader;
 		this.fragmentShader = fragmentShader;
 		this.update();
 	}
 	
+	/** Obtains program for the current configuration from the {@link PSXShaderProgramCache cache},
+	 *    program is compiled only if this configuration hasn't been compiled before (or has been evicted). **/
 	@Override
 	public boolean update() {
-		if (this.shaderProgram != null) {
-			this.shaderProgram.dispose();
-			this.shaderProgram = null;
-		}
-		
 		final String definitions = this.createDefinitions();
-		this.shaderProgram = new ShaderProgram(definitions + this.vertexShader, definitions + this.fragmentShader);
+		final ShaderProgram previousProgram = this.shaderProgram;
+		
+		// Obtaining before releasing, so program of the same configuration can't be evicted in between
+		this.shaderProgram = this.cache.obtain(definitions, this.vertexShader, this.fragmentShader);
+		this.cache.release(previousProgram);
+		
 		if (!this.shaderProgram.isCompiled()) {
 			Gdx.app.error("GDX-PSX", "Unable to compile shader, shader log:\n" + this.shaderProgram.getLog());
 			Gdx.app.error("GDX-PSX", "\n" + definitions + this.fragmentShader);
 			return false;
 		}
 		
+		if (this.isDitheringEnabled && this.isDitheringTextureEnabled) {
+			this.shaderProgram.bind();
+			this.shaderProgram.setUniformi(this.shaderProgram.fetchUniformLocation("u_ditheringTexture", false), DITHERING_TEXTURE_UNIT);
+		}
+		
+		if (this.isPaletteUsed()) {
+			this.shaderProgram.bind();
+			this.shaderProgram.setUniformi(this.shaderProgram.fetchUniformLocation("u_paletteTexture", false), PALETTE_TEXTURE_UNIT);
+		}
+		
 		return true;
 	}
 
 	@Override
 	public ShaderProgram getShaderProgram() {
+		if (this.isDitheringEnabled && this.isDitheringTextureEnabled) {
+			this.bindDitheringTexture();
+		}
+		
+		if (this.isPaletteUsed()) {
+			this.bindPaletteTexture();
+		}
+		
 		return this.shaderProgram;
 	}
+	
+	/** @return cache that compiled programs are shared through **/
+	public PSXShaderProgramCache getCache() {
+		return this.cache;
+	}
 
+	/** Releases program to the {@link PSXShaderProgramCache cache} **/
 	@Override
 	public void dispose() {
-		this.shaderProgram.dispose();
+		this.cache.release(this.shaderProgram);
+		this.shaderProgram = null;
 	}
 	
-	private String createDefinitions() {
+	// Package-private for benchmarks
+	String createDefinitions() {
 		final StringBuilder builder = new StringBuilder();
 		// In-built input resolution
 		builder.append(String.format(Locale.US, "#define INPUT_RESOLUTION vec2(%.4f, %.4f)\n", this.inputResolution.x, this.inputResolution.y));
 		
 		// Resolution downscaling
 		if (this.isDownscalingEnabled) {
-			float resX = this.inputResolution.x, resY = this.inputResolution.y;
-			
-			switch (this.downscalingType) {
-				case SCALE: {
-					resX /= this.downscalingScale;
-					resY /= this.downscalingScale;
-				} break;
-				case FIT_TO_RESOLUTION: {
-					resX = MathUtils.clamp(this.inputResolution.x / this.downscalingTargetResolution.x, 1, this.inputResolution.x);
-					resY = MathUtils.clamp(this.inputResolution.y / this.downscalingTargetResolution.y, 1, this.inputResolution.y);
-				} break;
-			}
-
-			builder.append(String.format(Locale.US, "#define RESOLUTION_DOWNSCALING vec4(%.4f, %.4f, %.8f, %.8f)\n", resX, resY, 1f / resX, 1f / resY));
+			final Vector2 downscaling = this.calculateDownscaling(this.tmpDownscaling);
+			builder.append(String.format(Locale.US, "#define RESOLUTION_DOWNSCALING vec4(%.4f, %.4f, %.8f, %.8f)\n", downscaling.x, downscaling.y, 1f / downscaling.x, 1f / downscaling.y));
 		}
 		
 		// Dithering
 		if (this.isDitheringEnabled) {
 			builder.append("#define DITHERING\n");
 			
-			if (this.isLegacyDitheringEnabled) {
+			if (this.isLegacyDitheringEnabled && !this.isPaletteUsed()) {
 				builder.append("#define DITHERING_LEGACY\n");
 			}
 			
@@ -86,32 +125,22 @@ public final class PSXPostProcessingShaderStatic extends PSXPostProcessingShader
 			builder.append(String.format(Locale.US, "#define DITHERING_INV_SCALE %.8f\n", 1f / this.ditheringScale));
 			builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE_X %.2f\n", (float)this.ditheringMatrix.getSizeX()));
 			builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE_Y %.2f\n", (float)this.ditheringMatrix.getSizeY()));
-			builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE %d\n", this.ditheringMatrix.getSizeX() * this.ditheringMatrix.getSizeY()));
-			builder.append(String.format(Locale.US, "#define DITHERING_TABLE %s\n", this.createDitheringTableDefinition()));
+			if (this.isDitheringTextureEnabled) {
+				builder.append("#define DITHERING_TEXTURE\n");
+			} else {
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE_SIZE %d\n", this.ditheringMatrix.getSizeX() * this.ditheringMatrix.getSizeY()));
+				builder.append(String.format(Locale.US, "#define DITHERING_TABLE %s\n", this.createDitheringTableDefinition()));
+			}
 		}
 		
-		// Color reduction
-		if (this.isColorReductionEnabled) {
+		// Color reduction, replaced by the palette
+		if (this.isPaletteUsed()) {
+			builder.append("#define PALETTE\n");
+			builder.append(String.format(Locale.US, "#define PALETTE_SIZE %.1f\n", (float)this.palette.getSize()));
+		} else if (this.isColorReductionEnabled) {
 			builder.append(String.format(Locale.US, "#define COLOR_REDUCTION %.2f\n", this.colorReductionFactor));
 		}
 		
 		return builder.toString();
 	}
-	
-	// Generating dithering table definition is scary(because mostly it's shitcode for my shitty decisions)
-	private String createDitheringTableDefinition() {
-		final float[] matrix = this.ditheringMatrix.getMatrix();
-		final StringBuilder builder = new StringBuilder();
-		builder.append("float[").append(matrix.length).append("](");
-		
-		for (int idx = 0; idx != matrix.length; idx++) {
-			builder.append(String.format(Locale.US, "%.4f,", matrix[idx]));
-		}
-		
-		// Removing [,] and replacing it with [)] (without semicolon, because it should be present in shader)
-		final int length = builder.length();
-		builder.replace(length - 1, length, ")");
-		
-		return builder.toString();
-	}
 }
@@ -0,0 +1,226 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+
+/** Low-resolution rendering pipeline: scene is rendered straight into the low-resolution color and depth {@link FrameBuffer},
+ *    so fill-rate is paid only for the low resolution (unlike <code>RESOLUTION_DOWNSCALING</code> of the post-processing shaders,
+ *    that shades every pixel of the screen). Result is upscaled to the screen with nearest filtering, and
+ *    {@link PSXPostProcessingShader post-processing} is applied in the same pass with the low resolution as input resolution,
+ *    so dithering and color reduction are working on the low-resolution pixels. <br>
+ * Low resolution is calculated from the screen resolution, see {@link #setDownscalingFromScale(float)} and
+ *    {@link #setDownscalingToResolution(int, int)}. Downscaling of the post-processing shader isn't needed and is disabled. <br>
+ * Usage: <pre>
+ * pipeline.resize(width, height); // In ApplicationListener#resize, or let begin() do it
+ * pipeline.begin(); // Clears the target, GL viewport is set to the target size
+ * modelBatch.begin(camera); ... modelBatch.end();
+ * pipeline.end(); // Post-processes and upscales the target to the screen
+ * </pre>
+ * Target keeps aspect ratio of the screen, so the camera is used as is, without changing its viewport.
+ *
+ * @author bonenaut7 **/
+public class PSXRenderPipeline implements Disposable {
+	private ResolutionDownscalingType downscalingType = ResolutionDownscalingType.SCALE;
+	private float downscalingScale = 1f;
+	private final Vector2 downscalingTargetResolution = new Vector2();
+	private final Color clearColor = new Color(0f, 0f, 0f, 1f);
+
+	private PSXPostProcessingShader shader;
+	private final SpriteBatch batch;
+	private FrameBuffer frameBuffer;
+	private int screenWidth, screenHeight;
+	private int width, height;
+	private boolean drawing;
+	private final Vector2 tmpResolution = new Vector2();
+
+	/** Creates pipeline without post-processing, only with downscaling **/
+	public PSXRenderPipeline() {
+		this(null);
+	}
+
+	/** @param shader Post-processing shader, or null. Shader isn't disposed by the pipeline **/
+	public PSXRenderPipeline(PSXPostProcessingShader shader) {
+		this.batch = new SpriteBatch(1);
+		this.batch.disableBlending(); // Target is copied to the screen as is
+		this.setPostProcessingShader(shader);
+	}
+
+	/** Resizes low-resolution target if needed, should be called when screen is resized
+	 *  @param screenWidth Width of the screen
+	 *  @param screenHeight Height of the screen **/
+	public void resize(int screenWidth, int screenHeight) {
+		if (screenWidth < 1 || screenHeight < 1) return; // Minimized window
+
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		this.batch.getProjectionMatrix().setToOrtho2D(0, 0, screenWidth, screenHeight);
+
+		final Vector2 resolution = this.calculateResolution(this.tmpResolution);
+		final int width = Math.max(1, MathUtils.round(resolution.x));
+		final int height = Math.max(1, MathUtils.round(resolution.y));
+		if (this.frameBuffer != null && this.width == width && this.height == height) return;
+
+		if (this.frameBuffer != null) {
+			this.frameBuffer.dispose();
+		}
+
+		this.width = width;
+		this.height = height;
+		this.frameBuffer = new FrameBuffer(Format.RGBA8888, width, height, true);
+		this.frameBuffer.getColorBufferTexture().setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		this.updateShader();
+	}
+
+	/** Starts rendering into the low-resolution target, target is cleared with {@link #getClearColor() clear color} **/
+	public void begin() {
+		if (this.drawing) {
+			throw new GdxPsxRuntimeException("end() should be called before begin()");
+		}
+
+		if (Gdx.graphics.getBackBufferWidth() != this.screenWidth || Gdx.graphics.getBackBufferHeight() != this.screenHeight || this.frameBuffer == null) {
+			this.resize(Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+		}
+
+		this.frameBuffer.begin();
+		Gdx.gl.glClearColor(this.clearColor.r, this.clearColor.g, this.clearColor.b, this.clearColor.a);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
+		this.drawing = true;
+	}
+
+	/** Stops rendering into the low-resolution target, post-processes and upscales it to the screen.
+	 *    Default framebuffer is bound and viewport is reset to the back buffer size, like after {@link FrameBuffer#end()} **/
+	public void end() {
+		if (!this.drawing) {
+			throw new GdxPsxRuntimeException("begin() should be called before end()");
+		}
+
+		this.frameBuffer.end();
+		this.drawing = false;
+
+		this.batch.setShader(this.shader != null ? this.shader.getShaderProgram() : null);
+		this.batch.begin();
+		this.batch.draw(this.frameBuffer.getColorBufferTexture(), 0, 0, this.screenWidth, this.screenHeight, 0, 0, 1, 1);
+		this.batch.end();
+		PSXRenderStats.increment(Counter.POST_PROCESS_PASSES);
+		PSXRenderStats.add(Counter.POST_PROCESS_FILL, (long)this.screenWidth * this.screenHeight);
+	}
+
+	/** @param scale Low resolution is screen resolution divided by the scale
+	 *  @return self **/
+	public PSXRenderPipeline setDownscalingFromScale(float scale) {
+		if (scale < 1f) {
+			throw new GdxPsxRuntimeException("scale can't be less than 1");
+		}
+
+		this.downscalingType = ResolutionDownscalingType.SCALE;
+		this.downscalingScale = scale;
+		this.invalidate();
+		return this;
+	}
+
+	/** @param width Maximal width of the low resolution
+	 *  @param height Maximal height of the low resolution, low resolution keeps aspect ratio of the screen and fits into these bounds
+	 *  @return self **/
+	public PSXRenderPipeline setDownscalingToResolution(int width, int height) {
+		if (width < 1 || height < 1) {
+			throw new GdxPsxRuntimeException("width and height can't be less than 1");
+		}
+
+		this.downscalingType = ResolutionDownscalingType.FIT_TO_RESOLUTION;
+		this.downscalingTargetResolution.set(width, height);
+		this.invalidate();
+		return this;
+	}
+
+	public ResolutionDownscalingType getDownscalingType() {
+		return this.downscalingType;
+	}
+
+	/** @param shader Post-processing shader applied while upscaling, or null. Downscaling of the shader is disabled,
+	 *    input resolution is managed by the pipeline. Shader isn't disposed by the pipeline
+	 *  @return self **/
+	public PSXRenderPipeline setPostProcessingShader(PSXPostProcessingShader shader) {
+		this.shader = shader;
+		if (shader != null) {
+			shader.setDownscalingEnabled(false);
+			this.updateShader();
+		}
+
+		return this;
+	}
+
+	public PSXPostProcessingShader getPostProcessingShader() {
+		return this.shader;
+	}
+
+	/** @return color that low-resolution target is cleared with in {@link #begin()}, could be modified **/
+	public Color getClearColor() {
+		return this.clearColor;
+	}
+
+	/** @return width of the low-resolution target **/
+	public int getWidth() {
+		return this.width;
+	}
+
+	/** @return height of the low-resolution target **/
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return low-resolution color texture, with the last rendered frame **/
+	public Texture getColorTexture() {
+		return this.frameBuffer == null ? null : this.frameBuffer.getColorBufferTexture();
+	}
+
+	@Override
+	public void dispose() {
+		if (this.frameBuffer != null) {
+			this.frameBuffer.dispose();
+			this.frameBuffer = null;
+		}
+
+		this.batch.dispose();
+	}
+
+	/** @param output Vector where result will be stored
+	 *  @return low resolution for the current screen resolution **/
+	protected Vector2 calculateResolution(Vector2 output) {
+		switch (this.downscalingType) {
+			case FIT_TO_RESOLUTION: {
+				final float scale = Math.max(1f, Math.max(this.screenWidth / this.downscalingTargetResolution.x, this.screenHeight / this.downscalingTargetResolution.y));
+				return output.set(this.screenWidth / scale, this.screenHeight / scale);
+			}
+			default: {
+				return output.set(this.screenWidth / this.downscalingScale, this.screenHeight / this.downscalingScale);
+			}
+		}
+	}
+
+	// Re-creates target for the new downscaling, if it has been created already
+	private void invalidate() {
+		if (this.frameBuffer != null && !this.drawing) {
+			this.resize(this.screenWidth, this.screenHeight);
+		}
+	}
+
+	private void updateShader() {
+		if (this.shader != null && this.frameBuffer != null) {
+			this.shader.setInputResolution(this.width, this.height);
+			this.shader.update();
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+import by.bonenaut7.gdxpsx.PSXShaderPreprocessor;
+
+/** Reference-counted cache of compiled {@link ShaderProgram}s, keyed by the generated
+ *    definitions and shader sources. <br>
+ * Every {@link #obtain(String, String, String) obtain(...)} should be paired with
+ *    {@link #release(ShaderProgram) release(...)}, programs without references are
+ *    kept in the cache and evicted in least-recently-used order when amount of cached
+ *    programs exceeds the {@link #setLimit(int) limit}. Programs that are still
+ *    referenced are never evicted. <br>
+ * Sources are passed through {@link PSXShaderPreprocessor} before compilation, so only the code of the
+ *    defined features is sent to the driver. <br>
+ * Cache is not thread-safe, and should be used from the GL thread only.
+ *
+ * @author bonenaut7 **/
+public class PSXShaderProgramCache implements Disposable {
+	public static final int DEFAULT_LIMIT = 16;
+	private static PSXShaderProgramCache shared;
+
+	private final ObjectMap<Key, Entry> entries = new ObjectMap<>();
+	private final ObjectMap<ShaderProgram, Entry> programs = new ObjectMap<>();
+	private final Array<Entry> unreferenced = new Array<>(); // Ordered from least to most recently used
+	private final Key tmpKey = new Key();
+	private int limit;
+	private long hits, misses;
+
+	public PSXShaderProgramCache() {
+		this(DEFAULT_LIMIT);
+	}
+
+	public PSXShaderProgramCache(int limit) {
+		this.setLimit(limit);
+	}
+
+	/** @return shared cache instance used by in-built post-processing shaders by default **/
+	public static PSXShaderProgramCache getShared() {
+		if (shared == null) {
+			shared = new PSXShaderProgramCache();
+		}
+
+		return shared;
+	}
+
+	/** Obtains compiled program from the cache, or compiles it if it's not cached yet.
+	 * Program that failed to compile is not cached, but still should be released.
+	 * @param definitions Definitions that will be prepended to both shaders
+	 * @param vertexShader Vertex shader source
+	 * @param fragmentShader Fragment shader source
+	 * @return shader program, check {@link ShaderProgram#isCompiled()} before use **/
+	public ShaderProgram obtain(String definitions, String vertexShader, String fragmentShader) {
+		Entry entry = this.entries.get(this.tmpKey.set(definitions, vertexShader, fragmentShader));
+		if (entry != null) {
+			if (entry.references++ == 0) {
+				this.unreferenced.removeValue(entry, true);
+			}
+
+			this.hits++;
+			PSXRenderStats.increment(Counter.PROGRAM_CACHE_HITS);
+			return entry.program;
+		}
+
+		this.misses++;
+		PSXRenderStats.increment(Counter.PROGRAM_CACHE_MISSES);
+		final long compileStartTime = PSXRenderStats.compileStarted();
+		final ShaderProgram program = new ShaderProgram(
+			PSXShaderPreprocessor.processVertexShader(definitions + vertexShader),
+			PSXShaderPreprocessor.processFragmentShader(definitions + fragmentShader)
+		);
+		PSXRenderStats.compiled(Counter.PROGRAMS_COMPILED, compileStartTime);
+		if (program.isCompiled()) {
+			entry = new Entry(new Key().set(definitions, vertexShader, fragmentShader), program);
+			this.entries.put(entry.key, entry);
+			this.programs.put(program, entry);
+			this.evict();
+		}
+
+		return program;
+	}
+
+	/** Releases program obtained with {@link #obtain(String, String, String) obtain(...)}.
+	 * Program is kept in the cache until it's evicted.
+	 * @param program Shader program, null is ignored **/
+	public void release(ShaderProgram program) {
+		if (program == null) {
+			return;
+		}
+
+		final Entry entry = this.programs.get(program);
+		if (entry == null) { // Not cached, failed to compile
+			program.dispose();
+			return;
+		}
+
+		if (entry.references == 0) {
+			throw new GdxPsxRuntimeException("program is already released");
+		}
+
+		if (entry.disposed) { // Disposed with the cache while it was referenced, entry is kept to detect repeated releases
+			entry.references--;
+			return;
+		}
+
+		if (--entry.references == 0) {
+			this.unreferenced.add(entry);
+			this.evict();
+		}
+	}
+
+	/** @param program Shader program
+	 * @return amount of references to the cached program, or 0 if program isn't cached **/
+	public int getReferences(ShaderProgram program) {
+		final Entry entry = this.programs.get(program);
+		return entry != null ? entry.references : 0;
+	}
+
+	/** @return maximum amount of cached programs **/
+	public int getLimit() {
+		return this.limit;
+	}
+
+	/** Sets maximum amount of cached programs. Referenced programs are kept even if limit is exceeded.
+	 * @param limit Limit, can't be less than 0
+	 * @return self **/
+	public PSXShaderProgramCache setLimit(int limit) {
+		if (limit < 0) {
+			throw new GdxPsxRuntimeException("limit can't be less than 0");
+		}
+
+		this.limit = limit;
+		this.evict();
+		return this;
+	}
+
+	/** @return amount of cached programs **/
+	public int getSize() {
+		return this.entries.size;
+	}
+
+	/** @return amount of {@link #obtain(String, String, String) obtain(...)} calls that returned cached program **/
+	public long getHits() {
+		return this.hits;
+	}
+
+	/** @return amount of {@link #obtain(String, String, String) obtain(...)} calls that compiled new program **/
+	public long getMisses() {
+		return this.misses;
+	}
+
+	public void resetCounters() {
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/** Disposes all programs that aren't referenced **/
+	public void clear() {
+		while (this.unreferenced.size != 0) {
+			this.remove(this.unreferenced.removeIndex(0));
+		}
+	}
+
+	/** Disposes all cached programs, including referenced ones. Referenced programs are remembered until
+	 *    they're {@link #release(ShaderProgram) released}, so releasing them later doesn't dispose them twice **/
+	@Override
+	public void dispose() {
+		for (Entry entry : this.entries.values()) {
+			entry.program.dispose();
+			if (entry.references == 0) {
+				this.programs.remove(entry.program);
+			} else {
+				entry.disposed = true;
+			}
+		}
+
+		this.entries.clear();
+		this.unreferenced.clear();
+
+		if (shared == this) {
+			shared = null;
+		}
+	}
+
+	private void evict() {
+		while (this.entries.size > this.limit && this.unreferenced.size != 0) {
+			this.remove(this.unreferenced.removeIndex(0));
+		}
+	}
+
+	private void remove(Entry entry) {
+		this.entries.remove(entry.key);
+		this.programs.remove(entry.program);
+		entry.program.dispose();
+	}
+
+	private static final class Entry {
+		final Key key;
+		final ShaderProgram program;
+		int references = 1;
+		boolean disposed;
+
+		Entry(Key key, ShaderProgram program) {
+			this.key = key;
+			this.program = program;
+		}
+	}
+
+	private static final class Key {
+		String definitions, vertexShader, fragmentShader;
+		int hashCode;
+
+		Key set(String definitions, String vertexShader, String fragmentShader) {
+			this.definitions = definitions;
+			this.vertexShader = vertexShader;
+			this.fragmentShader = fragmentShader;
+			this.hashCode = (definitions.hashCode() * 31 + vertexShader.hashCode()) * 31 + fragmentShader.hashCode();
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) return true;
+			if (!(object instanceof Key)) return false;
+			final Key key = (Key)object;
+			return this.hashCode == key.hashCode && this.definitions.equals(key.definitions)
+				&& this.vertexShader.equals(key.vertexShader) && this.fragmentShader.equals(key.fragmentShader);
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+
+/** Drop-in shader for the {@link com.badlogic.gdx.graphics.g2d.SpriteBatch SpriteBatch} with PSX effects applied
+ *    in the batch's draw call: vertex snapping to the virtual resolution, screen-space dithering with {@link DitheringMatrix},
+ *    color reduction and {@link PaletteLUT palette}. For 2D-only scenes it replaces the full-screen post-processing pass. <br>
+ * Only feature set (dithering, color reduction, palette) is compiled into the program, numeric parameters are uniforms.
+ *    Variants are obtained from {@link PSXShaderProgramCache}. Dirty uniforms are uploaded on the next {@link #getShaderProgram()} call,
+ *    which should be called outside of the batch's begin/end, {@link #apply(Batch)} does it and sets program to the batch. <br>
+ * Dithering and palette textures are bound to the {@link PSXPostProcessingShader#DITHERING_TEXTURE_UNIT} and
+ *    {@link PSXPostProcessingShader#PALETTE_TEXTURE_UNIT}, same as in post-processing shaders.
+ *
+ * @author bonenaut7 **/
+public class PSXSpriteBatchShader implements Disposable {
+	private final PSXShaderProgramCache cache;
+	private final String vertexShader;
+	private final String fragmentShader;
+	private ShaderProgram shaderProgram;
+	private String shaderDefinitions;
+	private boolean uniformsDirty = true;
+
+	private int snappingWidth, snappingHeight;
+	private boolean isDitheringEnabled = false;
+	private float ditheringIntensity = 0.1f; // post-multiplied by 0.01
+	private float ditheringScale = 1.0f;
+	private DitheringMatrix ditheringMatrix = DitheringMatrix.BAYER_8x8;
+	private boolean isColorReductionEnabled = false;
+	private float colorReductionFactor = 255f;
+	private boolean isPaletteEnabled = false;
+	private PaletteLUT palette;
+
+	public PSXSpriteBatchShader() {
+		this(PSXShaderProgramCache.getShared());
+	}
+
+	/** @param cache Cache that compiled variants are shared through **/
+	public PSXSpriteBatchShader(PSXShaderProgramCache cache) {
+		this(
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/sprite.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/sprite.frag").readString(),
+			cache
+		);
+	}
+
+	/** @param vertexShader Vertex shader source
+	 *  @param fragmentShader Fragment shader source
+	 *  @param cache Cache that compiled variants are shared through **/
+	public PSXSpriteBatchShader(String vertexShader, String fragmentShader, PSXShaderProgramCache cache) {
+		if (cache == null) {
+			throw new GdxPsxRuntimeException("cache can't be null");
+		}
+
+		this.cache = cache;
+		this.vertexShader = vertexShader;
+		this.fragmentShader = fragmentShader;
+	}
+
+	/** Sets shader program to the batch, should be called outside of the batch's begin/end
+	 *  @param batch Batch **/
+	public void apply(Batch batch) {
+		batch.setShader(this.getShaderProgram());
+	}
+
+	/** @return shader program of the current configuration, compiles it if configuration has been changed.
+	 *    Binds the program to upload uniforms if they're dirty or if the program is shared, and binds dithering and palette textures. **/
+	public ShaderProgram getShaderProgram() {
+		final String definitions = this.createDefinitions();
+		if (this.shaderProgram == null || !definitions.equals(this.shaderDefinitions)) {
+			if (this.shaderProgram != null) {
+				this.cache.release(this.shaderProgram);
+			}
+
+			this.shaderProgram = this.cache.obtain(definitions, this.vertexShader, this.fragmentShader);
+			this.shaderDefinitions = definitions;
+			this.uniformsDirty = true;
+
+			if (!this.shaderProgram.isCompiled()) {
+				Gdx.app.error("GDX-PSX", "Unable to compile shader, shader log:\n" + this.shaderProgram.getLog());
+			}
+		}
+
+		if ((this.uniformsDirty || this.cache.getReferences(this.shaderProgram) > 1) && this.shaderProgram.isCompiled()) {
+			this.shaderProgram.bind();
+			this.applyUniforms(this.shaderProgram);
+			this.uniformsDirty = false;
+			PSXRenderStats.increment(Counter.POST_PROCESS_UNIFORM_UPDATES);
+		}
+
+		if (this.isDitheringEnabled) {
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_DITHERING);
+			this.ditheringMatrix.getTexture().bind(PSXPostProcessingShader.DITHERING_TEXTURE_UNIT);
+		}
+
+		if (this.isPaletteUsed()) {
+			PSXRenderStats.increment(Counter.TEXTURE_BINDS_PALETTE_LUT);
+			this.palette.getTexture().bind(PSXPostProcessingShader.PALETTE_TEXTURE_UNIT);
+		}
+
+		Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+		return this.shaderProgram;
+	}
+
+	/** @param width Width of the virtual resolution that vertices are snapped to, 0 (with 0 height) to disable snapping
+	 *  @param height Height of the virtual resolution, 0 (with 0 width) to disable snapping
+	 *  @return self **/
+	public PSXSpriteBatchShader setSnappingResolution(int width, int height) {
+		if (width < 0 || height < 0 || (width == 0) != (height == 0)) {
+			throw new GdxPsxRuntimeException("width and height can't be less than 1, or both should be 0 to disable snapping");
+		}
+
+		this.snappingWidth = width;
+		this.snappingHeight = height;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public int getSnappingWidth() {
+		return this.snappingWidth;
+	}
+
+	public int getSnappingHeight() {
+		return this.snappingHeight;
+	}
+
+	public PSXSpriteBatchShader setDitheringEnabled(boolean enabled) {
+		this.isDitheringEnabled = enabled;
+		return this;
+	}
+
+	public boolean isDitheringEnabled() {
+		return this.isDitheringEnabled;
+	}
+
+	/** @param intensity Dithering intensity, same as in {@link PSXPostProcessingShader#setDitheringIntensity(float)}
+	 *  @return self **/
+	public PSXSpriteBatchShader setDitheringIntensity(float intensity) {
+		this.ditheringIntensity = intensity;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public float getDitheringIntensity() {
+		return this.ditheringIntensity;
+	}
+
+	/** @param scale Size of the dithering matrix cell in screen pixels
+	 *  @return self **/
+	public PSXSpriteBatchShader setDitheringScale(float scale) {
+		if (scale <= 0f) {
+			throw new GdxPsxRuntimeException("scale should be positive");
+		}
+
+		this.ditheringScale = scale;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public float getDitheringScale() {
+		return this.ditheringScale;
+	}
+
+	public PSXSpriteBatchShader setDitheringMatrix(DitheringMatrix ditheringMatrix) {
+		if (ditheringMatrix == null) {
+			throw new GdxPsxRuntimeException("ditheringMatrix can't be null");
+		}
+
+		this.ditheringMatrix = ditheringMatrix;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public DitheringMatrix getDitheringMatrix() {
+		return this.ditheringMatrix;
+	}
+
+	public PSXSpriteBatchShader setColorReductionEnabled(boolean enabled) {
+		this.isColorReductionEnabled = enabled;
+		return this;
+	}
+
+	public boolean isColorReductionEnabled() {
+		return this.isColorReductionEnabled;
+	}
+
+	/** @param colorReduction Color reduction factor, amount of levels per channel
+	 *  @return self **/
+	public PSXSpriteBatchShader setColorReduction(float colorReduction) {
+		this.colorReductionFactor = colorReduction;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public float getColorReductionFactor() {
+		return this.colorReductionFactor;
+	}
+
+	/** @param enabled true if palette should replace color reduction, palette should be set with {@link #setPalette(PaletteLUT)}
+	 *  @return self **/
+	public PSXSpriteBatchShader setPaletteEnabled(boolean enabled) {
+		this.isPaletteEnabled = enabled;
+		return this;
+	}
+
+	public boolean isPaletteEnabled() {
+		return this.isPaletteEnabled;
+	}
+
+	public PSXSpriteBatchShader setPalette(PaletteLUT palette) {
+		this.palette = palette;
+		this.uniformsDirty = true;
+		return this;
+	}
+
+	public PaletteLUT getPalette() {
+		return this.palette;
+	}
+
+	/** Releases program to the {@link PSXShaderProgramCache cache} **/
+	@Override
+	public void dispose() {
+		if (this.shaderProgram != null) {
+			this.cache.release(this.shaderProgram);
+			this.shaderProgram = null;
+			this.shaderDefinitions = null;
+		}
+	}
+
+	private boolean isPaletteUsed() {
+		return this.isPaletteEnabled && this.palette != null;
+	}
+
+	// Uniforms are fetched without pedantic checks, optimized out uniforms are returning -1 which is ignored by GL
+	private void applyUniforms(ShaderProgram program) {
+		program.setUniformf(program.fetchUniformLocation("u_psxSnappingResolution", false), this.snappingWidth, this.snappingHeight);
+
+		if (this.isDitheringEnabled) {
+			program.setUniformi(program.fetchUniformLocation("u_ditheringTexture", false), PSXPostProcessingShader.DITHERING_TEXTURE_UNIT);
+			program.setUniformf(program.fetchUniformLocation("u_ditheringIntensity", false), this.ditheringIntensity * 0.01f);
+			program.setUniformf(program.fetchUniformLocation("u_ditheringInvScale", false), 1f / this.ditheringScale);
+			program.setUniformf(program.fetchUniformLocation("u_ditheringMatrixSize", false), this.ditheringMatrix.getSizeX(), this.ditheringMatrix.getSizeY());
+		}
+
+		if (this.isPaletteUsed()) {
+			program.setUniformi(program.fetchUniformLocation("u_paletteTexture", false), PSXPostProcessingShader.PALETTE_TEXTURE_UNIT);
+			program.setUniformf(program.fetchUniformLocation("u_paletteSize", false), this.palette.getSize());
+		} else if (this.isColorReductionEnabled) {
+			program.setUniformf(program.fetchUniformLocation("u_colorReduction", false), this.colorReductionFactor);
+		}
+	}
+
+	// Palette replaces color reduction
+	private String createDefinitions() {
+		if (this.isPaletteUsed()) {
+			return this.isDitheringEnabled ? "#define DITHERING\n#define PALETTE\n" : "#define PALETTE\n";
+		}
+
+		if (this.isColorReductionEnabled) {
+			return this.isDitheringEnabled ? "#define DITHERING\n#define COLOR_REDUCTION\n" : "#define COLOR_REDUCTION\n";
+		}
+
+		return this.isDitheringEnabled ? "#define DITHERING\n" : "";
+	}
+}
@@ -0,0 +1,188 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.GridPoint2;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
+
+/** Two-pass post-processing: first pass renders input texture with the {@link PSXPostProcessingShader} into the intermediate target
+ *    of the downscaled resolution, so dithering, color reduction and palette are calculated once per downscaled pixel,
+ *    second pass is nearest upscaling of the intermediate target. With 6x downscaling it's about 36 times less of heavy
+ *    fragment shader invocations than in the single pass. <br>
+ * Downscaled resolution is taken from the downscaling configuration of the shader (scale, or target resolution that
+ *    is clamped by the input resolution), and downscaling in the shader itself is disabled, because intermediate target
+ *    does it. Input resolution of the shader is managed by the processor. Dithering matches single-pass result when
+ *    dithering scale is equal to the downscaling scale. <br>
+ * Textures are processed in GL orientation (as framebuffer textures are stored), so result doesn't need flipping.
+ *
+ * @author bonenaut7 **/
+public class PSXTwoPassPostProcessor implements Disposable {
+	private final PSXPostProcessingShader shader;
+	private final PSXShaderProgramCache cache;
+	private final ShaderProgram copyProgram;
+	private final Mesh quad;
+	private final Matrix4 identity = new Matrix4();
+	private FrameBuffer frameBuffer;
+	private int inputWidth, inputHeight;
+	private final GridPoint2 tmpResolution = new GridPoint2();
+
+	/** @param shader Post-processing shader, isn't disposed by the processor **/
+	public PSXTwoPassPostProcessor(PSXPostProcessingShader shader) {
+		this(shader, PSXShaderProgramCache.getShared());
+	}
+
+	/** @param shader Post-processing shader, isn't disposed by the processor
+	 *  @param cache Cache that upscaling program is obtained from **/
+	public PSXTwoPassPostProcessor(PSXPostProcessingShader shader, PSXShaderProgramCache cache) {
+		if (shader == null || cache == null) {
+			throw new GdxPsxRuntimeException("shader and cache can't be null");
+		}
+
+		this.shader = shader;
+		this.cache = cache;
+		this.shader.setDownscalingEnabled(false);
+		this.shader.update();
+
+		this.copyProgram = cache.obtain("",
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.notransform.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.copy.frag").readString()
+		);
+
+		if (!this.copyProgram.isCompiled()) {
+			Gdx.app.error("GDX-PSX", "Unable to compile shader, shader log:\n" + this.copyProgram.getLog());
+		}
+
+		// Full-screen quad in clip space
+		this.quad = new Mesh(true, 4, 0,
+			new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+			new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0")
+		);
+		this.quad.setVertices(new float[] {
+			-1f, -1f, 0f, 0f,
+			1f, -1f, 1f, 0f,
+			1f, 1f, 1f, 1f,
+			-1f, 1f, 0f, 1f
+		});
+	}
+
+	/** Processes input and upscales result to the screen, see {@link #process(Texture)} and {@link #upscale()}.
+	 *  @param input Input texture **/
+	public void render(Texture input) {
+		this.process(input);
+		Gdx.gl.glViewport(0, 0, Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+		this.upscale();
+	}
+
+	/** First pass, renders input texture with the post-processing shader into the downscaled intermediate target.
+	 *    Binds default framebuffer and resets viewport to the back buffer size after rendering, blending state is kept.
+	 *  @param input Input texture
+	 *  @return intermediate target texture with nearest filtering **/
+	public Texture process(Texture input) {
+		this.resize(input.getWidth(), input.getHeight());
+
+		final ShaderProgram program = this.shader.getShaderProgram(); // Binds dithering and palette textures
+		final boolean blending = Gdx.gl.glIsEnabled(GL20.GL_BLEND); // Restored after the pass, so caller's state is untouched
+		this.frameBuffer.begin();
+		if (blending) Gdx.gl.glDisable(GL20.GL_BLEND);
+		input.bind(0);
+		program.bind();
+		program.setUniformMatrix(program.fetchUniformLocation("u_projTrans", false), this.identity);
+		program.setUniformi(program.fetchUniformLocation("u_texture", false), 0);
+		this.quad.render(program, GL20.GL_TRIANGLE_FAN);
+		this.frameBuffer.end();
+		if (blending) Gdx.gl.glEnable(GL20.GL_BLEND);
+		PSXRenderStats.increment(Counter.POST_PROCESS_PASSES);
+		PSXRenderStats.add(Counter.POST_PROCESS_FILL, (long)this.frameBuffer.getWidth() * this.frameBuffer.getHeight());
+
+		return this.frameBuffer.getColorBufferTexture();
+	}
+
+	/** Second pass, draws intermediate target into the whole viewport of the currently bound framebuffer with nearest filtering **/
+	public void upscale() {
+		if (this.frameBuffer == null) {
+			throw new GdxPsxRuntimeException("process(...) should be called before upscale()");
+		}
+
+		this.frameBuffer.getColorBufferTexture().bind(0);
+		this.copyProgram.bind();
+		this.copyProgram.setUniformi(this.copyProgram.fetchUniformLocation("u_texture", false), 0);
+		this.quad.render(this.copyProgram, GL20.GL_TRIANGLE_FAN);
+		PSXRenderStats.increment(Counter.POST_PROCESS_PASSES);
+		PSXRenderStats.add(Counter.POST_PROCESS_FILL, (long)this.inputWidth * this.inputHeight); // Usually upscaled to the input size
+	}
+
+	/** @return intermediate target texture, or null if nothing has been processed yet **/
+	public Texture getTexture() {
+		return this.frameBuffer == null ? null : this.frameBuffer.getColorBufferTexture();
+	}
+
+	public PSXPostProcessingShader getShader() {
+		return this.shader;
+	}
+
+	/** Disposes intermediate target and releases upscaling program, shader isn't disposed **/
+	@Override
+	public void dispose() {
+		if (this.frameBuffer != null) {
+			this.frameBuffer.dispose();
+			this.frameBuffer = null;
+		}
+
+		this.cache.release(this.copyProgram);
+		this.quad.dispose();
+	}
+
+	/** @param shader Post-processing shader with downscaling configuration
+	 *  @param inputWidth Input resolution width
+	 *  @param inputHeight Input resolution height
+	 *  @param output Point where result will be stored
+	 *  @return downscaled resolution of the intermediate target, at least 1x1 **/
+	public static GridPoint2 calculateResolution(PSXPostProcessingShader shader, int inputWidth, int inputHeight, GridPoint2 output) {
+		switch (shader.getDownscalingType()) {
+			case FIT_TO_RESOLUTION: {
+				output.set(Math.min(shader.getDownscalingTargetWidth(), inputWidth), Math.min(shader.getDownscalingTargetHeight(), inputHeight));
+			} break;
+			default: {
+				output.set(MathUtils.round(inputWidth / shader.getDownscalingScale()), MathUtils.round(inputHeight / shader.getDownscalingScale()));
+			} break;
+		}
+
+		return output.set(Math.max(1, output.x), Math.max(1, output.y));
+	}
+
+	// Re-creates intermediate target and updates the shader if input resolution or downscaling configuration has been changed
+	private void resize(int inputWidth, int inputHeight) {
+		final GridPoint2 resolution = calculateResolution(this.shader, inputWidth, inputHeight, this.tmpResolution);
+		final int width = resolution.x, height = resolution.y;
+		if (this.frameBuffer != null && this.frameBuffer.getWidth() == width && this.frameBuffer.getHeight() == height
+			&& this.inputWidth == inputWidth && this.inputHeight == inputHeight) return;
+
+		if (this.frameBuffer == null || this.frameBuffer.getWidth() != width || this.frameBuffer.getHeight() != height) {
+			if (this.frameBuffer != null) {
+				this.frameBuffer.dispose();
+			}
+
+			this.frameBuffer = new FrameBuffer(Format.RGBA8888, width, height, false);
+			this.frameBuffer.getColorBufferTexture().setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		}
+
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.shader.setInputResolution(inputWidth, inputHeight);
+		this.shader.update();
+	}
+}
@@ -0,0 +1,314 @@
+package by.bonenaut7.gdxpsx.postprocessing;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+import by.bonenaut7.gdxpsx.GdxPsxRuntimeException;
+
+/** Precomputed 3D lookup table that maps every color to the nearest color of the palette
+ *    (for example palette image from Lospec), so post-processing replaces the color with a single texture fetch. <br>
+ * Table has <code>size</code> cells per channel, cell <code>i</code> corresponds to the channel value <code>i / (size - 1)</code>,
+ *    nearest color is found by squared RGB distance. Palette could contain up to 256 colors. <br>
+ * Table isn't built on creation, use {@link #build()}, {@link #create(Pixmap, int)}, or
+ *    parallel <code>by.bonenaut7.gdxpsx.cpu.PaletteLUTBuilder</code> (not available on GWT).
+ *    Built table could be saved with {@link #save(FileHandle)} and loaded with {@link #load(FileHandle)},
+ *    so it doesn't have to be rebuilt every launch.
+ *
+ * @author bonenaut7 **/
+public class PaletteLUT implements Disposable {
+	public static final int DEFAULT_SIZE = 32;
+	/** Maximum amount of cells per channel, {@link #getTexture() texture} of this size is 4096x64, larger ones exceed
+	 *    <code>GL_MAX_TEXTURE_SIZE</code> of the most devices **/
+	public static final int MAX_SIZE = 64;
+	public static final int MAX_COLORS = 256;
+
+	// Cache file: magic, version, size, colors count, colors (RGBA8888), indices (size^3 bytes), big-endian
+	private static final int FILE_MAGIC = 0x504C5554; // PLUT
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 16;
+
+	private final int size;
+	private final int[] colors;
+	private final byte[] indices;
+
+	// Texture is created lazily, and re-created if it was created by another application instance
+	private Texture texture;
+	private Pixmap texturePixmap;
+	private Application textureApplication;
+
+	/** @param colors Palette colors in RGBA8888 format, alpha is ignored
+	 * @param size Amount of cells per channel, from 2 to {@link #MAX_SIZE} **/
+	public PaletteLUT(int[] colors, int size) {
+		if (colors.length == 0 || colors.length > MAX_COLORS) {
+			throw new GdxPsxRuntimeException("palette should contain from 1 to " + MAX_COLORS + " colors");
+		}
+
+		if (size < 2 || size > MAX_SIZE) {
+			throw new GdxPsxRuntimeException("size should be in range from 2 to " + MAX_SIZE);
+		}
+
+		this.size = size;
+		this.colors = colors;
+		this.indices = new byte[size * size * size];
+	}
+
+	/** Builds the table on the calling thread
+	 * @return self **/
+	public PaletteLUT build() {
+		this.buildSlices(0, this.size);
+		return this;
+	}
+
+	/** Builds part of the table, slices are independent, so they could be built in parallel.
+	 * @param fromBlue First blue slice, inclusive
+	 * @param toBlue Last blue slice, exclusive **/
+	public void buildSlices(int fromBlue, int toBlue) {
+		final int size = this.size, last = size - 1;
+		final int[] colors = this.colors;
+
+		for (int blue = fromBlue; blue != toBlue; blue++) {
+			final int cellBlue = (blue * 255 + (last >> 1)) / last;
+			for (int green = 0; green != size; green++) {
+				final int cellGreen = (green * 255 + (last >> 1)) / last;
+				for (int red = 0; red != size; red++) {
+					final int cellRed = (red * 255 + (last >> 1)) / last;
+
+					int nearest = 0, nearestDistance = Integer.MAX_VALUE;
+					for (int idx = 0; idx != colors.length && nearestDistance != 0; idx++) {
+						final int color = colors[idx];
+						final int deltaRed = (color >>> 24) - cellRed;
+						final int deltaGreen = (color >>> 16 & 0xFF) - cellGreen;
+						final int deltaBlue = (color >>> 8 & 0xFF) - cellBlue;
+						final int distance = deltaRed * deltaRed + deltaGreen * deltaGreen + deltaBlue * deltaBlue;
+						if (distance < nearestDistance) {
+							nearest = idx;
+							nearestDistance = distance;
+						}
+					}
+
+					this.indices[red + green * size + blue * size * size] = (byte)nearest;
+				}
+			}
+		}
+	}
+
+	/** @return amount of cells per channel **/
+	public int getSize() {
+		return this.size;
+	}
+
+	/** @return palette colors in RGBA8888 format, shouldn't be modified **/
+	public int[] getColors() {
+		return this.colors;
+	}
+
+	/** @return palette color for the cell, in RGBA8888 format **/
+	public int getColor(int red, int green, int blue) {
+		return this.colors[this.indices[red + green * this.size + blue * this.size * this.size] & 0xFF];
+	}
+
+	/** @param colors Palette colors in RGBA8888 format
+	 * @param size Amount of cells per channel
+	 * @return true if table is built for the same palette and size **/
+	public boolean matches(int[] colors, int size) {
+		if (this.size != size || this.colors.length != colors.length) {
+			return false;
+		}
+
+		for (int idx = 0; idx != colors.length; idx++) {
+			if (this.colors[idx] != colors[idx]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** @return Texture with the table, created once on first call. <br>
+	 *    Texture is <code>(size * size) x size</code> sized in {@link Format#RGB888 RGB888} format with nearest filtering,
+	 *    blue slices are placed from left to right, so cell <code>(r, g, b)</code> is stored at <code>(r + b * size, g)</code>. **/
+	public Texture getTexture() {
+		if (this.texture == null || this.textureApplication != Gdx.app) {
+			if (this.texturePixmap != null) {
+				this.texturePixmap.dispose();
+			}
+
+			final int size = this.size;
+			final Pixmap pixmap = this.texturePixmap = new Pixmap(size * size, size, Format.RGB888);
+			final ByteBuffer pixels = pixmap.getPixels();
+			for (int blue = 0; blue != size; blue++) {
+				for (int green = 0; green != size; green++) {
+					for (int red = 0; red != size; red++) {
+						final int color = this.getColor(red, green, blue);
+						final int offset = (red + blue * size + green * size * size) * 3;
+						pixels.put(offset, (byte)(color >>> 24));
+						pixels.put(offset + 1, (byte)(color >>> 16));
+						pixels.put(offset + 2, (byte)(color >>> 8));
+					}
+				}
+			}
+
+			// Managed texture data keeps the pixmap, so texture could be restored after context loss
+			this.texture = new Texture(new PixmapTextureData(pixmap, null, false, false, true));
+			this.texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			this.texture.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			this.textureApplication = Gdx.app;
+		}
+
+		return this.texture;
+	}
+
+	/** Disposes texture created by {@link #getTexture()}, if there's any **/
+	@Override
+	public void dispose() {
+		if (this.texture != null) {
+			this.texture.dispose();
+			this.texturePixmap.dispose();
+			this.texture = null;
+			this.texturePixmap = null;
+			this.textureApplication = null;
+		}
+	}
+
+	/** Saves built table into the compact cache file
+	 * @param file File to write into **/
+	public void save(FileHandle file) {
+		final byte[] bytes = new byte[FILE_HEADER_SIZE + this.colors.length * 4 + this.indices.length];
+		int offset = writeInt(bytes, 0, FILE_MAGIC);
+		offset = writeInt(bytes, offset, FILE_VERSION);
+		offset = writeInt(bytes, offset, this.size);
+		offset = writeInt(bytes, offset, this.colors.length);
+		for (int idx = 0; idx != this.colors.length; idx++) {
+			offset = writeInt(bytes, offset, this.colors[idx]);
+		}
+
+		System.arraycopy(this.indices, 0, bytes, offset, this.indices.length);
+		file.writeBytes(bytes, false);
+	}
+
+	/** @param file Cache file written by {@link #save(FileHandle)}
+	 * @return loaded table **/
+	public static PaletteLUT load(FileHandle file) {
+		final byte[] bytes = file.readBytes();
+		if (bytes.length < FILE_HEADER_SIZE || readInt(bytes, 0) != FILE_MAGIC) {
+			throw new GdxPsxRuntimeException("file isn't a palette LUT: " + file);
+		}
+
+		if (readInt(bytes, 4) != FILE_VERSION) {
+			throw new GdxPsxRuntimeException("unsupported palette LUT version: " + file);
+		}
+
+		final int size = readInt(bytes, 8);
+		final int colorsCount = readInt(bytes, 12);
+		if (size < 2 || size > MAX_SIZE || colorsCount < 1 || colorsCount > MAX_COLORS
+			|| bytes.length != FILE_HEADER_SIZE + colorsCount * 4 + size * size * size) {
+			throw new GdxPsxRuntimeException("palette LUT file is corrupted: " + file);
+		}
+
+		final int[] colors = new int[colorsCount];
+		for (int idx = 0; idx != colorsCount; idx++) {
+			colors[idx] = readInt(bytes, FILE_HEADER_SIZE + idx * 4);
+		}
+
+		final PaletteLUT lut = new PaletteLUT(colors, size);
+		System.arraycopy(bytes, FILE_HEADER_SIZE + colorsCount * 4, lut.indices, 0, lut.indices.length);
+		for (int idx = 0; idx != lut.indices.length; idx++) {
+			if ((lut.indices[idx] & 0xFF) >= colorsCount) {
+				throw new GdxPsxRuntimeException("palette LUT file is corrupted: " + file);
+			}
+		}
+
+		return lut;
+	}
+
+	/** Creates and builds table on the calling thread
+	 * @param palette Palette pixmap, see {@link #getPaletteColors(Pixmap)}
+	 * @param size Amount of cells per channel
+	 * @return built table **/
+	public static PaletteLUT create(Pixmap palette, int size) {
+		return new PaletteLUT(getPaletteColors(palette), size).build();
+	}
+
+	/** Loads table from the cache file if it's built for the same palette and size,
+	 *    otherwise builds the table on the calling thread and saves it into the cache file.
+	 * @param cacheFile Cache file, could be missing
+	 * @param palette Palette pixmap, see {@link #getPaletteColors(Pixmap)}
+	 * @param size Amount of cells per channel
+	 * @return table **/
+	public static PaletteLUT loadOrCreate(FileHandle cacheFile, Pixmap palette, int size) {
+		final int[] colors = getPaletteColors(palette);
+		final PaletteLUT cached = loadIfMatches(cacheFile, colors, size);
+		if (cached != null) {
+			return cached;
+		}
+
+		final PaletteLUT lut = new PaletteLUT(colors, size).build();
+		lut.save(cacheFile);
+		return lut;
+	}
+
+	/** @param cacheFile Cache file, could be missing
+	 * @param colors Palette colors in RGBA8888 format
+	 * @param size Amount of cells per channel
+	 * @return table loaded from the cache file, or null if file is missing, corrupted or built for other palette **/
+	public static PaletteLUT loadIfMatches(FileHandle cacheFile, int[] colors, int size) {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+
+		try {
+			final PaletteLUT lut = load(cacheFile);
+			return lut.matches(colors, size) ? lut : null;
+		} catch (GdxPsxRuntimeException e) {
+			return null;
+		}
+	}
+
+	/** @param palette Palette pixmap, every unique non-transparent pixel is a palette color (scanned left-to-right, top-to-down)
+	 * @return palette colors in RGBA8888 format with alpha forced to 255 **/
+	public static int[] getPaletteColors(Pixmap palette) {
+		final IntArray colors = new IntArray();
+		for (int y = 0; y != palette.getHeight(); y++) {
+			for (int x = 0; x != palette.getWidth(); x++) {
+				final int pixel = palette.getPixel(x, y);
+				if ((pixel & 0xFF) == 0) {
+					continue;
+				}
+
+				final int color = pixel | 0xFF;
+				if (!colors.contains(color)) {
+					if (colors.size == MAX_COLORS) {
+						throw new GdxPsxRuntimeException("palette can't contain more than " + MAX_COLORS + " colors");
+					}
+
+					colors.add(color);
+				}
+			}
+		}
+
+		return colors.toArray();
+	}
+
+	private static int writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte)(value >>> 24);
+		bytes[offset + 1] = (byte)(value >>> 16);
+		bytes[offset + 2] = (byte)(value >>> 8);
+		bytes[offset + 3] = (byte)value;
+		return offset + 4;
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+	}
+}
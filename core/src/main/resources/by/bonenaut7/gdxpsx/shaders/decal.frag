@@ -0,0 +1,21 @@
+#ifdef GL_ES
+#define LOWP lowp
+#define MEDP mediump
+#define HIGH highp
+precision mediump float;
+#else
+#define LOWP
+#define MEDP
+#define HIGH
+#endif
+
+//[Global Variables]=================================================================================
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying float v_psxTextureAffineMapping;
+uniform sampler2D u_texture;
+
+//[SHADER]===========================================================================================
+void main() {
+	gl_FragColor = v_color * texture2D(u_texture, v_texCoords / v_psxTextureAffineMapping);
+}
@@ -0,0 +1,31 @@
+//[Global Variables]=================================================================================
+attribute vec4 a_position;
+attribute vec4 a_color;
+attribute vec2 a_texCoord0;
+uniform mat4 u_projectionViewMatrix;
+varying vec4 v_color;
+varying vec2 v_texCoords;
+
+//[GDX-PSX]==========================================================================================
+uniform float u_psxVertexSnapping;
+uniform float u_psxTextureAffineMapping;
+varying float v_psxTextureAffineMapping;
+
+vec2 manualRound(vec2 value) {
+	return vec2(floor(value.x + 0.5), floor(value.y + 0.5));
+}
+
+//[SHADER]===========================================================================================
+void main() {
+	v_color = a_color;
+	v_color.a = v_color.a * (255.0 / 254.0);
+	gl_Position = u_projectionViewMatrix * a_position;
+
+	//[GDX-PSX]======================================================================================
+	if (u_psxVertexSnapping > 0.0) {
+		gl_Position.xy = manualRound(gl_Position.xy * u_psxVertexSnapping) / u_psxVertexSnapping;
+	}
+	
+	v_psxTextureAffineMapping = 1.0 - ((1.0 - gl_Position.w) * u_psxTextureAffineMapping);
+	v_texCoords = a_texCoord0 * v_psxTextureAffineMapping;
+}
@@ -207,32 +207,52 @@ varying float v_psxTextureAffineMapping;
 #define _texAfMap
 #endif
 
+#ifdef diffuseTextureFlag
+	#ifdef psxIndexedTextureFlag
+	uniform sampler2D u_psxPaletteTexture;
+	uniform vec4 u_psxIndexedTexture; // width in indices, 4-bit flag, palette row V
+	#endif //psxIndexedTextureFlag
+
+	vec4 sampleDiffuse(vec2 uv) {
+		#ifdef psxIndexedTextureFlag
+			float index = floor(texture2D(u_diffuseTexture, uv).a * 255.0 + 0.5);
+			if (u_psxIndexedTexture.y > 0.5) { // Two indices per texel, even index in the low nibble
+				float high = floor(index / 16.0);
+				index = mod(floor(uv.x * u_psxIndexedTexture.x), 2.0) < 0.5 ? index - high * 16.0 : high;
+			}
+			return texture2D(u_psxPaletteTexture, vec2((index + 0.5) / 256.0, u_psxIndexedTexture.z));
+		#else
+			return texture2D(u_diffuseTexture, uv);
+		#endif //psxIndexedTextureFlag
+	}
+#endif //diffuseTextureFlag
+
 //[SHADER]===========================================================================================
 void main() {
 	//[TEXTURES]=====================================================================================
 	#if defined(diffuseTextureFlag) && defined(diffuseColorFlag) && defined(colorFlag)
 		#if defined(LUTMappingFlag) && defined(diffuseLUTFlag)
-			vec4 diffuse = applyLUT(texture2D(u_diffuseTexture, v_diffuseUV _texAfMap), u_diffuseLUT) * u_diffuseColor * v_color;
+			vec4 diffuse = applyLUT(sampleDiffuse(v_diffuseUV _texAfMap), u_diffuseLUT) * u_diffuseColor * v_color;
 		#else
- 			vec4 diffuse = texture2D(u_diffuseTexture, v_diffuseUV _texAfMap) * u_diffuseColor * v_color;
+ 			vec4 diffuse = sampleDiffuse(v_diffuseUV _texAfMap) * u_diffuseColor * v_color;
 		#endif //LUT
 	#elif defined(diffuseTextureFlag) && defined(diffuseColorFlag)
 		#if defined(LUTMappingFlag) && defined(diffuseLUTFlag)
-			vec4 diffuse = applyLUT(texture2D(u_diffuseTexture, v_diffuseUV _texAfMap), u_diffuseLUT) * u_diffuseColor;
+			vec4 diffuse = applyLUT(sampleDiffuse(v_diffuseUV _texAfMap), u_diffuseLUT) * u_diffuseColor;
 		#else
-			vec4 diffuse = texture2D(u_diffuseTexture, v_diffuseUV _texAfMap) * u_diffuseColor;
+			vec4 diffuse = sampleDiffuse(v_diffuseUV _texAfMap) * u_diffuseColor;
 		#endif //LUT
 	#elif defined(diffuseTextureFlag) && defined(colorFlag)
 		#if defined(LUTMappingFlag) && defined(diffuseLUTFlag)
-			vec4 diffuse = applyLUT(texture2D(u_diffuseTexture, v_diffuseUV _texAfMap), u_diffuseLUT) * v_color;
+			vec4 diffuse = applyLUT(sampleDiffuse(v_diffuseUV _texAfMap), u_diffuseLUT) * v_color;
 		#else
-			vec4 diffuse = texture2D(u_diffuseTexture, v_diffuseUV _texAfMap) * v_color;
+			vec4 diffuse = sampleDiffuse(v_diffuseUV _texAfMap) * v_color;
 		#endif //LUT
 	#elif defined(diffuseTextureFlag)
 		#if defined(LUTMappingFlag) && defined(diffuseLUTFlag)
-			vec4 diffuse = applyLUT(texture2D(u_diffuseTexture, v_diffuseUV _texAfMap), u_diffuseLUT);
+			vec4 diffuse = applyLUT(sampleDiffuse(v_diffuseUV _texAfMap), u_diffuseLUT);
 		#else
-			vec4 diffuse = texture2D(u_diffuseTexture, v_diffuseUV _texAfMap);
+			vec4 diffuse = sampleDiffuse(v_diffuseUV _texAfMap);
 		#endif //LUT
 	#elif defined(diffuseColorFlag) && defined(colorFlag)
 		vec4 diffuse = u_diffuseColor * v_color;
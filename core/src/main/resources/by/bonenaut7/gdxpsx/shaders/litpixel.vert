@@ -141,6 +141,20 @@ uniform float u_psxTextureAffineMapping;
 varying float v_psxTextureAffineMapping;
 #endif //psxTextureAffineMappingFlag
 
+#ifdef psxFixedPointFlag
+uniform vec3 u_psxFixedPointOrigin;
+uniform vec3 u_psxFixedPointScale;
+uniform vec4 u_psxFixedPointTexCoord;
+#endif //psxFixedPointFlag
+
+#ifdef psxInstancedFlag
+attribute vec4 a_psxInstanceTransform0;
+attribute vec4 a_psxInstanceTransform1;
+attribute vec4 a_psxInstanceTransform2;
+attribute vec4 a_psxInstanceTransform3;
+attribute vec2 a_psxInstanceEffects; // x: vertex snapping, y: texture affine mapping
+#endif //psxInstancedFlag
+
 vec2 psxModifyUV(vec2 originUV) {
 	//#ifdef psxTextureJitterFlag Not implemented
 	//originUV = round(originUV * u_psxTextureJitter) / u_psxTextureJitter;
@@ -157,17 +171,55 @@ vec2 manualRound(vec2 value) {
 
 //[SHADER]===========================================================================================
 void main() {
+	//[INSTANCING]===================================================================================
+	#ifdef psxInstancedFlag
+		mat4 psxWorldTrans = mat4(a_psxInstanceTransform0, a_psxInstanceTransform1, a_psxInstanceTransform2, a_psxInstanceTransform3);
+		#ifdef normalFlag
+		mat3 psxNormalMatrix = mat3(psxWorldTrans[0].xyz, psxWorldTrans[1].xyz, psxWorldTrans[2].xyz); // Valid for uniform scale only
+		#endif //normalFlag
+		#ifdef psxVertexSnappingFlag
+		float psxVertexSnapping = a_psxInstanceEffects.x;
+		#endif //psxVertexSnappingFlag
+		#ifdef psxTextureAffineMappingFlag
+		float psxTextureAffineMapping = a_psxInstanceEffects.y;
+		#endif //psxTextureAffineMappingFlag
+	#else
+		mat4 psxWorldTrans = u_worldTrans;
+		#ifdef normalFlag
+		mat3 psxNormalMatrix = u_normalMatrix;
+		#endif //normalFlag
+		#ifdef psxVertexSnappingFlag
+		float psxVertexSnapping = u_psxVertexSnapping;
+		#endif //psxVertexSnappingFlag
+		#ifdef psxTextureAffineMappingFlag
+		float psxTextureAffineMapping = u_psxTextureAffineMapping;
+		#endif //psxTextureAffineMappingFlag
+	#endif //psxInstancedFlag
+	
+	//[FIXED POINT]==================================================================================
+	#ifdef psxFixedPointFlag
+		vec3 psxPosition = u_psxFixedPointOrigin + a_position * u_psxFixedPointScale;
+		#ifdef textureFlag
+		vec2 psxTexCoord0 = u_psxFixedPointTexCoord.xy + a_texCoord0 * u_psxFixedPointTexCoord.zw;
+		#endif //textureFlag
+	#else
+		vec3 psxPosition = a_position;
+		#ifdef textureFlag
+		vec2 psxTexCoord0 = a_texCoord0;
+		#endif //textureFlag
+	#endif //psxFixedPointFlag
+	
 	//[TEXTURES]=====================================================================================
 	#ifdef diffuseTextureFlag
-		v_diffuseUV = u_diffuseUVTransform.xy + a_texCoord0 * u_diffuseUVTransform.zw;
+		v_diffuseUV = u_diffuseUVTransform.xy + psxTexCoord0 * u_diffuseUVTransform.zw;
 	#endif //diffuseTextureFlag
 	
 	#ifdef emissiveTextureFlag
-		v_emissiveUV = u_emissiveUVTransform.xy + a_texCoord0 * u_emissiveUVTransform.zw;
+		v_emissiveUV = u_emissiveUVTransform.xy + psxTexCoord0 * u_emissiveUVTransform.zw;
 	#endif //emissiveTextureFlag
 
 	#ifdef specularTextureFlag
-		v_specularUV = u_specularUVTransform.xy + a_texCoord0 * u_specularUVTransform.zw;
+		v_specularUV = u_specularUVTransform.xy + psxTexCoord0 * u_specularUVTransform.zw;
 	#endif //specularTextureFlag
 	
 	#if defined(colorFlag)
@@ -204,19 +256,19 @@ void main() {
 	#endif //skinningFlag
 
 	#ifdef skinningFlag
-		v_position = u_worldTrans * skinning * vec4(a_position, 1.0);
+		v_position = psxWorldTrans * skinning * vec4(psxPosition, 1.0);
 	#else
-		v_position = u_worldTrans * vec4(a_position, 1.0);
+		v_position = psxWorldTrans * vec4(psxPosition, 1.0);
 	#endif //skinningFlag
 	gl_Position = u_projViewTrans * v_position;
 
 	//[GDX-PSX]======================================================================================
 	#ifdef psxVertexSnappingFlag
-		gl_Position.xy = manualRound(gl_Position.xy * u_psxVertexSnapping) / u_psxVertexSnapping;
+		gl_Position.xy = manualRound(gl_Position.xy * psxVertexSnapping) / psxVertexSnapping;
 	#endif //psxVertexSnappingFlag
 	
 	#ifdef psxTextureAffineMappingFlag
-		v_psxTextureAffineMapping = 1.0 - ((1.0 - gl_Position.w) * u_psxTextureAffineMapping);
+		v_psxTextureAffineMapping = 1.0 - ((1.0 - gl_Position.w) * psxTextureAffineMapping);
 	#endif //psxTextureAffineMappingFlag
 	
 	#ifdef diffuseTextureFlag
@@ -232,9 +284,9 @@ void main() {
 	//[...]==========================================================================================
 	#if defined(normalFlag)
 		#if defined(skinningFlag)
-			vec3 normal = normalize((u_worldTrans * skinning * vec4(a_normal, 0.0)).xyz);
+			vec3 normal = normalize((psxWorldTrans * skinning * vec4(a_normal, 0.0)).xyz);
 		#else
-			vec3 normal = normalize(u_normalMatrix * a_normal);
+			vec3 normal = normalize(psxNormalMatrix * a_normal);
 		#endif
 		v_normal = normal;
 	#endif //normalFlag
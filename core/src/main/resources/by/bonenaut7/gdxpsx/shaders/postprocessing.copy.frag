@@ -0,0 +1,18 @@
+// Copies input texture, used for the nearest upscaling of the two-pass post-processing
+#ifdef GL_ES
+	#define LOWP lowp
+	#define MED mediump
+	#define HIGH highp
+	precision mediump float;
+#else
+	#define MED
+	#define LOWP
+	#define HIGH
+#endif
+
+varying vec2 v_texCoords;
+uniform sampler2D u_texture;
+
+void main() {
+	gl_FragColor = texture2D(u_texture, v_texCoords);
+}
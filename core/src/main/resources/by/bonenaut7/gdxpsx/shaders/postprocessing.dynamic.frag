@@ -0,0 +1,137 @@
+// Possible defines generated from code
+//#define RESOLUTION_DOWNSCALING
+//#define DITHERING
+//#define DITHERING_LEGACY - blended dithering, old-fashioned(old gdx-psx)
+//#define DITHERING_TEXTURE - dithering matrix is sampled from u_ditheringTexture instead of the table
+//#define DITHERING_TABLE_SIZE_X float(sizeX)
+//#define DITHERING_TABLE_SIZE_Y float(sizeY)
+//#define DITHERING_TABLE_SIZE int(totalSize)
+//#define DITHERING_TABLE float_array[]
+//#define COLOR_REDUCTION
+//#define PALETTE - color is replaced by the u_paletteTexture lookup table instead of COLOR_REDUCTION
+
+// Uniforms (values are pushed from code, changing them doesn't require recompilation)
+//uniform vec2 u_inputResolution - vec2(x, y)
+//uniform vec4 u_resolutionDownscaling - vec4(resX, resY, invResX, invResY)
+//uniform float u_ditheringIntensity - intensity, already multiplied by 0.01
+//uniform float u_ditheringInvScale - 1.0 / ditheringScale
+//uniform float u_colorReduction - color reduction factor
+//uniform vec2 u_ditheringMatrixSize - vec2(sizeX, sizeY), with DITHERING_TEXTURE only
+//uniform float u_paletteSize - amount of palette lookup table cells per channel, with PALETTE only
+
+// Shader
+#ifdef GL_ES
+	#define LOWP lowp
+	#define MED mediump
+	#define HIGH highp
+	precision mediump float;
+#else
+	#define MED
+	#define LOWP
+	#define HIGH
+#endif
+
+varying vec2 v_texCoords;
+uniform sampler2D u_texture;
+uniform HIGH vec2 u_inputResolution;
+
+#ifdef RESOLUTION_DOWNSCALING
+uniform HIGH vec4 u_resolutionDownscaling;
+#endif // RESOLUTION_DOWNSCALING
+
+#ifdef COLOR_REDUCTION
+uniform float u_colorReduction;
+#endif // COLOR_REDUCTION
+
+#ifdef PALETTE
+uniform sampler2D u_paletteTexture;
+uniform HIGH float u_paletteSize;
+#endif // PALETTE
+
+#ifdef DITHERING
+uniform float u_ditheringIntensity;
+uniform float u_ditheringInvScale;
+
+#ifdef DITHERING_TEXTURE
+uniform sampler2D u_ditheringTexture;
+uniform HIGH vec2 u_ditheringMatrixSize;
+#else
+float ditheringTable[DITHERING_TABLE_SIZE] = DITHERING_TABLE;
+#endif // DITHERING_TEXTURE
+
+#if defined(DITHERING_LEGACY) && defined(COLOR_REDUCTION)
+	vec3 convertRGBtoYUV(vec3 rgb) {
+		float grayscale = rgb.r * 0.2126 + 0.7152 * rgb.g + 0.0722 * rgb.b;
+		return vec3(grayscale, (rgb.b - grayscale) / 1.8556 + 0.5, (rgb.r - grayscale) / 1.5748 + 0.5);
+	}
+
+	vec3 convertYUVtoRGB(vec3 yuv) {
+		yuv.gb -= 0.5;
+		return vec3(yuv.r + yuv.b * 1.5648, yuv.r + yuv.g * -0.187324 + yuv.b * -0.468124, yuv.r + yuv.g * 1.8556);
+	}
+
+	float roundingError(float channel, float minimal, float maximal) {
+		return abs(channel - minimal) / abs(minimal - maximal);
+	}
+
+	vec3 applyBlendedDithering(vec3 rgb, float ditherValue) {
+		vec3 yuv = convertRGBtoYUV(rgb);
+		vec3 floored = floor(yuv * u_colorReduction) / u_colorReduction;
+		vec3 ceiled = ceil(yuv * u_colorReduction) / u_colorReduction;
+
+		// flattened dither value, original one is [-1.0 to 1.0], field below is [0.0 to 1.0]
+		float normDither = (ditherValue + 1.0) * 0.5;
+		yuv.x = mix(floored.x, ceiled.x, step(normDither, roundingError(yuv.x, floored.x, ceiled.x)));
+		yuv.y = mix(floored.y, ceiled.y, step(normDither, roundingError(yuv.y, floored.y, ceiled.y)));
+		yuv.z = mix(floored.z, ceiled.z, step(normDither, roundingError(yuv.z, floored.z, ceiled.z)));
+		return convertYUVtoRGB(yuv);
+	}
+#endif // DITHERING_LEGACY, COLOR_REDUCTION
+#endif // DITHERING
+
+void main() {
+	// Resolution Downscaling
+	vec2 texCoords;
+	#ifdef RESOLUTION_DOWNSCALING
+		texCoords = floor(v_texCoords * u_resolutionDownscaling.xy) * u_resolutionDownscaling.zw;
+	#else
+		texCoords = v_texCoords;
+	#endif
+
+	// Input color
+	HIGH vec4 color = texture2D(u_texture, texCoords);
+
+	// Dithering Matrix
+	#ifdef DITHERING
+		HIGH vec2 ditheringResolution = v_texCoords * (u_inputResolution * u_ditheringInvScale);
+
+		#ifdef DITHERING_TEXTURE
+			// Wrapping manually, so non power-of-two matrices are working without GL_REPEAT
+			float ditherValue = texture2D(u_ditheringTexture, fract((floor(ditheringResolution) + 0.5) / u_ditheringMatrixSize)).a * 2.0 - 1.0;
+		#else
+			float fpIndex = floor(mod(ditheringResolution.x, DITHERING_TABLE_SIZE_X)) + floor(mod(ditheringResolution.y, DITHERING_TABLE_SIZE_Y)) * DITHERING_TABLE_SIZE_Y;
+			float ditherValue = ditheringTable[ int(fpIndex) ];
+		#endif // DITHERING_TEXTURE
+
+		#if defined(COLOR_REDUCTION) && defined(DITHERING_LEGACY)
+			color.rgb = applyBlendedDithering(color.rgb, ditherValue);
+		#else
+			color.rgb += ditherValue * u_ditheringIntensity;
+		#endif
+	#endif // DITHERING
+
+	// Color reduction
+	#if defined(COLOR_REDUCTION) && !defined(DITHERING_LEGACY)
+	color.rgb = floor(color.rgb * u_colorReduction) / u_colorReduction;
+	#endif // COLOR_REDUCTION
+
+	// Palette, blue slices of the lookup table are placed from left to right
+	#ifdef PALETTE
+	HIGH vec3 paletteCell = floor(clamp(color.rgb, 0.0, 1.0) * (u_paletteSize - 1.0) + 0.5);
+	color.rgb = texture2D(u_paletteTexture, vec2((paletteCell.b * u_paletteSize + paletteCell.r + 0.5) / (u_paletteSize * u_paletteSize), (paletteCell.g + 0.5) / u_paletteSize)).rgb;
+	#endif // PALETTE
+
+	// Output
+	gl_FragColor = color;
+	if (gl_FragColor.a < 0.01) discard;
+}
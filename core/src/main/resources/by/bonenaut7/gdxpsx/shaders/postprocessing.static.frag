@@ -3,6 +3,7 @@
 //#define RESOLUTION_DOWNSCALING vec4(resX, resY, invResX, invResY)
 //#define DITHERING
 //#define DITHERING_LEGACY - blended dithering, old-fashioned(old gdx-psx)
+//#define DITHERING_TEXTURE - dithering matrix is sampled from u_ditheringTexture instead of the table
 //#define DITHERING_INTENSITY float(intensity)
 //#define DITHERING_INV_SCALE float(invDitheringScale)
 //#define DITHERING_TABLE_SIZE_X float(sizeX)
@@ -10,6 +11,8 @@
 //#define DITHERING_TABLE_SIZE int(totalSize)
 //#define DITHERING_TABLE float_array[]
 //#define COLOR_REDUCTION float(factor)
+//#define PALETTE - color is replaced by the u_paletteTexture lookup table instead of COLOR_REDUCTION
+//#define PALETTE_SIZE float(size)
 
 // Shader
 #ifdef GL_ES
@@ -34,8 +37,16 @@ const vec2 inputResolution = INPUT_RESOLUTION;
 const vec4 resolutionDownscaling = RESOLUTION_DOWNSCALING;
 #endif // RESOLUTION_DOWNSCALING
 
+#ifdef PALETTE
+uniform sampler2D u_paletteTexture;
+#endif // PALETTE
+
 #ifdef DITHERING
+#ifdef DITHERING_TEXTURE
+uniform sampler2D u_ditheringTexture;
+#else
 float ditheringTable[DITHERING_TABLE_SIZE] = DITHERING_TABLE;
+#endif // DITHERING_TEXTURE
 
 #if defined(DITHERING_LEGACY) && defined(COLOR_REDUCTION)
 	vec3 convertRGBtoYUV(vec3 rgb) {
@@ -82,17 +93,23 @@ void main() {
 	// Dithering Matrix
 	#if defined(INPUT_RESOLUTION) && defined(DITHERING)
 		#ifdef DITHERING_INV_SCALE
-			vec2 ditheringResolution = v_texCoords * (inputResolution * DITHERING_INV_SCALE);
+			HIGH vec2 ditheringResolution = v_texCoords * (inputResolution * DITHERING_INV_SCALE);
 		#else
-			vec2 ditheringResolution = v_texCoords * inputResolution;
+			HIGH vec2 ditheringResolution = v_texCoords * inputResolution;
 		#endif
 
-		float fpIndex = floor(mod(ditheringResolution.x, DITHERING_TABLE_SIZE_X)) + floor(mod(ditheringResolution.y, DITHERING_TABLE_SIZE_Y)) * DITHERING_TABLE_SIZE_Y;
+		#ifdef DITHERING_TEXTURE
+			// Wrapping manually, so non power-of-two matrices are working without GL_REPEAT
+			float ditherValue = texture2D(u_ditheringTexture, fract((floor(ditheringResolution) + 0.5) / vec2(DITHERING_TABLE_SIZE_X, DITHERING_TABLE_SIZE_Y))).a * 2.0 - 1.0;
+		#else
+			float fpIndex = floor(mod(ditheringResolution.x, DITHERING_TABLE_SIZE_X)) + floor(mod(ditheringResolution.y, DITHERING_TABLE_SIZE_Y)) * DITHERING_TABLE_SIZE_Y;
+			float ditherValue = ditheringTable[ int(fpIndex) ];
+		#endif // DITHERING_TEXTURE
 
 		#if defined(COLOR_REDUCTION) && defined(DITHERING_LEGACY)
-			color.rgb = applyBlendedDithering(color.rgb, ditheringTable[ int(fpIndex) ]);
+			color.rgb = applyBlendedDithering(color.rgb, ditherValue);
 		#else
-			color.rgb += ditheringTable[ int(fpIndex) ] * DITHERING_INTENSITY;
+			color.rgb += ditherValue * DITHERING_INTENSITY;
 		#endif
 	#endif // INPUT_RESOLUTION, DITHERING
 
@@ -101,6 +118,12 @@ void main() {
 	color.rgb = floor(color.rgb * COLOR_REDUCTION) / COLOR_REDUCTION;
 	#endif // COLOR_REDUCTION
 
+	// Palette, blue slices of the lookup table are placed from left to right
+	#ifdef PALETTE
+	HIGH vec3 paletteCell = floor(clamp(color.rgb, 0.0, 1.0) * (PALETTE_SIZE - 1.0) + 0.5);
+	color.rgb = texture2D(u_paletteTexture, vec2((paletteCell.b * PALETTE_SIZE + paletteCell.r + 0.5) / (PALETTE_SIZE * PALETTE_SIZE), (paletteCell.g + 0.5) / PALETTE_SIZE)).rgb;
+	#endif // PALETTE
+
 	// Output
 	gl_FragColor = color;
 	if (gl_FragColor.a < 0.01) discard;
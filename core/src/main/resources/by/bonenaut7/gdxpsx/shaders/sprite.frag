@@ -0,0 +1,67 @@
+// Possible defines generated from code
+//#define DITHERING - dithering matrix is sampled from u_ditheringTexture
+//#define COLOR_REDUCTION
+//#define PALETTE - color is replaced by the u_paletteTexture lookup table instead of COLOR_REDUCTION
+
+// Uniforms (values are pushed from code, changing them doesn't require recompilation)
+//uniform float u_ditheringIntensity - intensity, already multiplied by 0.01
+//uniform float u_ditheringInvScale - 1.0 / ditheringScale
+//uniform vec2 u_ditheringMatrixSize - vec2(sizeX, sizeY)
+//uniform float u_colorReduction - color reduction factor
+//uniform float u_paletteSize - amount of palette lookup table cells per channel, with PALETTE only
+
+#ifdef GL_ES
+	#define LOWP lowp
+	#define MED mediump
+	#define HIGH highp
+	precision mediump float;
+#else
+	#define MED
+	#define LOWP
+	#define HIGH
+#endif
+
+varying LOWP vec4 v_color;
+varying vec2 v_texCoords;
+uniform sampler2D u_texture;
+
+#ifdef DITHERING
+uniform sampler2D u_ditheringTexture;
+uniform float u_ditheringIntensity;
+uniform HIGH float u_ditheringInvScale;
+uniform HIGH vec2 u_ditheringMatrixSize;
+#endif // DITHERING
+
+#ifdef COLOR_REDUCTION
+uniform float u_colorReduction;
+#endif // COLOR_REDUCTION
+
+#ifdef PALETTE
+uniform sampler2D u_paletteTexture;
+uniform HIGH float u_paletteSize;
+#endif // PALETTE
+
+void main() {
+	HIGH vec4 color = v_color * texture2D(u_texture, v_texCoords);
+
+	// Dithering Matrix, in screen space
+	#ifdef DITHERING
+		HIGH vec2 ditheringPosition = floor(gl_FragCoord.xy * u_ditheringInvScale);
+		// Wrapping manually, so non power-of-two matrices are working without GL_REPEAT
+		float ditherValue = texture2D(u_ditheringTexture, fract((ditheringPosition + 0.5) / u_ditheringMatrixSize)).a * 2.0 - 1.0;
+		color.rgb += ditherValue * u_ditheringIntensity;
+	#endif // DITHERING
+
+	// Color reduction
+	#ifdef COLOR_REDUCTION
+	color.rgb = floor(color.rgb * u_colorReduction) / u_colorReduction;
+	#endif // COLOR_REDUCTION
+
+	// Palette, blue slices of the lookup table are placed from left to right
+	#ifdef PALETTE
+	HIGH vec3 paletteCell = floor(clamp(color.rgb, 0.0, 1.0) * (u_paletteSize - 1.0) + 0.5);
+	color.rgb = texture2D(u_paletteTexture, vec2((paletteCell.b * u_paletteSize + paletteCell.r + 0.5) / (u_paletteSize * u_paletteSize), (paletteCell.g + 0.5) / u_paletteSize)).rgb;
+	#endif // PALETTE
+
+	gl_FragColor = color;
+}
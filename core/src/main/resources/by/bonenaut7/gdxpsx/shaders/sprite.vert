@@ -0,0 +1,37 @@
+// Possible defines generated from code: see sprite.frag
+
+// Uniforms (values are pushed from code, changing them doesn't require recompilation)
+//uniform vec2 u_psxSnappingResolution - virtual resolution that vertices are snapped to, vec2(0.0) disables snapping
+
+#ifdef GL_ES
+	#define LOWP lowp
+	#define MED mediump
+	#define HIGH highp
+	precision mediump float;
+#else
+	#define MED
+	#define LOWP
+	#define HIGH
+#endif
+
+attribute vec4 a_position;
+attribute vec4 a_color;
+attribute vec2 a_texCoord0;
+uniform mat4 u_projTrans;
+uniform HIGH vec2 u_psxSnappingResolution;
+
+varying LOWP vec4 v_color;
+varying vec2 v_texCoords;
+
+void main() {
+	v_color = a_color;
+	v_color.a = v_color.a * (255.0 / 254.0);
+	v_texCoords = a_texCoord0;
+	gl_Position = u_projTrans * a_position;
+
+	// Vertex snapping to the pixels of the virtual resolution
+	if (u_psxSnappingResolution.x > 0.0) {
+		HIGH vec2 halfResolution = u_psxSnappingResolution * 0.5;
+		gl_Position.xy = floor(gl_Position.xy / gl_Position.w * halfResolution + 0.5) / halfResolution * gl_Position.w;
+	}
+}
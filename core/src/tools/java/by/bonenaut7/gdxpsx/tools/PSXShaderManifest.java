@@ -0,0 +1,293 @@
+package by.bonenaut7.gdxpsx.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.DirectionalLightsAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.PointLightsAttribute;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+
+import by.bonenaut7.gdxpsx.PSXShaderPreprocessor;
+import by.bonenaut7.gdxpsx.g3d.PSXShaderKey;
+import by.bonenaut7.gdxpsx.g3d.PSXShaderPrefixBuilder;
+import by.bonenaut7.gdxpsx.g3d.attributes.AttributePSXEffect;
+import by.bonenaut7.gdxpsx.g3d.attributes.FixedPointMeshAttribute;
+import by.bonenaut7.gdxpsx.g3d.attributes.IndexedTextureAttribute;
+import by.bonenaut7.gdxpsx.g3d.attributes.LookupTextureAttribute;
+import by.bonenaut7.gdxpsx.postprocessing.DitheringMatrix;
+
+/** Build-time tool that runs {@link PSXShaderPreprocessor} over the known permutations of the in-built shaders
+ *    and writes <code>manifest.json</code> with source sizes before and after preprocessing, together with the
+ *    preprocessed sources of every permutation. Used by the <code>shaderManifest</code> Gradle task. <br>
+ * Lit shader permutations are built by {@link PSXShaderPrefixBuilder} from the representative vertex formats,
+ *    environments and materials. Post-processing permutations are every feature combination of the
+ *    post-processing and sprite batch shaders, numeric definitions are filled with representative values.
+ *
+ * @author bonenaut7 **/
+public final class PSXShaderManifest {
+	private static final String SHADERS_PATH = "by/bonenaut7/gdxpsx/shaders/";
+
+	private final File outputDirectory;
+	private final StringBuilder manifest = new StringBuilder();
+	private final ObjectSet<String> permutations = new ObjectSet<>();
+	private int entries;
+	private long totalBefore, totalAfter;
+
+	public PSXShaderManifest(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	/** @param args Output directory, <code>build/reports/shaders</code> by default **/
+	public static void main(String[] args) throws IOException {
+		final PSXShaderManifest manifest = new PSXShaderManifest(new File(args.length != 0 ? args[0] : "build/reports/shaders"));
+		manifest.generate();
+	}
+
+	public void generate() throws IOException {
+		this.manifest.setLength(0);
+		this.manifest.append("{\n\t\"permutations\": [");
+		this.generateLit("litpixel");
+		this.generateLit("litvertex");
+		this.generatePostProcessing();
+		this.generateSprite();
+		this.manifest.append("\n\t],\n");
+		this.manifest.append("\t\"count\": ").append(this.entries).append(",\n");
+		this.manifest.append("\t\"totalBefore\": ").append(this.totalBefore).append(",\n");
+		this.manifest.append("\t\"totalAfter\": ").append(this.totalAfter).append('\n');
+		this.manifest.append("}\n");
+		write(new File(this.outputDirectory, "manifest.json"), this.manifest.toString());
+
+		System.out.println(String.format(Locale.US, "%d shader permutations, %d -> %d bytes (%.1f%%), manifest: %s", this.entries,
+			this.totalBefore, this.totalAfter, this.totalAfter * 100f / this.totalBefore, new File(this.outputDirectory, "manifest.json").getPath()));
+	}
+
+	private void generateLit(String shader) throws IOException {
+		final String vertexShader = read(shader + ".vert");
+		final String fragmentShader = read(shader + ".frag");
+		final DefaultShader.Config config = new DefaultShader.Config();
+		final PSXShaderPrefixBuilder prefixBuilder = new PSXShaderPrefixBuilder();
+		final PSXShaderKey key = new PSXShaderKey();
+
+		final VertexAttributes[] vertexFormats = {
+			new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0)),
+			new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.ColorPacked(), VertexAttribute.TexCoords(0)),
+			new VertexAttributes(VertexAttribute.Position(), VertexAttribute.TexCoords(0)),
+			new VertexAttributes(VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0),
+				VertexAttribute.BoneWeight(0), VertexAttribute.BoneWeight(1), VertexAttribute.BoneWeight(2), VertexAttribute.BoneWeight(3)),
+		};
+
+		final long psx = AttributePSXEffect.vertexSnapping | AttributePSXEffect.textureAffineMapping;
+		final long[] materials = {
+			TextureAttribute.Diffuse,
+			TextureAttribute.Diffuse | ColorAttribute.Diffuse,
+			ColorAttribute.Diffuse,
+			TextureAttribute.Diffuse | psx,
+			TextureAttribute.Diffuse | psx | LookupTextureAttribute.diffuseLUT,
+			TextureAttribute.Diffuse | psx | BlendingAttribute.Type,
+			IndexedTextureAttribute.indexedTexture | psx,
+			TextureAttribute.Diffuse | psx | FixedPointMeshAttribute.fixedPoint,
+		};
+
+		final long lights = ColorAttribute.AmbientLight | DirectionalLightsAttribute.Type | PointLightsAttribute.Type;
+		final long[] environments = { -1L, lights, lights | ColorAttribute.Fog };
+
+		for (VertexAttributes vertexFormat : vertexFormats) {
+			for (long environment : environments) {
+				for (long material : materials) {
+					key.attributesMask = material | (environment != -1L ? environment : 0L);
+					key.vertexMask = vertexFormat.getMaskWithSizePacked();
+					key.textureCoordinates = 0;
+					key.boneWeights = 0;
+					for (int idx = 0; idx != vertexFormat.size(); idx++) {
+						final VertexAttribute attribute = vertexFormat.get(idx);
+						if (attribute.usage == Usage.TextureCoordinates) key.textureCoordinates |= 1 << attribute.unit;
+						else if (attribute.usage == Usage.BoneWeight) key.boneWeights++;
+					}
+
+					key.flags = (environment != -1L ? PSXShaderKey.FLAG_ENVIRONMENT : 0) | (key.boneWeights != 0 ? PSXShaderKey.FLAG_BONES : 0);
+					this.add(shader, prefixBuilder.set(key).build(config).toString(), vertexShader, fragmentShader);
+				}
+			}
+		}
+	}
+
+	private void generatePostProcessing() throws IOException {
+		final String vertexShader = read("postprocessing.vert");
+		final String staticShader = read("postprocessing.static.frag");
+		final String dynamicShader = read("postprocessing.dynamic.frag");
+		final DitheringMatrix matrix = DitheringMatrix.BAYER_8x8;
+
+		// Downscaling, dithering, legacy dithering, dithering texture, color reduction, palette
+		for (int variant = 0; variant != 1 << 6; variant++) {
+			final boolean downscaling = (variant & 1) != 0, dithering = (variant & 2) != 0, legacy = (variant & 4) != 0;
+			final boolean texture = (variant & 8) != 0, colorReduction = (variant & 16) != 0, palette = (variant & 32) != 0;
+			if ((!dithering && (legacy || texture)) || (colorReduction && palette)) {
+				continue; // Combinations that aren't produced by the shaders
+			}
+
+			final StringBuilder dynamicDefinitions = new StringBuilder();
+			final StringBuilder staticDefinitions = new StringBuilder("#define INPUT_RESOLUTION vec2(640.0000, 480.0000)\n");
+			if (downscaling) {
+				dynamicDefinitions.append("#define RESOLUTION_DOWNSCALING\n");
+				staticDefinitions.append("#define RESOLUTION_DOWNSCALING vec4(320.0000, 240.0000, 0.00312500, 0.00416667)\n");
+			}
+
+			if (dithering) {
+				dynamicDefinitions.append("#define DITHERING\n");
+				staticDefinitions.append("#define DITHERING\n");
+				if (legacy) {
+					dynamicDefinitions.append("#define DITHERING_LEGACY\n");
+					staticDefinitions.append("#define DITHERING_LEGACY\n");
+				}
+
+				staticDefinitions.append("#define DITHERING_INTENSITY 0.01000000\n#define DITHERING_INV_SCALE 1.00000000\n");
+				final String tableSize = String.format(Locale.US, "#define DITHERING_TABLE_SIZE_X %.2f\n#define DITHERING_TABLE_SIZE_Y %.2f\n",
+					(float)matrix.getSizeX(), (float)matrix.getSizeY());
+				staticDefinitions.append(tableSize);
+				if (texture) {
+					dynamicDefinitions.append("#define DITHERING_TEXTURE\n");
+					staticDefinitions.append("#define DITHERING_TEXTURE\n");
+				} else {
+					final String table = createDitheringTable(matrix);
+					dynamicDefinitions.append(tableSize).append(table);
+					staticDefinitions.append(table);
+				}
+			}
+
+			if (colorReduction) {
+				dynamicDefinitions.append("#define COLOR_REDUCTION\n");
+				staticDefinitions.append("#define COLOR_REDUCTION 32.00\n");
+			}
+
+			if (palette) {
+				dynamicDefinitions.append("#define PALETTE\n");
+				staticDefinitions.append("#define PALETTE\n#define PALETTE_SIZE 32.0\n");
+			}
+
+			this.add("postprocessing.dynamic", dynamicDefinitions.toString(), vertexShader, dynamicShader);
+			if (!legacy || !palette) { // Legacy dithering is ignored by the static shader when palette is used
+				this.add("postprocessing.static", staticDefinitions.toString(), vertexShader, staticShader);
+			}
+		}
+	}
+
+	private void generateSprite() throws IOException {
+		final String vertexShader = read("sprite.vert");
+		final String fragmentShader = read("sprite.frag");
+		final String[] definitions = { "", "#define DITHERING\n", "#define COLOR_REDUCTION\n", "#define DITHERING\n#define COLOR_REDUCTION\n",
+			"#define PALETTE\n", "#define DITHERING\n#define PALETTE\n" };
+
+		for (String definition : definitions) {
+			this.add("sprite", definition, vertexShader, fragmentShader);
+		}
+	}
+
+	private void add(String shader, String definitions, String vertexShader, String fragmentShader) throws IOException {
+		if (!this.permutations.add(shader + '\n' + definitions)) {
+			return;
+		}
+
+		final String vertexSource = definitions + vertexShader, fragmentSource = definitions + fragmentShader;
+		final String vertexResult = PSXShaderPreprocessor.process(vertexSource), fragmentResult = PSXShaderPreprocessor.process(fragmentSource);
+		final String name = String.format(Locale.US, "%s/%03d", shader, this.entries);
+		write(new File(this.outputDirectory, "sources/" + name + ".vert"), vertexResult);
+		write(new File(this.outputDirectory, "sources/" + name + ".frag"), fragmentResult);
+
+		final StringBuilder manifest = this.manifest;
+		manifest.append(this.entries != 0 ? ",\n" : "\n");
+		manifest.append("\t\t{\n");
+		manifest.append("\t\t\t\"name\": \"").append(name).append("\",\n");
+		manifest.append("\t\t\t\"shader\": \"").append(shader).append("\",\n");
+		manifest.append("\t\t\t\"flags\": [");
+		final Array<String> flags = collectFlags(definitions);
+		for (int idx = 0; idx != flags.size; idx++) {
+			manifest.append(idx != 0 ? ", \"" : "\"").append(flags.get(idx)).append('"');
+		}
+
+		manifest.append("],\n");
+		appendSizes(manifest, "vertex", vertexSource, vertexResult).append(",\n");
+		appendSizes(manifest, "fragment", fragmentSource, fragmentResult).append('\n');
+		manifest.append("\t\t}");
+
+		this.entries++;
+		this.totalBefore += vertexSource.length() + fragmentSource.length();
+		this.totalAfter += vertexResult.length() + fragmentResult.length();
+	}
+
+	private static StringBuilder appendSizes(StringBuilder manifest, String stage, String before, String after) {
+		return manifest.append("\t\t\t\"").append(stage).append("\": { \"before\": ").append(before.length())
+			.append(", \"after\": ").append(after.length()).append(", \"linesBefore\": ").append(countLines(before))
+			.append(", \"linesAfter\": ").append(countLines(after)).append(" }");
+	}
+
+	private static Array<String> collectFlags(String definitions) {
+		final Array<String> flags = new Array<>();
+		for (String line : definitions.split("\n")) {
+			if (line.startsWith("#define ")) {
+				final int end = line.indexOf(' ', 8);
+				flags.add(end == -1 ? line.substring(8) : line.substring(8, end));
+			}
+		}
+
+		return flags;
+	}
+
+	private static String createDitheringTable(DitheringMatrix matrix) {
+		final float[] values = matrix.getMatrix();
+		final StringBuilder builder = new StringBuilder();
+		builder.append("#define DITHERING_TABLE_SIZE ").append(values.length).append('\n');
+		builder.append("#define DITHERING_TABLE float[").append(values.length).append("](");
+		for (int idx = 0; idx != values.length; idx++) {
+			builder.append(idx != 0 ? "," : "").append(String.format(Locale.US, "%.4f", values[idx]));
+		}
+
+		return builder.append(")\n").toString();
+	}
+
+	private static int countLines(String source) {
+		int lines = 0;
+		for (int idx = 0; idx != source.length(); idx++) {
+			if (source.charAt(idx) == '\n') lines++;
+		}
+
+		return lines;
+	}
+
+	private static String read(String name) throws IOException {
+		try (InputStream input = PSXShaderManifest.class.getClassLoader().getResourceAsStream(SHADERS_PATH + name)) {
+			if (input == null) {
+				throw new IOException("Shader not found on the classpath: " + SHADERS_PATH + name);
+			}
+
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			for (int read; (read = input.read(buffer)) != -1;) {
+				output.write(buffer, 0, read);
+			}
+
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(content);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package by.bonenaut7.gdxpsx.vfxintegration;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.crashinvaders.vfx.VfxRenderContext;
+import com.crashinvaders.vfx.effects.AbstractVfxEffect;
+import com.crashinvaders.vfx.effects.ChainVfxEffect;
+import com.crashinvaders.vfx.framebuffer.VfxFrameBuffer;
+import com.crashinvaders.vfx.framebuffer.VfxPingPongWrapper;
+
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShader;
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderDynamic;
+import by.bonenaut7.gdxpsx.postprocessing.PSXShaderProgramCache;
+import by.bonenaut7.gdxpsx.postprocessing.PSXTwoPassPostProcessor;
+
+// Post-processing effect with the low-resolution intermediate target: source is resolved into the downscaled target with
+// PSX effects (so they're calculated once per downscaled pixel), then target is upscaled to the destination with nearest filtering.
+// Both passes are done by PSXTwoPassPostProcessor (same as PSXPostProcessingEffect in two-pass mode), resolution of the target
+// is taken from the downscaling configuration, downscaling in the shader itself is disabled.
+// Resizing re-creates only the target and marks uniforms as dirty, programs are shared through PSXShaderProgramCache.
+public class PSXLowResolutionEffect extends AbstractVfxEffect implements ChainVfxEffect {
+	private final PSXPostProcessingShader shader;
+	private final PSXTwoPassPostProcessor processor;
+
+	public PSXLowResolutionEffect() {
+		this(PSXShaderProgramCache.getShared());
+	}
+
+	/** @param cache Cache that compiled programs are shared through,
+	 *    effects with the same configuration are sharing one program **/
+	public PSXLowResolutionEffect(PSXShaderProgramCache cache) {
+		this.shader = new PSXPostProcessingShaderDynamic(
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.notransform.vert").readString(),
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.dynamic.frag").readString(),
+			cache
+		);
+
+		this.processor = new PSXTwoPassPostProcessor(this.shader, cache);
+		this.rebind();
+	}
+
+	/** @return object with shader configuration, downscaling configuration defines resolution of the intermediate target **/
+	public PSXPostProcessingShader getConfiguration() {
+		return this.shader;
+	}
+
+	/** @return low-resolution intermediate target texture, contains processed image of the last frame, or null if nothing has been rendered yet **/
+	public Texture getIntermediateTexture() {
+		return this.processor.getTexture();
+	}
+
+	@Override
+	public void update(float delta) {
+		// Nothing is being updated here :b
+	}
+
+	@Override
+	public void rebind() {
+		this.shader.setDownscalingEnabled(false); // Intermediate target does downscaling
+		this.shader.update(); // Selects already compiled variant and marks uniforms as dirty
+	}
+
+	@Override
+	public void render(VfxRenderContext context, VfxPingPongWrapper buffers) {
+		final VfxFrameBuffer destFramebuffer = buffers.getDstBuffer();
+		PSXPostProcessingEffect.renderTwoPass(this.processor, buffers.getSrcBuffer().getTexture(), destFramebuffer, !destFramebuffer.isDrawing());
+	}
+
+	@Override
+	public void resize(int width, int height) {
+		this.shader.setInputResolution(width, height); // Only marks resolution uniforms as dirty, target is resized on render
+	}
+
+	@Override
+	public void dispose() {
+		this.processor.dispose();
+		this.shader.dispose();
+	}
+}
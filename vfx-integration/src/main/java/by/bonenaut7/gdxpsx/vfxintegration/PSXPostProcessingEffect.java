@@ -1,23 +1,40 @@
 package by.bonenaut7.gdxpsx.vfxintegration;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
 import com.crashinvaders.vfx.VfxRenderContext;
 import com.crashinvaders.vfx.effects.AbstractVfxEffect;
 import com.crashinvaders.vfx.effects.ChainVfxEffect;
 import com.crashinvaders.vfx.framebuffer.VfxFrameBuffer;
 import com.crashinvaders.vfx.framebuffer.VfxPingPongWrapper;
 
+import by.bonenaut7.gdxpsx.PSXRenderStats;
+import by.bonenaut7.gdxpsx.PSXRenderStats.Counter;
 import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShader;
-import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderStatic;
+import by.bonenaut7.gdxpsx.postprocessing.PSXPostProcessingShaderDynamic;
+import by.bonenaut7.gdxpsx.postprocessing.PSXShaderProgramCache;
+import by.bonenaut7.gdxpsx.postprocessing.PSXTwoPassPostProcessor;
 
 // At the moment of writing this, gdx-vfx doesn't support 3D(depth buffer)...
+// Effect uses dynamic shader, so resizing and re-binding are only updating uniforms without recompilation
 public class PSXPostProcessingEffect extends AbstractVfxEffect implements ChainVfxEffect {
 	private final PSXPostProcessingShader shader;
+	private final PSXShaderProgramCache cache;
+	private PSXTwoPassPostProcessor twoPassProcessor;
+	private boolean twoPassDownscalingEnabled;
 	
 	public PSXPostProcessingEffect() {
-		this.shader = new PSXPostProcessingShaderStatic(
+		this(PSXShaderProgramCache.getShared());
+	}
+	
+	/** @param cache Cache that compiled programs are shared through,
+	 *    effects with the same configuration are sharing one program **/
+	public PSXPostProcessingEffect(PSXShaderProgramCache cache) {
+		this.cache = cache;
+		this.shader = new PSXPostProcessingShaderDynamic(
 			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.notransform.vert").readString(),
-			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.static.frag").readString()
+			Gdx.files.classpath("by/bonenaut7/gdxpsx/shaders/postprocessing.dynamic.frag").readString(),
+			cache
 		);
 		
 		this.rebind();
@@ -28,6 +45,31 @@ public class PSXPostProcessingEffect extends AbstractVfxEffect implements ChainV
 		return this.shader;
 	}
 	
+	/** Enables two-pass mode, see {@link PSXTwoPassPostProcessor}: effects are calculated in the downscaled intermediate target
+	 *    and upscaled to the destination buffer. Downscaling configuration of the shader defines intermediate resolution,
+	 *    downscaling in the shader itself is disabled while two-pass mode is enabled.
+	 * @param enabled true to enable two-pass mode
+	 * @return self **/
+	public PSXPostProcessingEffect setTwoPassEnabled(boolean enabled) {
+		if (enabled == this.isTwoPassEnabled()) return this;
+		
+		if (enabled) {
+			this.twoPassDownscalingEnabled = this.shader.isDownscalingEnabled();
+			this.twoPassProcessor = new PSXTwoPassPostProcessor(this.shader, this.cache);
+		} else {
+			this.twoPassProcessor.dispose();
+			this.twoPassProcessor = null;
+			this.shader.setDownscalingEnabled(this.twoPassDownscalingEnabled);
+			this.shader.update();
+		}
+		
+		return this;
+	}
+	
+	public boolean isTwoPassEnabled() {
+		return this.twoPassProcessor != null;
+	}
+	
 	@Override
 	public void update(float delta) {
 		// Nothing is being updated here :b
@@ -35,22 +77,47 @@ public class PSXPostProcessingEffect extends AbstractVfxEffect implements ChainV
 
 	@Override
 	public void rebind() {
-		this.shader.update();
+		this.shader.update(); // Selects already compiled variant and marks uniforms as dirty
 	}
 
 	@Override
 	public void render(VfxRenderContext context, VfxPingPongWrapper buffers) {
-		buffers.getSrcBuffer().getTexture().bind(0);
-		
 		final VfxFrameBuffer destFramebuffer = buffers.getDstBuffer();
 		final boolean manualBinding = !destFramebuffer.isDrawing();
 		
+		if (this.twoPassProcessor != null) {
+			renderTwoPass(this.twoPassProcessor, buffers.getSrcBuffer().getTexture(), destFramebuffer, manualBinding);
+			return;
+		}
+		
+		buffers.getSrcBuffer().getTexture().bind(0);
+		
 		if (manualBinding) {
 			destFramebuffer.begin();
 		}
 		
 		this.shader.getShaderProgram().bind();
 		context.getViewportMesh().render(this.shader.getShaderProgram());
+		PSXRenderStats.increment(Counter.POST_PROCESS_PASSES);
+		PSXRenderStats.add(Counter.POST_PROCESS_FILL, (long)destFramebuffer.getTexture().getWidth() * destFramebuffer.getTexture().getHeight());
+		
+		if (manualBinding) {
+			destFramebuffer.end();
+		}
+	}
+	
+	// Intermediate pass binds its own framebuffer, so destination buffer is re-bound after it. Shared with PSXLowResolutionEffect
+	static void renderTwoPass(PSXTwoPassPostProcessor processor, Texture source, VfxFrameBuffer destFramebuffer, boolean manualBinding) {
+		processor.process(source);
+		
+		if (manualBinding) {
+			destFramebuffer.begin();
+		} else {
+			destFramebuffer.getFbo().bind();
+			Gdx.gl.glViewport(0, 0, destFramebuffer.getFbo().getWidth(), destFramebuffer.getFbo().getHeight());
+		}
+		
+		processor.upscale();
 		
 		if (manualBinding) {
 			destFramebuffer.end();
@@ -59,12 +126,16 @@ public class PSXPostProcessingEffect extends AbstractVfxEffect implements ChainV
 	
 	@Override
 	public void resize(int width, int height) {
-		this.shader.setInputResolution(width, height);
-		this.shader.update();
+		this.shader.setInputResolution(width, height); // Only marks resolution uniforms as dirty
 	}
 	
 	@Override
 	public void dispose() {
+		if (this.twoPassProcessor != null) {
+			this.twoPassProcessor.dispose();
+			this.twoPassProcessor = null;
+		}
+		
 		this.shader.dispose();
 	}
 }